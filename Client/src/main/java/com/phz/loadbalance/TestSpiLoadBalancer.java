@@ -1,8 +1,8 @@
 package com.phz.loadbalance;
 
 import com.phz.prpc.netty.loadBalance.LoadBalance;
+import com.phz.prpc.registry.Endpoint;
 
-import java.net.InetSocketAddress;
 import java.util.List;
 
 /**
@@ -11,7 +11,7 @@ import java.util.List;
  */
 public class TestSpiLoadBalancer implements LoadBalance {
     @Override
-    public InetSocketAddress doChoice(List<InetSocketAddress> instances) {
+    public Endpoint doChoice(List<Endpoint> instances) {
         return instances.get(1);
     }
 }
\ No newline at end of file
@@ -0,0 +1,317 @@
+package com.phz.prpc.cluster;
+
+import com.phz.prpc.netty.loadBalance.ConsistenceHashChooser;
+import com.phz.prpc.netty.loadBalance.MaglevChooser;
+import com.phz.prpc.registry.Endpoint;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * 哈希选择器的分布与查找压测，比较{@link ConsistenceHashChooser}和{@link MaglevChooser}：
+ * 固定的一组键在各实例上分布是否均匀、增加或者减少一个实例时有多少键换了实例，以及一次查找的平均耗时
+ * </p>
+ * <br></br>
+ * <p>
+ * 实例地址和键都是按序号生成的，除查找耗时以外的结果在任何机器上都相同，可以直接对比修改选择器前后的输出。
+ * 增加实例时理想的迁移比例是{@code 1/(n+1)}，且迁移的键都应该落到新实例上；减少实例时理想的迁移比例是{@code 1/n}，且只有被移除实例上的键需要迁移
+ * </p>
+ * <br></br>
+ * <p>
+ * 用法：{@code java com.phz.prpc.cluster.HashChooserBenchmark [实例数] [键数] [虚拟节点数] [Maglev查找表大小]}，默认值与{@link com.phz.prpc.config.PrpcProperties}一致
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月20日 01:10
+ */
+public final class HashChooserBenchmark {
+    /**
+     * 默认实例数
+     **/
+    private static final int DEFAULT_INSTANCES = 10;
+
+    /**
+     * 默认键数
+     **/
+    private static final int DEFAULT_KEYS = 100_000;
+
+    /**
+     * 默认每个实例的虚拟节点数
+     **/
+    private static final int DEFAULT_VIRTUAL_NODE_NUM = 100;
+
+    /**
+     * 默认{@code Maglev}查找表大小
+     **/
+    private static final int DEFAULT_MAGLEV_TABLE_SIZE = 65537;
+
+    /**
+     * 查找耗时预热的轮数，每轮查找全部键一次
+     **/
+    private static final int WARMUP_ROUNDS = 5;
+
+    /**
+     * 查找耗时计时的轮数，每轮查找全部键一次
+     **/
+    private static final int MEASURE_ROUNDS = 20;
+
+    /**
+     * 基准实例列表
+     **/
+    private final List<Endpoint> instances = new ArrayList<>();
+
+    /**
+     * 增加实例时加入的实例
+     **/
+    private final Endpoint added;
+
+    /**
+     * 减少实例时移除的实例
+     **/
+    private final Endpoint removed;
+
+    /**
+     * 参与统计的键
+     **/
+    private final String[] keys;
+
+    /**
+     * 构造方法
+     *
+     * @param instanceNum 基准实例数，至少为2
+     * @param keyNum      参与统计的键数
+     **/
+    public HashChooserBenchmark(int instanceNum, int keyNum) {
+        int n = Math.max(2, instanceNum);
+        for (int i = 0; i < n; i++) {
+            instances.add(endpoint(i));
+        }
+        this.added = endpoint(n);
+        this.removed = instances.get(n / 2);
+        this.keys = new String[Math.max(1, keyNum)];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "key-" + i;
+        }
+    }
+
+    /**
+     * 压测入口
+     *
+     * @param args 依次为实例数、键数、虚拟节点数和{@code Maglev}查找表大小，都可以省略
+     **/
+    public static void main(String[] args) {
+        int instanceNum = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_INSTANCES;
+        int keyNum = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_KEYS;
+        int virtualNodeNum = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_VIRTUAL_NODE_NUM;
+        int tableSize = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MAGLEV_TABLE_SIZE;
+        HashChooserBenchmark benchmark = new HashChooserBenchmark(instanceNum, keyNum);
+        System.out.println(benchmark.run("consistentHash", () -> new ConsistenceHashChooser(virtualNodeNum)::getServer));
+        System.out.println(benchmark.run("maglev", () -> new MaglevChooser(tableSize)::getServer));
+    }
+
+    /**
+     * 压测一种选择器，分布和迁移统计每次都使用新的选择器，避免上一次的实例列表影响结果
+     *
+     * @param name    选择器名称
+     * @param factory 创建选择器，返回它的{@code getServer}
+     * @return Result 压测结果
+     **/
+    public Result run(String name, Supplier<BiFunction<List<Endpoint>, String, Endpoint>> factory) {
+        Endpoint[] base = assign(factory.get(), instances);
+        List<Endpoint> grown = new ArrayList<>(instances);
+        grown.add(added);
+        Endpoint[] afterAdd = assign(factory.get(), grown);
+        List<Endpoint> shrunk = new ArrayList<>(instances);
+        shrunk.remove(removed);
+        Endpoint[] afterRemove = assign(factory.get(), shrunk);
+
+        Map<Endpoint, Integer> counts = new HashMap<>();
+        for (Endpoint endpoint : base) {
+            counts.merge(endpoint, 1, Integer::sum);
+        }
+        int max = 0;
+        int min = keys.length;
+        for (Endpoint endpoint : instances) {
+            int count = counts.getOrDefault(endpoint, 0);
+            max = Math.max(max, count);
+            min = Math.min(min, count);
+        }
+        int addMoved = 0;
+        int addMovedElsewhere = 0;
+        int removeMoved = 0;
+        int removeMovedElsewhere = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (afterAdd[i] != base[i]) {
+                addMoved++;
+                if (afterAdd[i] != added) {
+                    addMovedElsewhere++;
+                }
+            }
+            if (afterRemove[i] != base[i]) {
+                removeMoved++;
+                if (base[i] != removed) {
+                    removeMovedElsewhere++;
+                }
+            }
+        }
+        double mean = (double) keys.length / instances.size();
+        return new Result(name, max / mean, min / mean,
+                (double) addMoved / keys.length, 1.0 / (instances.size() + 1), (double) addMovedElsewhere / keys.length,
+                (double) removeMoved / keys.length, 1.0 / instances.size(), (double) removeMovedElsewhere / keys.length,
+                lookupNanos(factory.get()));
+    }
+
+    /**
+     * 计算每个键对应的实例
+     *
+     * @param chooser   选择器
+     * @param instances 实例列表
+     * @return Endpoint[] 下标与{@link HashChooserBenchmark#keys}一致
+     **/
+    private Endpoint[] assign(BiFunction<List<Endpoint>, String, Endpoint> chooser, List<Endpoint> instances) {
+        Endpoint[] assigned = new Endpoint[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            assigned[i] = chooser.apply(instances, keys[i]);
+        }
+        return assigned;
+    }
+
+    /**
+     * 测量实例列表不变时一次查找的平均耗时
+     *
+     * @param chooser 选择器
+     * @return double 平均耗时，单位{@code ns}
+     **/
+    private double lookupNanos(BiFunction<List<Endpoint>, String, Endpoint> chooser) {
+        long sink = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            sink += lookupAll(chooser);
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < MEASURE_ROUNDS; round++) {
+            sink += lookupAll(chooser);
+        }
+        long elapsed = System.nanoTime() - start;
+        // 使用查找结果，避免循环被优化掉
+        if (sink == 0) {
+            System.out.println("no instance chosen");
+        }
+        return (double) elapsed / ((long) MEASURE_ROUNDS * keys.length);
+    }
+
+    /**
+     * 查找全部键一次
+     *
+     * @param chooser 选择器
+     * @return long 选中实例的端口之和
+     **/
+    private long lookupAll(BiFunction<List<Endpoint>, String, Endpoint> chooser) {
+        long sum = 0;
+        for (String key : keys) {
+            sum += chooser.apply(instances, key).getPort();
+        }
+        return sum;
+    }
+
+    /**
+     * 按序号生成实例地址
+     *
+     * @param index 序号
+     * @return Endpoint 实例
+     **/
+    private static Endpoint endpoint(int index) {
+        return Endpoint.of("10.0." + index / 256 + "." + index % 256, 8080);
+    }
+
+    /**
+     * 一种选择器的压测结果，比例都是相对于全部键数
+     **/
+    @Getter
+    @ToString
+    public static final class Result {
+        /**
+         * 选择器名称
+         **/
+        private final String name;
+
+        /**
+         * 键最多的实例的键数与平均键数之比
+         **/
+        private final double maxLoad;
+
+        /**
+         * 键最少的实例的键数与平均键数之比
+         **/
+        private final double minLoad;
+
+        /**
+         * 增加一个实例后换了实例的键的比例
+         **/
+        private final double addRemapped;
+
+        /**
+         * 增加一个实例时理想的迁移比例
+         **/
+        private final double addIdeal;
+
+        /**
+         * 增加一个实例后没有迁到新实例、而是在原有实例之间移动的键的比例，理想值为0
+         **/
+        private final double addMovedElsewhere;
+
+        /**
+         * 减少一个实例后换了实例的键的比例
+         **/
+        private final double removeRemapped;
+
+        /**
+         * 减少一个实例时理想的迁移比例
+         **/
+        private final double removeIdeal;
+
+        /**
+         * 减少一个实例后不在被移除实例上、却也换了实例的键的比例，理想值为0
+         **/
+        private final double removeMovedElsewhere;
+
+        /**
+         * 一次查找的平均耗时，单位{@code ns}
+         **/
+        private final double lookupNanos;
+
+        /**
+         * 构造方法
+         *
+         * @param name                 选择器名称
+         * @param maxLoad              键最多的实例的键数与平均键数之比
+         * @param minLoad              键最少的实例的键数与平均键数之比
+         * @param addRemapped          增加一个实例后换了实例的键的比例
+         * @param addIdeal             增加一个实例时理想的迁移比例
+         * @param addMovedElsewhere    增加一个实例后在原有实例之间移动的键的比例
+         * @param removeRemapped       减少一个实例后换了实例的键的比例
+         * @param removeIdeal          减少一个实例时理想的迁移比例
+         * @param removeMovedElsewhere 减少一个实例后不在被移除实例上却换了实例的键的比例
+         * @param lookupNanos          一次查找的平均耗时，单位{@code ns}
+         **/
+        private Result(String name, double maxLoad, double minLoad, double addRemapped, double addIdeal, double addMovedElsewhere,
+                       double removeRemapped, double removeIdeal, double removeMovedElsewhere, double lookupNanos) {
+            this.name = name;
+            this.maxLoad = maxLoad;
+            this.minLoad = minLoad;
+            this.addRemapped = addRemapped;
+            this.addIdeal = addIdeal;
+            this.addMovedElsewhere = addMovedElsewhere;
+            this.removeRemapped = removeRemapped;
+            this.removeIdeal = removeIdeal;
+            this.removeMovedElsewhere = removeMovedElsewhere;
+            this.lookupNanos = lookupNanos;
+        }
+    }
+}
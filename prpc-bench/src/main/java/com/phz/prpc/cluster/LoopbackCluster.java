@@ -0,0 +1,408 @@
+package com.phz.prpc.cluster;
+
+import com.phz.prpc.netty.server.NettyServer;
+import com.phz.prpc.netty.server.ServiceProvider;
+import com.phz.prpc.registry.Endpoint;
+import com.phz.prpc.registry.InMemoryRegistry;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * <p>
+ * 回环地址上的压测集群，在一个进程中启动多个服务端，或者在本机启动多个服务端进程，再用多个调用线程压测，
+ * 不依赖外部注册中心，吞吐、故障转移以及负载均衡的表现可以稳定复现
+ * </p>
+ * <br></br>
+ * <p>
+ * 进程内的服务端通过{@link NettyServer#newServer(int)}创建，提供与当前进程相同的服务，并注册到{@link InMemoryRegistry}，
+ * 客户端需要配置{@code prpc.registry=memory}。服务端进程通过{@link LoopbackCluster#launchProviders}启动，
+ * 配合{@link LoopbackCluster#writeStaticRegistryFile(Path, String...)}生成的实例文件，其他进程中的客户端可以用{@code static}注册中心访问
+ * </p>
+ * <br></br>
+ * <p>
+ * 进程内的服务端可以同时监听{@code Unix}域套接字，客户端会优先使用它；分别用两种方式启动集群并{@link LoopbackCluster#measure}，即可比较域套接字与回环{@code TCP}的耗时。
+ * 两次启动需要使用不同的端口，避免复用上一次建立的连接
+ * </p>
+ * <br></br>
+ * <p>
+ * 压测工具放在独立的{@code prpc-bench}模块中，不随{@code prpc-core}发布，需要压测的应用单独引入
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 23:45
+ */
+@Slf4j
+public final class LoopbackCluster implements AutoCloseable {
+    /**
+     * 回环地址
+     **/
+    private static final String LOOPBACK = "127.0.0.1";
+
+    /**
+     * 每个调用线程保留的耗时样本数
+     **/
+    private static final int LATENCY_SAMPLES = 1 << 16;
+
+    /**
+     * 等待服务端进程开始监听的最长时间，单位{@code ms}
+     **/
+    private static final long LAUNCH_TIMEOUT = 60_000;
+
+    /**
+     * 所有服务实例，下标与启动顺序一致
+     **/
+    @Getter
+    private final List<Endpoint> endpoints = new ArrayList<>();
+
+    /**
+     * 进程内的服务端，下标与{@link LoopbackCluster#endpoints}一致，进程外的实例为{@code null}
+     **/
+    private final List<NettyServer> servers = new ArrayList<>();
+
+    /**
+     * 服务端进程，下标与{@link LoopbackCluster#endpoints}一致，进程内的实例为{@code null}
+     **/
+    private final List<Process> processes = new ArrayList<>();
+
+    /**
+     * 在当前进程中启动多个服务端，端口从{@code basePort}开始依次递增，并把当前进程提供的所有服务注册到{@link InMemoryRegistry}
+     *
+     * @param count    服务端数量
+     * @param basePort 起始端口
+     * @return LoopbackCluster 当前集群
+     **/
+    public LoopbackCluster startProviders(int count, int basePort) {
+        return startProviders(count, basePort, null);
+    }
+
+    /**
+     * 在当前进程中启动多个服务端，并让每个服务端同时监听{@code domainSocketDir}下的{@code Unix}域套接字，其余与{@link LoopbackCluster#startProviders(int, int)}相同
+     *
+     * @param count           服务端数量
+     * @param basePort        起始端口
+     * @param domainSocketDir 域套接字所在目录，为{@code null}时只监听{@code TCP}
+     * @return LoopbackCluster 当前集群
+     **/
+    public LoopbackCluster startProviders(int count, int basePort, Path domainSocketDir) {
+        Set<String> serviceNames = ServiceProvider.getInstance().getServiceNames();
+        for (int i = 0; i < count; i++) {
+            String domainSocketPath = domainSocketDir == null ? null : domainSocketDir.resolve("prpc-" + (basePort + i) + ".sock").toString();
+            NettyServer server = NettyServer.newServer(basePort + i, domainSocketPath);
+            server.start();
+            Endpoint endpoint = Endpoint.of(LOOPBACK, basePort + i);
+            endpoint.setDomainSocketPath(server.getDomainSocketPath());
+            serviceNames.forEach(serviceName -> InMemoryRegistry.getInstance().register(serviceName, endpoint));
+            endpoints.add(endpoint);
+            servers.add(server);
+            processes.add(null);
+            log.info("进程内服务端 {} 已启动，提供服务 : {}", endpoint, serviceNames);
+        }
+        return this;
+    }
+
+    /**
+     * 在本机启动多个服务端进程，使用当前进程的{@code classpath}，端口从{@code basePort}开始依次递增，等待所有进程开始监听后返回
+     *
+     * @param mainClass 服务端启动类，需要是{@code Spring Boot}应用
+     * @param count     进程数量
+     * @param basePort  起始端口
+     * @param args      额外的启动参数，例如{@code --prpc.serializerAlgorithm=Kryo}
+     * @return LoopbackCluster 当前集群
+     * @throws IOException          进程启动失败
+     * @throws InterruptedException 等待被中断
+     **/
+    public LoopbackCluster launchProviders(Class<?> mainClass, int count, int basePort, String... args) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (int i = 0; i < count; i++) {
+            int port = basePort + i;
+            List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"), mainClass.getName(),
+                    "--prpc.serverPort=" + port, "--prpc.registry=static", "--server.port=0"));
+            command.addAll(Arrays.asList(args));
+            Process process = new ProcessBuilder(command).inheritIO().start();
+            endpoints.add(Endpoint.of(LOOPBACK, port));
+            servers.add(null);
+            processes.add(process);
+        }
+        for (int i = 0; i < endpoints.size(); i++) {
+            if (processes.get(i) != null) {
+                awaitListening(endpoints.get(i), processes.get(i));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 停止一个服务实例，进程内的实例同时从{@link InMemoryRegistry}注销，用于观察故障转移
+     *
+     * @param index 实例下标
+     **/
+    public void stopProvider(int index) {
+        Endpoint endpoint = endpoints.get(index);
+        NettyServer server = servers.get(index);
+        if (server != null) {
+            ServiceProvider.getInstance().getServiceNames().forEach(serviceName -> InMemoryRegistry.getInstance().deRegister(serviceName, endpoint));
+            server.stop();
+        }
+        Process process = processes.get(index);
+        if (process != null) {
+            process.destroy();
+        }
+        log.info("服务实例 {} 已停止", endpoint);
+    }
+
+    /**
+     * 把所有实例写成{@code static}注册中心的实例文件，供其他进程中的客户端使用
+     *
+     * @param file         实例文件
+     * @param serviceNames 服务名
+     * @throws IOException 写入失败
+     **/
+    public void writeStaticRegistryFile(Path file, String... serviceNames) throws IOException {
+        StringBuilder addresses = new StringBuilder();
+        for (Endpoint endpoint : endpoints) {
+            addresses.append(addresses.length() == 0 ? "" : ",").append(endpoint);
+        }
+        List<String> lines = new ArrayList<>();
+        for (String serviceName : serviceNames) {
+            lines.add(serviceName + "=" + addresses);
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 用多个调用线程持续调用一段时间，统计吞吐、耗时分布以及各实例分到的请求数，只有抛出异常的调用记为失败，{@code void}方法也能正确统计
+     *
+     * @param clients  调用线程数
+     * @param duration 持续时间，单位{@code ms}
+     * @param call     一次调用
+     * @return Result 压测结果
+     * @throws InterruptedException 等待被中断
+     **/
+    public Result measure(int clients, long duration, Callable<?> call) throws InterruptedException {
+        return measure(clients, duration, call, result -> true);
+    }
+
+    /**
+     * 用多个调用线程持续调用一段时间，由{@code success}判断每次调用是否成功，其余与{@link LoopbackCluster#measure(int, long, Callable)}相同。
+     * 代理在超时、没有可用实例时返回{@code null}而不是抛出异常，有返回值的方法可以传入{@code Objects::nonNull}把这些调用记为失败
+     *
+     * @param <T>      返回值类型
+     * @param clients  调用线程数
+     * @param duration 持续时间，单位{@code ms}
+     * @param call     一次调用，抛出异常记为失败
+     * @param success  没有抛出异常时判断返回值是否代表成功
+     * @return Result 压测结果
+     * @throws InterruptedException 等待被中断
+     **/
+    public <T> Result measure(int clients, long duration, Callable<T> call, Predicate<? super T> success) throws InterruptedException {
+        Map<Endpoint, Long> before = totals();
+        LongAdder calls = new LongAdder();
+        LongAdder errors = new LongAdder();
+        long[][] latencies = new long[clients][LATENCY_SAMPLES];
+        int[] sampled = new int[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(duration);
+        for (int i = 0; i < clients; i++) {
+            int client = i;
+            Thread thread = new Thread(() -> {
+                long[] samples = latencies[client];
+                int count = 0;
+                try {
+                    long now;
+                    while ((now = System.nanoTime()) < deadline) {
+                        boolean succeeded;
+                        try {
+                            succeeded = success.test(call.call());
+                        } catch (Exception e) {
+                            succeeded = false;
+                        }
+                        long end = System.nanoTime();
+                        calls.increment();
+                        if (!succeeded) {
+                            errors.increment();
+                        }
+                        samples[count++ & (LATENCY_SAMPLES - 1)] = end - now;
+                    }
+                } finally {
+                    sampled[client] = Math.min(count, LATENCY_SAMPLES);
+                    done.countDown();
+                }
+            }, "prpc-loopback-client-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        Map<Endpoint, Long> after = totals();
+        Map<String, Long> distribution = new LinkedHashMap<>();
+        after.forEach((endpoint, total) -> distribution.put(endpoint.toString(), total - before.getOrDefault(endpoint, 0L)));
+        return new Result(calls.sum(), errors.sum(), elapsed, merge(latencies, sampled), distribution);
+    }
+
+    /**
+     * 停止所有服务实例
+     **/
+    @Override
+    public void close() {
+        for (int i = 0; i < endpoints.size(); i++) {
+            stopProvider(i);
+        }
+        endpoints.clear();
+        servers.clear();
+        processes.clear();
+    }
+
+    /**
+     * 读取各实例的累计请求数
+     *
+     * @return Map<Endpoint, Long> 实例到累计请求数的映射
+     **/
+    private Map<Endpoint, Long> totals() {
+        Map<Endpoint, Long> totals = new LinkedHashMap<>();
+        endpoints.forEach(endpoint -> totals.put(endpoint, endpoint.getStats().getTotal()));
+        return totals;
+    }
+
+    /**
+     * 合并各调用线程的耗时样本并排序
+     *
+     * @param latencies 各线程的样本
+     * @param sampled   各线程的有效样本数
+     * @return long[] 排好序的样本
+     **/
+    private static long[] merge(long[][] latencies, int[] sampled) {
+        int size = 0;
+        for (int count : sampled) {
+            size += count;
+        }
+        long[] merged = new long[size];
+        int offset = 0;
+        for (int i = 0; i < latencies.length; i++) {
+            System.arraycopy(latencies[i], 0, merged, offset, sampled[i]);
+            offset += sampled[i];
+        }
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    /**
+     * 等待服务端进程开始监听
+     *
+     * @param endpoint 服务实例
+     * @param process  服务端进程
+     * @throws IOException          进程提前退出或者等待超时
+     * @throws InterruptedException 等待被中断
+     **/
+    private static void awaitListening(Endpoint endpoint, Process process) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + LAUNCH_TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            if (!process.isAlive()) {
+                throw new IOException("服务端进程 " + endpoint + " 已退出，退出码 " + process.exitValue());
+            }
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(endpoint.getHost(), endpoint.getPort()), 200);
+                log.info("服务端进程 {} 已开始监听", endpoint);
+                return;
+            } catch (IOException e) {
+                TimeUnit.MILLISECONDS.sleep(200);
+            }
+        }
+        throw new IOException("等待服务端进程 " + endpoint + " 监听超时");
+    }
+
+    /**
+     * 一次压测的结果
+     **/
+    @Getter
+    @ToString
+    public static final class Result {
+        /**
+         * 调用次数
+         **/
+        private final long calls;
+
+        /**
+         * 失败次数
+         **/
+        private final long errors;
+
+        /**
+         * 吞吐量，单位次每秒
+         **/
+        private final double throughput;
+
+        /**
+         * 耗时中位数，单位{@code μs}
+         **/
+        private final double p50;
+
+        /**
+         * 耗时的99分位数，单位{@code μs}
+         **/
+        private final double p99;
+
+        /**
+         * 最大耗时，单位{@code μs}
+         **/
+        private final double max;
+
+        /**
+         * 各实例分到的请求数
+         **/
+        private final Map<String, Long> distribution;
+
+        /**
+         * 构造方法
+         *
+         * @param calls        调用次数
+         * @param errors       失败次数
+         * @param elapsedNanos 实际持续时间，单位{@code ns}
+         * @param latencies    排好序的耗时样本，单位{@code ns}
+         * @param distribution 各实例分到的请求数
+         **/
+        private Result(long calls, long errors, long elapsedNanos, long[] latencies, Map<String, Long> distribution) {
+            this.calls = calls;
+            this.errors = errors;
+            this.throughput = calls * 1e9 / Math.max(1, elapsedNanos);
+            this.p50 = percentile(latencies, 0.50);
+            this.p99 = percentile(latencies, 0.99);
+            this.max = latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e3;
+            this.distribution = distribution;
+        }
+
+        /**
+         * 计算分位数
+         *
+         * @param latencies 排好序的耗时样本，单位{@code ns}
+         * @param quantile  分位
+         * @return double 分位数，单位{@code μs}
+         **/
+        private static double percentile(long[] latencies, double quantile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            return latencies[(int) Math.min(latencies.length - 1, Math.round(quantile * (latencies.length - 1)))] / 1e3;
+        }
+    }
+}
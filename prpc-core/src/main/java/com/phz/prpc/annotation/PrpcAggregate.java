@@ -0,0 +1,40 @@
+package com.phz.prpc.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * 标注在客户端服务接口中只有一个参数(键)的方法上，把它与同一接口中的批量方法关联起来，例如{@code getUser(Long id)}关联{@code getUsers(List<Long> ids)}
+ * </p>
+ * <br></br>
+ * <p>
+ * 客户端在一个时间窗口内收集并发调用的键，去重后以一次批量方法调用发出，再把批量结果拆分给每个调用方。批量方法只能有一个{@link java.util.List}、
+ * {@link java.util.Set}或{@link java.util.Collection}类型的参数，返回以键为键的{@link java.util.Map}，或者与键顺序一一对应的{@link java.util.List}
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 19:05
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PrpcAggregate {
+    /**
+     * 同一接口中批量方法的方法名
+     **/
+    String bulkMethod();
+
+    /**
+     * 收集键的最长等待时间，单位{@code ms}
+     **/
+    long maxDelay() default 2;
+
+    /**
+     * 一次批量调用最多包含的键数，攒够后立即发出
+     **/
+    int maxSize() default 100;
+}
@@ -0,0 +1,35 @@
+package com.phz.prpc.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * 标注在客户端服务接口的方法上，表示该方法是幂等的只读方法，代理对象会在本地缓存它的调用结果，相同参数的调用在有效期内不再发起远程请求
+ * </p>
+ * <br></br>
+ * <p>
+ * 缓存以方法加参数作为键，参数只能是基本类型、包装类型、字符串、枚举等不可变类型以及它们的数组，生成代理时检查；返回{@code null}以及调用失败的结果不会被缓存。
+ * 缓存的结果会被多个调用方共享，调用方不应该修改返回的对象
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 16:40
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PrpcCacheable {
+    /**
+     * 缓存结果的有效期，从写入开始计算，单位{@code ms}
+     **/
+    long ttl() default 60000;
+
+    /**
+     * 缓存的最大条目数，超过后按照{@code W-TinyLFU}策略淘汰
+     **/
+    int maximumSize() default 1024;
+}
@@ -25,4 +25,14 @@ public @interface PrpcClient {
      * 同一个服务可能有多种实现，指定当前服务的组名以示区分
      **/
     String groupName();
+
+    /**
+     * 直连的服务实例，每一项是{@code host:port}，配置后这个服务不再经过注册中心，仍然使用配置的负载均衡算法选择实例
+     **/
+    String[] endpoints() default {};
+
+    /**
+     * 直连地址，格式为{@code direct://host:port,host:port}，与{@link PrpcClient#endpoints()}合并使用
+     **/
+    String url() default "";
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.phz.prpc.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * 标注在客户端服务接口方法的参数上，使用{@link com.phz.prpc.netty.loadBalance.LoadBalanceAlgorithm#consistentHash}时以这个参数作为哈希键，
+ * 相同键的调用总是落到同一个服务实例上，实例增减时只有少部分键会迁移
+ * </p>
+ * <br></br>
+ * <p>
+ * 键取参数的{@link String#valueOf(Object)}，参数类型需要有稳定的{@code toString}；一个方法只有第一个标注的参数生效
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 20:30
+ */
+@Documented
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PrpcHashKey {
+}
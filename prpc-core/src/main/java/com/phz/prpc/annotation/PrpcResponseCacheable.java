@@ -0,0 +1,40 @@
+package com.phz.prpc.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * 标注在{@link PrpcServer}服务实现类的方法上，服务端缓存该方法编码完成后的响应字节，相同参数的请求在有效期内不再调用方法，也不再序列化和压缩返回值，
+ * 只需要重写帧头中的请求序号就可以把缓存的字节直接写回
+ * </p>
+ * <br></br>
+ * <p>
+ * 参数只能是基本类型、包装类型、字符串、枚举等不可变类型以及它们的数组，服务发布时检查。只缓存调用成功的响应，失效可以通过{@link com.phz.prpc.cache.ResponseCache#invalidate}和{@link com.phz.prpc.cache.ResponseCache#invalidateAll}主动触发
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 17:22
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PrpcResponseCacheable {
+    /**
+     * 缓存响应的有效期，从写入开始计算，单位{@code ms}
+     **/
+    long ttl() default 10000;
+
+    /**
+     * 缓存的最大条目数，超过后淘汰最久未被访问的条目
+     **/
+    int maximumSize() default 256;
+
+    /**
+     * 缓存的响应字节是否放在堆外直接内存中，响应较大时可以减轻{@code GC}压力，写出时也省去一次从堆内到堆外的拷贝
+     **/
+    boolean offHeap() default false;
+}
@@ -0,0 +1,26 @@
+package com.phz.prpc.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * 开启相同调用合并：同一个方法、相同参数的调用正在执行时，后来的调用不再重复执行，而是等待并共享第一个调用的结果或异常
+ * </p>
+ * <br></br>
+ * <p>
+ * 标注在客户端服务接口的方法上时，并发的相同调用只发出一个请求；标注在{@link PrpcServer}服务实现类的方法上时，
+ * 来自不同客户端的相同请求只调用一次方法。参数需要正确实现{@code equals}和{@code hashCode}，方法需要是幂等的
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 17:50
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PrpcSingleFlight {
+}
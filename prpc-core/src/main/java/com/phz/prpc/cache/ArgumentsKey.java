@@ -0,0 +1,124 @@
+package com.phz.prpc.cache;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * <p>
+ * 方法参数构成的缓存键，按照数组内容比较，客户端结果缓存与服务端响应缓存共用
+ * </p>
+ * <br></br>
+ * <p>
+ * 键要在缓存中长期存放，调用方或者服务方法之后修改参数对象会让已经算好的哈希值失效。构造时会逐层复制参数中的数组，
+ * 开启缓存的方法的参数只能是{@link ArgumentsKey#isSupportedType}允许的不可变类型以及它们的数组，服务发布和生成代理时检查
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 17:20
+ */
+public final class ArgumentsKey {
+    /**
+     * 无参方法共用的空参数
+     **/
+    private static final Object[] NO_ARGS = new Object[0];
+
+    /**
+     * 可以作为缓存键的不可变类型
+     **/
+    private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<>(Arrays.asList(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class));
+
+    /**
+     * 方法参数，复制一份防止调用方修改或者消息回收时被清空
+     **/
+    private final Object[] args;
+
+    /**
+     * 预先计算的哈希值
+     **/
+    private final int hash;
+
+    /**
+     * 构造方法
+     *
+     * @param args 方法参数
+     **/
+    public ArgumentsKey(Object[] args) {
+        this.args = args == null || args.length == 0 ? NO_ARGS : (Object[]) copy(args);
+        this.hash = Arrays.deepHashCode(this.args);
+    }
+
+    /**
+     * 判断一个参数类型能否作为缓存键：基本类型、包装类型、字符串、枚举等不可变类型以及它们的数组
+     *
+     * @param type 参数类型
+     * @return boolean 是否可以作为缓存键
+     **/
+    public static boolean isSupportedType(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || type.isEnum() || IMMUTABLE_TYPES.contains(type);
+    }
+
+    /**
+     * 检查开启缓存的方法的参数类型，有不能作为缓存键的类型时抛出异常
+     *
+     * @param name           缓存名称
+     * @param parameterTypes 参数类型
+     **/
+    public static void checkParameterTypes(String name, Class<?>[] parameterTypes) {
+        for (Class<?> parameterType : parameterTypes) {
+            if (!isSupportedType(parameterType)) {
+                throw new IllegalArgumentException("缓存" + name + "的参数类型" + parameterType.getTypeName() + "可变，不能作为缓存键");
+            }
+        }
+    }
+
+    /**
+     * 逐层复制数组，数组以外的参数都是不可变类型，直接共用
+     *
+     * @param value 参数
+     * @return Object 复制后的参数
+     **/
+    private static Object copy(Object value) {
+        if (value == null || !value.getClass().isArray()) {
+            return value;
+        }
+        int length = Array.getLength(value);
+        Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+        if (value.getClass().getComponentType().isPrimitive()) {
+            System.arraycopy(value, 0, copy, 0, length);
+        } else {
+            Object[] source = (Object[]) value;
+            Object[] target = (Object[]) copy;
+            for (int i = 0; i < length; i++) {
+                target[i] = copy(source[i]);
+            }
+        }
+        return copy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ArgumentsKey)) {
+            return false;
+        }
+        ArgumentsKey that = (ArgumentsKey) o;
+        return hash == that.hash && Arrays.deepEquals(args, that.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
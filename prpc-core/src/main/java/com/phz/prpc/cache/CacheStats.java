@@ -0,0 +1,48 @@
+package com.phz.prpc.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * <p>
+ * 缓存统计信息快照
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 16:44
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CacheStats {
+    /**
+     * 命中次数
+     **/
+    private final long hitCount;
+
+    /**
+     * 未命中次数
+     **/
+    private final long missCount;
+
+    /**
+     * 因为容量不足被淘汰的条目数
+     **/
+    private final long evictionCount;
+
+    /**
+     * 当前条目数
+     **/
+    private final long size;
+
+    /**
+     * 计算命中率
+     *
+     * @return double 命中率，没有任何请求时为1
+     **/
+    public double hitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+}
@@ -0,0 +1,35 @@
+package com.phz.prpc.cache;
+
+import com.phz.prpc.netty.compress.CompressAlgorithm;
+import com.phz.prpc.netty.serializer.SerializerAlgorithm;
+import io.netty.buffer.ByteBuf;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * <p>
+ * 已经编码好的响应，来自响应缓存命中或者{@link com.phz.prpc.netty.protocol.PrimitiveInvoker}的调用，
+ * {@link EncodedResponse#getBody()}是一个已经{@code retain}过的缓冲区，由编码器写出后交给{@code Netty}释放
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 17:24
+ */
+@Getter
+@AllArgsConstructor
+public class EncodedResponse {
+    /**
+     * 响应信封以及返回值载荷的字节，不包含帧头
+     **/
+    private final ByteBuf body;
+
+    /**
+     * 编码返回值时使用的序列化算法，写帧头时使用；响应中没有序列化载荷时为{@code null}，帧头沿用配置的算法
+     **/
+    private final SerializerAlgorithm serializerAlgorithm;
+
+    /**
+     * 编码返回值时使用的压缩算法，写帧头时使用；为{@code null}时与序列化算法一样沿用配置
+     **/
+    private final CompressAlgorithm compressAlgorithm;
+}
@@ -0,0 +1,149 @@
+package com.phz.prpc.cache;
+
+/**
+ * <p>
+ * {@code Count-Min Sketch}访问频率估计器，{@code W-TinyLFU}用它比较候选者和淘汰者的历史访问频率
+ * </p>
+ * <br></br>
+ * <p>
+ * 每个计数器占4位，一个{@code long}存放16个计数器，每个键在同一个{@code long}的不同区段中选取4个计数器，取最小值作为频率估计。
+ * 累计增加次数达到样本数后所有计数器减半，让过去的热点逐渐冷却。本类不是线程安全的，只能在淘汰锁内使用
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 16:42
+ */
+final class FrequencySketch {
+    /**
+     * 4个哈希函数的种子
+     **/
+    private static final long[] SEED = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    /**
+     * 计数器减半时清除每个计数器最高位借来的位
+     **/
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /**
+     * 单个计数器的最大值
+     **/
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * 计数器表
+     **/
+    private final long[] table;
+
+    /**
+     * 计数器表长度掩码
+     **/
+    private final int tableMask;
+
+    /**
+     * 样本数，增加次数达到该值后计数器减半
+     **/
+    private final int sampleSize;
+
+    /**
+     * 当前样本内的增加次数
+     **/
+    private int size;
+
+    /**
+     * 构造方法，计数器表的大小与缓存容量成正比
+     *
+     * @param maximumSize 缓存最大条目数
+     **/
+    FrequencySketch(int maximumSize) {
+        int length = Integer.highestOneBit(Math.max(maximumSize, 16) - 1) << 1;
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = (int) Math.min(10L * maximumSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 估计一个键的访问频率
+     *
+     * @param hashCode 键的哈希值
+     * @return int 访问频率，最大为15
+     **/
+    int frequency(int hashCode) {
+        int hash = spread(hashCode);
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xFL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * 记录一次访问
+     *
+     * @param hashCode 键的哈希值
+     **/
+    void increment(int hashCode) {
+        int hash = spread(hashCode);
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * 计数器未饱和时加一
+     *
+     * @param index   计数器所在的{@code long}下标
+     * @param counter 计数器在{@code long}中的序号
+     * @return boolean 是否增加成功
+     **/
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xFL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 所有计数器减半
+     **/
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size >>>= 1;
+    }
+
+    /**
+     * 计算第{@code i}个哈希函数对应的{@code long}下标
+     *
+     * @param hash 打散后的哈希值
+     * @param i    哈希函数序号
+     * @return int 下标
+     **/
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEED[i]) * SEED[i];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    /**
+     * 打散哈希值，避免质量较差的{@code hashCode}集中在少数计数器上
+     *
+     * @param hashCode 原始哈希值
+     * @return int 打散后的哈希值
+     **/
+    private static int spread(int hashCode) {
+        int h = hashCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,384 @@
+package com.phz.prpc.cache;
+
+import com.phz.prpc.annotation.PrpcResponseCacheable;
+import com.phz.prpc.netty.compress.CompressAlgorithm;
+import com.phz.prpc.netty.serializer.SerializerAlgorithm;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import io.netty.util.IllegalReferenceCountException;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * 服务端响应缓存，缓存标注了{@link PrpcResponseCacheable}的方法编码完成后的响应字节，以解码后的参数作为键
+ * </p>
+ * <br></br>
+ * <p>
+ * 未命中时，编码器在写出响应的同时把信封和返回值载荷拷贝一份放入缓存；命中时不再调用方法，编码器只写帧头，
+ * 然后把缓存字节的{@code retain}视图直接交给{@code Netty}写出。缓存按最久未访问淘汰，条目过期或者被淘汰时释放字节
+ * </p>
+ * <br></br>
+ * <p>
+ * 与{@link ResultCache}一样，命中只读取{@link ConcurrentHashMap}，访问顺序的调整只在能立刻拿到淘汰锁时进行，拿不到就放弃这次记录，
+ * 热点方法的命中不会在多个事件循环之间排队；写入、淘汰和失效在淘汰锁内进行，从数据表中移除条目的一方负责释放字节
+ * </p>
+ * <br></br>
+ * <p>
+ * 每次主动失效都会递增缓存的失效代数，请求未命中时记下当时的代数，编码器写入缓存时代数已经变化说明调用期间发生过失效，
+ * 结果可能是失效前的数据，不再写入
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 17:26
+ */
+@Slf4j
+public final class ResponseCache {
+    /**
+     * 开启了响应缓存的方法到缓存的映射，服务发布时建立
+     **/
+    private static final Map<Method, ResponseCache> METHOD_CACHES = new ConcurrentHashMap<>();
+
+    /**
+     * 缓存名称到缓存的映射
+     **/
+    private static final Map<String, ResponseCache> CACHES = new ConcurrentHashMap<>();
+
+    /**
+     * 缓存名称
+     **/
+    @Getter
+    private final String name;
+
+    /**
+     * 有效期，单位{@code ns}
+     **/
+    private final long ttlNanos;
+
+    /**
+     * 最大条目数
+     **/
+    @Getter
+    private final int maximumSize;
+
+    /**
+     * 是否使用堆外内存保存响应字节
+     **/
+    @Getter
+    private final boolean offHeap;
+
+    /**
+     * 缓存数据，命中时只读取它
+     **/
+    private final Map<ArgumentsKey, Entry> data = new ConcurrentHashMap<>();
+
+    /**
+     * 按访问顺序排列的条目，只能在淘汰锁内读写，包含{@link ResponseCache#data}中的所有条目
+     **/
+    private final LinkedHashMap<ArgumentsKey, Entry> accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 淘汰锁，保护访问顺序、失效代数的修改以及条目的移除
+     **/
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * 失效代数，只在淘汰锁内修改
+     **/
+    private volatile long generation;
+
+    /**
+     * 命中次数
+     **/
+    private final LongAdder hitCount = new LongAdder();
+
+    /**
+     * 未命中次数
+     **/
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * 淘汰次数
+     **/
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * 构造方法
+     *
+     * @param name      缓存名称
+     * @param cacheable 缓存配置注解
+     **/
+    private ResponseCache(String name, PrpcResponseCacheable cacheable) {
+        if (cacheable.ttl() <= 0 || cacheable.maximumSize() <= 0) {
+            throw new IllegalArgumentException("响应缓存" + name + "的有效期和容量必须大于0");
+        }
+        this.name = name;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(cacheable.ttl());
+        this.maximumSize = cacheable.maximumSize();
+        this.offHeap = cacheable.offHeap();
+    }
+
+    /**
+     * 服务发布时扫描服务实现类，为标注了{@link PrpcResponseCacheable}的方法创建响应缓存
+     *
+     * @param serviceName  服务名
+     * @param serviceClass 服务实现类
+     **/
+    public static void register(String serviceName, Class<?> serviceClass) {
+        for (Method method : serviceClass.getMethods()) {
+            PrpcResponseCacheable cacheable = method.getAnnotation(PrpcResponseCacheable.class);
+            if (cacheable == null) {
+                continue;
+            }
+            StringJoiner joiner = new StringJoiner(",", serviceName + "#" + method.getName() + "(", ")");
+            for (Class<?> parameterType : method.getParameterTypes()) {
+                joiner.add(parameterType.getTypeName());
+            }
+            ArgumentsKey.checkParameterTypes(joiner.toString(), method.getParameterTypes());
+            ResponseCache responseCache = new ResponseCache(joiner.toString(), cacheable);
+            METHOD_CACHES.put(method, responseCache);
+            CACHES.put(responseCache.name, responseCache);
+            log.info("方法{}开启响应缓存", responseCache.name);
+        }
+    }
+
+    /**
+     * 获取方法的响应缓存
+     *
+     * @param method 服务实现类的方法
+     * @return ResponseCache 响应缓存，方法没有开启缓存时为{@code null}
+     **/
+    public static ResponseCache forMethod(Method method) {
+        return METHOD_CACHES.get(method);
+    }
+
+    /**
+     * 获取所有的响应缓存，用于主动失效和输出统计信息
+     *
+     * @return Map<String, ResponseCache> 缓存名称到缓存的只读映射
+     **/
+    public static Map<String, ResponseCache> getCaches() {
+        return Collections.unmodifiableMap(CACHES);
+    }
+
+    /**
+     * 查找参数对应的已编码响应
+     *
+     * @param key 参数键
+     * @return EncodedResponse 已编码响应，调用方负责释放其中的字节；未命中时为{@code null}
+     **/
+    public EncodedResponse get(ArgumentsKey key) {
+        Entry entry = data.get(key);
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        if (entry.expiresAt - System.nanoTime() <= 0) {
+            if (evictionLock.tryLock()) {
+                try {
+                    remove(entry);
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+            missCount.increment();
+            return null;
+        }
+        ByteBuf body;
+        try {
+            body = entry.body.retainedDuplicate();
+        } catch (IllegalReferenceCountException e) {
+            // 读取之后条目刚好被淘汰或者失效，字节已经释放，按未命中处理
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        afterRead(entry);
+        return new EncodedResponse(body, entry.serializerAlgorithm, entry.compressAlgorithm);
+    }
+
+    /**
+     * 命中后记录访问，拿不到淘汰锁时直接放弃，这只会让淘汰顺序略微失准
+     *
+     * @param entry 命中的条目
+     **/
+    private void afterRead(Entry entry) {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            // 访问顺序的LinkedHashMap在get时把条目移到队尾
+            accessOrder.get(entry.key);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 获取当前的失效代数，请求未命中、调用方法之前记下，写入缓存时传回
+     *
+     * @return long 失效代数
+     **/
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * 拷贝一份编码完成的响应字节放入缓存，超出容量时淘汰最久未访问的条目；调用开始后发生过失效时不写入
+     *
+     * @param key                 参数键
+     * @param generation          调用开始前记下的失效代数
+     * @param source              编码器的输出缓冲区
+     * @param index               响应信封在输出缓冲区中的起始下标
+     * @param length              响应信封以及返回值载荷的长度
+     * @param serializerAlgorithm 编码返回值时使用的序列化算法
+     * @param compressAlgorithm   编码返回值时使用的压缩算法
+     **/
+    public void put(ArgumentsKey key, long generation, ByteBuf source, int index, int length, SerializerAlgorithm serializerAlgorithm, CompressAlgorithm compressAlgorithm) {
+        if (generation != this.generation) {
+            return;
+        }
+        ByteBuf body = offHeap ? Unpooled.directBuffer(length, length) : Unpooled.buffer(length, length);
+        body.writeBytes(source, index, length);
+        Entry entry = new Entry(key, body, serializerAlgorithm, compressAlgorithm, System.nanoTime() + ttlNanos);
+        evictionLock.lock();
+        try {
+            // 拷贝期间可能刚好发生失效，加锁后再确认一次，失效和写入不会交错
+            if (generation != this.generation) {
+                body.release();
+                return;
+            }
+            Entry old = data.put(key, entry);
+            accessOrder.put(key, entry);
+            if (old != null) {
+                old.body.release();
+            }
+            Iterator<Entry> iterator = accessOrder.values().iterator();
+            while (data.size() > maximumSize && iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                iterator.remove();
+                if (data.remove(eldest.key, eldest)) {
+                    eldest.body.release();
+                    evictionCount.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 使一组参数对应的缓存响应失效
+     *
+     * @param args 方法参数
+     **/
+    public void invalidate(Object... args) {
+        ArgumentsKey key = new ArgumentsKey(args);
+        evictionLock.lock();
+        try {
+            generation++;
+            Entry entry = data.get(key);
+            if (entry != null) {
+                remove(entry);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 使所有缓存响应失效
+     **/
+    public void invalidateAll() {
+        evictionLock.lock();
+        try {
+            generation++;
+            for (Entry entry : data.values()) {
+                remove(entry);
+            }
+            accessOrder.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 移除一个条目并释放字节，必须持有淘汰锁
+     *
+     * @param entry 条目
+     **/
+    private void remove(Entry entry) {
+        accessOrder.remove(entry.key, entry);
+        if (data.remove(entry.key, entry)) {
+            entry.body.release();
+        }
+    }
+
+    /**
+     * 获取统计信息快照
+     *
+     * @return CacheStats 统计信息
+     **/
+    public CacheStats stats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), data.size());
+    }
+
+    /**
+     * 缓存条目
+     **/
+    private static final class Entry {
+        /**
+         * 参数键
+         **/
+        private final ArgumentsKey key;
+
+        /**
+         * 响应信封以及返回值载荷的字节，缓存持有一个引用计数
+         **/
+        private final ByteBuf body;
+
+        /**
+         * 编码返回值时使用的序列化算法
+         **/
+        private final SerializerAlgorithm serializerAlgorithm;
+
+        /**
+         * 编码返回值时使用的压缩算法
+         **/
+        private final CompressAlgorithm compressAlgorithm;
+
+        /**
+         * 过期时间点，与{@link System#nanoTime()}比较
+         **/
+        private final long expiresAt;
+
+        /**
+         * 构造方法
+         *
+         * @param key                 参数键
+         * @param body                响应字节
+         * @param serializerAlgorithm 序列化算法
+         * @param compressAlgorithm   压缩算法
+         * @param expiresAt           过期时间点
+         **/
+        private Entry(ArgumentsKey key, ByteBuf body, SerializerAlgorithm serializerAlgorithm, CompressAlgorithm compressAlgorithm, long expiresAt) {
+            this.key = key;
+            this.body = body;
+            this.serializerAlgorithm = serializerAlgorithm;
+            this.compressAlgorithm = compressAlgorithm;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
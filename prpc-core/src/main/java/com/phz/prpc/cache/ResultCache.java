@@ -0,0 +1,522 @@
+package com.phz.prpc.cache;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * 客户端方法调用结果缓存，以方法参数作为键，写入后在有效期内直接返回缓存的结果
+ * </p>
+ * <br></br>
+ * <p>
+ * 容量淘汰采用{@code W-TinyLFU}策略：新条目先进入占总容量1%的窗口区({@code LRU})，被挤出窗口后进入主区的试用段，
+ * 主区满时用{@link FrequencySketch}比较试用段头部(淘汰者)和刚进入的条目(候选者)的历史访问频率，频率低的被淘汰；
+ * 试用段中再次被访问的条目晋升到占主区80%的保护段。所有条目的有效期相同，写入顺序就是过期顺序，条目另外串在一条写入顺序链表上，
+ * 每次写入时先从链表头部清理已经过期的条目，读到过期条目时也会顺手移除，过期条目不会一直占着容量
+ * </p>
+ * <br></br>
+ * <p>
+ * 读取只访问{@link ConcurrentHashMap}，访问顺序的调整只在能立刻拿到淘汰锁时进行，拿不到就放弃这次记录，读取永远不会阻塞；
+ * 同一组参数同时未命中时只有一个线程发起加载，其余线程等待它的结果，避免缓存失效瞬间的请求风暴打到服务端
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 16:46
+ */
+public final class ResultCache {
+    /**
+     * 所有方法的结果缓存，键为缓存名称，同一个服务方法的多个代理对象共用一个缓存
+     **/
+    private static final Map<String, ResultCache> CACHES = new ConcurrentHashMap<>();
+
+    /**
+     * 窗口区占总容量的百分比
+     **/
+    private static final int WINDOW_PERCENT = 1;
+
+    /**
+     * 保护段占主区容量的百分比
+     **/
+    private static final int PROTECTED_PERCENT = 80;
+
+    /**
+     * 缓存名称
+     **/
+    @Getter
+    private final String name;
+
+    /**
+     * 有效期，单位{@code ns}
+     **/
+    private final long ttlNanos;
+
+    /**
+     * 最大条目数
+     **/
+    @Getter
+    private final int maximumSize;
+
+    /**
+     * 窗口区最大条目数
+     **/
+    private final int windowMaximum;
+
+    /**
+     * 保护段最大条目数
+     **/
+    private final int protectedMaximum;
+
+    /**
+     * 缓存数据
+     **/
+    private final Map<ArgumentsKey, Node> data = new ConcurrentHashMap<>();
+
+    /**
+     * 正在加载中的键，用于合并同一组参数的并发加载
+     **/
+    private final SingleFlight loading = new SingleFlight();
+
+    /**
+     * 淘汰锁，保护下面的访问顺序队列和频率估计器
+     **/
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * 访问频率估计器
+     **/
+    private final FrequencySketch sketch;
+
+    /**
+     * 窗口区
+     **/
+    private final AccessOrderQueue window = new AccessOrderQueue();
+
+    /**
+     * 主区试用段
+     **/
+    private final AccessOrderQueue probation = new AccessOrderQueue();
+
+    /**
+     * 主区保护段
+     **/
+    private final AccessOrderQueue protectedQueue = new AccessOrderQueue();
+
+    /**
+     * 写入顺序链表的头节点，最早过期，只能在淘汰锁内读写
+     **/
+    private Node writeHead;
+
+    /**
+     * 写入顺序链表的尾节点，只能在淘汰锁内读写
+     **/
+    private Node writeTail;
+
+    /**
+     * 命中次数
+     **/
+    private final LongAdder hitCount = new LongAdder();
+
+    /**
+     * 未命中次数
+     **/
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * 淘汰次数
+     **/
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * 构造方法
+     *
+     * @param name        缓存名称
+     * @param ttl         有效期，单位{@code ms}
+     * @param maximumSize 最大条目数
+     **/
+    private ResultCache(String name, long ttl, int maximumSize) {
+        if (ttl <= 0 || maximumSize <= 0) {
+            throw new IllegalArgumentException("缓存" + name + "的有效期和容量必须大于0");
+        }
+        this.name = name;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.maximumSize = maximumSize;
+        this.windowMaximum = Math.max(1, maximumSize * WINDOW_PERCENT / 100);
+        this.protectedMaximum = (maximumSize - windowMaximum) * PROTECTED_PERCENT / 100;
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * 获取一个方法的结果缓存，不存在则创建
+     *
+     * @param name        缓存名称
+     * @param ttl         有效期，单位{@code ms}
+     * @param maximumSize 最大条目数
+     * @return ResultCache 结果缓存
+     **/
+    public static ResultCache forMethod(String name, long ttl, int maximumSize) {
+        return CACHES.computeIfAbsent(name, key -> new ResultCache(key, ttl, maximumSize));
+    }
+
+    /**
+     * 获取所有的结果缓存，用于输出统计信息
+     *
+     * @return Map<String, ResultCache> 缓存名称到缓存的只读映射
+     **/
+    public static Map<String, ResultCache> getCaches() {
+        return Collections.unmodifiableMap(CACHES);
+    }
+
+    /**
+     * 获取参数对应的结果，未命中或者已过期时调用加载方法，非{@code null}的结果写入缓存
+     *
+     * @param args   方法参数
+     * @param loader 加载方法，即真正的远程调用
+     * @return Object 方法结果
+     * @throws Exception 加载方法抛出的异常
+     **/
+    public Object get(Object[] args, Callable<Object> loader) throws Exception {
+        ArgumentsKey key = new ArgumentsKey(args);
+        Node node = data.get(key);
+        if (node != null) {
+            if (node.expiresAt - System.nanoTime() > 0) {
+                hitCount.increment();
+                afterRead(node);
+                return node.value;
+            }
+            if (evictionLock.tryLock()) {
+                try {
+                    remove(node);
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+        }
+        missCount.increment();
+        return load(key, loader);
+    }
+
+    /**
+     * 清空缓存
+     **/
+    public void invalidateAll() {
+        evictionLock.lock();
+        try {
+            for (Node node : data.values()) {
+                remove(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 获取统计信息快照
+     *
+     * @return CacheStats 统计信息
+     **/
+    public CacheStats stats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), data.size());
+    }
+
+    /**
+     * 加载结果，同一组参数只有第一个未命中的线程真正调用加载方法
+     *
+     * @param key    参数键
+     * @param loader 加载方法
+     * @return Object 方法结果
+     * @throws Exception 加载方法抛出的异常
+     **/
+    private Object load(ArgumentsKey key, Callable<Object> loader) throws Exception {
+        return loading.execute(key, () -> {
+            Object value = loader.call();
+            if (value != null) {
+                put(key, value);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * 写入一个条目，新条目进入窗口区，然后按需淘汰
+     *
+     * @param key   参数键
+     * @param value 方法结果
+     **/
+    private void put(ArgumentsKey key, Object value) {
+        Node node = new Node(key, value, System.nanoTime() + ttlNanos);
+        evictionLock.lock();
+        try {
+            Node old = data.put(key, node);
+            if (old != null) {
+                unlink(old);
+            }
+            sketch.increment(key.hashCode());
+            window.addLast(node);
+            linkWrite(node);
+            expire();
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 命中后记录访问，拿不到淘汰锁时直接放弃，这只会让淘汰策略略微失准
+     *
+     * @param node 命中的条目
+     **/
+    private void afterRead(Node node) {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            if (node.queue == null) {
+                return;
+            }
+            sketch.increment(node.key.hashCode());
+            if (node.queue == probation) {
+                probation.remove(node);
+                protectedQueue.addLast(node);
+                while (protectedQueue.size > protectedMaximum) {
+                    probation.addLast(protectedQueue.pollFirst());
+                }
+            } else {
+                node.queue.moveToBack(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 窗口区溢出的条目转入试用段，总条目数超出容量时在淘汰者和候选者中淘汰访问频率较低的一个
+     **/
+    private void evict() {
+        while (window.size > windowMaximum) {
+            probation.addLast(window.pollFirst());
+        }
+        while (window.size + probation.size + protectedQueue.size > maximumSize) {
+            Node victim = probation.head;
+            Node candidate = probation.tail;
+            if (victim == null) {
+                victim = protectedQueue.head;
+                candidate = victim;
+            }
+            Node evicted = victim;
+            if (candidate != victim && sketch.frequency(candidate.key.hashCode()) <= sketch.frequency(victim.key.hashCode())) {
+                evicted = candidate;
+            }
+            remove(evicted);
+            evictionCount.increment();
+        }
+    }
+
+    /**
+     * 从写入顺序链表头部移除所有已经过期的条目
+     **/
+    private void expire() {
+        long now = System.nanoTime();
+        while (writeHead != null && writeHead.expiresAt - now <= 0) {
+            remove(writeHead);
+        }
+    }
+
+    /**
+     * 移除一个条目
+     *
+     * @param node 条目
+     **/
+    private void remove(Node node) {
+        data.remove(node.key, node);
+        unlink(node);
+    }
+
+    /**
+     * 把条目从访问顺序队列和写入顺序链表中摘下，已经摘下的条目不做处理
+     *
+     * @param node 条目
+     **/
+    private void unlink(Node node) {
+        if (node.queue == null) {
+            return;
+        }
+        node.queue.remove(node);
+        if (node.writePrev == null) {
+            writeHead = node.writeNext;
+        } else {
+            node.writePrev.writeNext = node.writeNext;
+        }
+        if (node.writeNext == null) {
+            writeTail = node.writePrev;
+        } else {
+            node.writeNext.writePrev = node.writePrev;
+        }
+        node.writePrev = null;
+        node.writeNext = null;
+    }
+
+    /**
+     * 追加到写入顺序链表尾部
+     *
+     * @param node 条目
+     **/
+    private void linkWrite(Node node) {
+        node.writePrev = writeTail;
+        if (writeTail == null) {
+            writeHead = node;
+        } else {
+            writeTail.writeNext = node;
+        }
+        writeTail = node;
+    }
+
+    /**
+     * 缓存条目，同时是访问顺序队列中的节点
+     **/
+    private static final class Node {
+        /**
+         * 参数键
+         **/
+        private final ArgumentsKey key;
+
+        /**
+         * 方法结果
+         **/
+        private final Object value;
+
+        /**
+         * 过期时间点，与{@link System#nanoTime()}比较
+         **/
+        private final long expiresAt;
+
+        /**
+         * 所在的队列，已经被移除时为{@code null}，只能在淘汰锁内读写
+         **/
+        private AccessOrderQueue queue;
+
+        /**
+         * 前驱节点
+         **/
+        private Node prev;
+
+        /**
+         * 后继节点
+         **/
+        private Node next;
+
+        /**
+         * 写入顺序链表中的前驱节点
+         **/
+        private Node writePrev;
+
+        /**
+         * 写入顺序链表中的后继节点
+         **/
+        private Node writeNext;
+
+        /**
+         * 构造方法
+         *
+         * @param key       参数键
+         * @param value     方法结果
+         * @param expiresAt 过期时间点
+         **/
+        private Node(ArgumentsKey key, Object value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 按访问顺序排列的侵入式双向链表，头部最久未被访问
+     **/
+    private static final class AccessOrderQueue {
+        /**
+         * 头节点
+         **/
+        private Node head;
+
+        /**
+         * 尾节点
+         **/
+        private Node tail;
+
+        /**
+         * 节点个数
+         **/
+        private int size;
+
+        /**
+         * 追加到尾部
+         *
+         * @param node 节点
+         **/
+        private void addLast(Node node) {
+            node.queue = this;
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        /**
+         * 移除节点
+         *
+         * @param node 节点
+         **/
+        private void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.queue = null;
+            size--;
+        }
+
+        /**
+         * 移动到尾部
+         *
+         * @param node 节点
+         **/
+        private void moveToBack(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        /**
+         * 移除并返回头节点
+         *
+         * @return Node 头节点，队列为空时为{@code null}
+         **/
+        private Node pollFirst() {
+            Node node = head;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+    }
+}
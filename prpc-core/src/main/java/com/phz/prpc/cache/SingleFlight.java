@@ -0,0 +1,113 @@
+package com.phz.prpc.cache;
+
+import com.phz.prpc.annotation.PrpcSingleFlight;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * <p>
+ * 相同调用合并器，同一个键同时只有一个调用真正执行，其余调用共享它的结果
+ * </p>
+ * <br></br>
+ * <p>
+ * 客户端使用阻塞的{@link SingleFlight#execute}，服务端{@code IO}线程不能阻塞，使用{@link SingleFlight#submit}拿到结果后再异步写回
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 17:52
+ */
+@Slf4j
+public final class SingleFlight {
+    /**
+     * 服务端开启了调用合并的方法到合并器的映射，服务发布时建立
+     **/
+    private static final Map<Method, SingleFlight> METHOD_FLIGHTS = new ConcurrentHashMap<>();
+
+    /**
+     * 正在执行的调用
+     **/
+    private final Map<ArgumentsKey, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 服务发布时扫描服务实现类，为标注了{@link PrpcSingleFlight}的方法创建合并器
+     *
+     * @param serviceName  服务名
+     * @param serviceClass 服务实现类
+     **/
+    public static void register(String serviceName, Class<?> serviceClass) {
+        for (Method method : serviceClass.getMethods()) {
+            if (method.isAnnotationPresent(PrpcSingleFlight.class)) {
+                METHOD_FLIGHTS.put(method, new SingleFlight());
+                log.info("服务{}的方法{}开启调用合并", serviceName, method.getName());
+            }
+        }
+    }
+
+    /**
+     * 获取服务端方法的合并器
+     *
+     * @param method 服务实现类的方法
+     * @return SingleFlight 合并器，方法没有开启调用合并时为{@code null}
+     **/
+    public static SingleFlight forMethod(Method method) {
+        return METHOD_FLIGHTS.get(method);
+    }
+
+    /**
+     * 执行调用，相同的键已经有调用在执行时阻塞等待它的结果
+     *
+     * @param key  调用键
+     * @param call 调用
+     * @return Object 调用结果
+     * @throws Exception 调用抛出的异常
+     **/
+    public Object execute(ArgumentsKey key, Callable<Object> call) throws Exception {
+        try {
+            return submit(key, call).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * 提交调用，相同的键已经有调用在执行时直接返回它的结果，否则在当前线程中执行调用，返回时已经完成
+     *
+     * @param key  调用键
+     * @param call 调用
+     * @return CompletableFuture<Object> 调用结果，调用抛出的异常原样作为失败原因
+     **/
+    public CompletableFuture<Object> submit(ArgumentsKey key, Callable<Object> call) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = calls.putIfAbsent(key, future);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        try {
+            future.complete(call.call());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            calls.remove(key, future);
+        }
+        return future;
+    }
+
+    /**
+     * 正在执行的调用个数
+     *
+     * @return int 调用个数
+     **/
+    public int inFlight() {
+        return calls.size();
+    }
+}
@@ -28,6 +28,16 @@ public class PrpcProperties {
      **/
     private String serializerAlgorithm = "JDK";
 
+    /**
+     * 服务端额外监听的{@code Unix}域套接字路径，为空时不监听，需要平台支持{@code epoll}；配置后随实例发布到注册中心
+     **/
+    private String domainSocketPath;
+
+    /**
+     * 客户端是否优先通过{@code Unix}域套接字连接同一台主机上发布了套接字路径的实例，连接失败时退回{@code TCP}
+     **/
+    private Boolean domainSocketPreferred = true;
+
     /**
      * 超时重连的次数
      **/
@@ -39,7 +49,7 @@ public class PrpcProperties {
     private Integer timeOut = 2000;
 
     /**
-     * {@code Rpc}从注册中心拉取到可用服务后，使用何种负载均衡算法选择服务
+     * {@code Rpc}从注册中心拉取到可用服务后，使用何种负载均衡算法选择服务，可选{@code random}、{@code polling}、{@code hash}、{@code consistentHash}、{@code leastActive}、{@code p2cEwma}、{@code weightedPolling}、{@code maglev}、{@code loadAware}
      **/
     private String loadBalanceAlgorithm = "random";
 
@@ -48,6 +58,16 @@ public class PrpcProperties {
      **/
     private Integer virtualNodeNum = 100;
 
+    /**
+     * {@link com.phz.prpc.netty.loadBalance.LoadBalanceAlgorithm#maglev}的查找表大小，应该是远大于实例数的质数，不是质数时取下一个质数
+     **/
+    private Integer maglevTableSize = 65537;
+
+    /**
+     * 服务端注册到注册中心的实例权重，供{@link com.phz.prpc.netty.loadBalance.LoadBalanceAlgorithm#weightedPolling}使用，0表示使用本机核心数
+     **/
+    private Integer weight = 0;
+
     /**
      * 压缩算法
      **/
@@ -59,15 +79,122 @@ public class PrpcProperties {
     private String proxy = "CGLIB";
 
     /**
-     * 注册中心
+     * 服务端方法抛出异常时，随响应传回的堆栈最大帧数，0表示不传堆栈；方法声明抛出的业务异常始终不传堆栈
+     **/
+    private Integer exceptionStackDepth = 8;
+
+    /**
+     * 服务由当前进程提供时的进程内调用方式，可选{@code off}、{@code reference}、{@code clone}：{@code off}表示始终走网络，
+     * {@code reference}表示直接调用并按引用传递参数和返回值，{@code clone}表示直接调用但在内存中深拷贝参数和返回值
+     **/
+    private String localInvoke = "reference";
+
+    /**
+     * 是否开启消息对象回收，开启后请求和响应消息从对象池中分配，编码发送或者分发处理完成后立即归还，降低高并发下的{@code GC}频率
+     **/
+    private Boolean messageRecycle = false;
+
+    /**
+     * 是否开启回收消息的泄漏检测，用于排查消息没有被归还的问题，采样级别沿用{@code io.netty.leakDetection.level}
+     **/
+    private Boolean messageLeakDetection = false;
+
+    /**
+     * 是否开启客户端请求合批，开启后发往同一个服务实例的请求在很短的时间窗口内合并成一个批量帧发送
+     **/
+    private Boolean requestBatch = false;
+
+    /**
+     * 请求合批的最大等待时间，单位{@code μs}
+     **/
+    private Integer batchMaxDelay = 200;
+
+    /**
+     * 一个批量帧最多包含的请求数，攒够后立即发送
+     **/
+    private Integer batchMaxSize = 64;
+
+    /**
+     * 服务端并行处理批量请求的线程数，0表示使用{@code CPU}核心数
+     **/
+    private Integer batchDispatchThreads = 0;
+
+    /**
+     * 服务端批量请求业务线程池的等待队列长度，队列满后的请求直接以错误响应返回
+     **/
+    private Integer batchDispatchQueueSize = 1024;
+
+    /**
+     * 服务端是否在响应帧头中附带负载报告，供客户端{@link com.phz.prpc.netty.loadBalance.LoadBalanceAlgorithm#loadAware}使用
+     **/
+    private Boolean loadReport = false;
+
+    /**
+     * 同一个连接上两次负载报告的最小间隔，单位{@code ms}
+     **/
+    private Integer loadReportInterval = 100;
+
+    /**
+     * 注册中心，可选{@code nacos}、{@code zookeeper}、{@code static}、{@code memory}，{@code static}表示从{@link PrpcProperties#staticRegistryFile}读取服务实例，
+     * {@code memory}表示只在当前进程内注册和发现，用于压测和测试
      **/
     private String registry;
 
     /**
-     * 注册中心地址
+     * 注册中心地址，{@code zookeeper}注册中心配置为{@code embedded}时启动进程内的{@code Curator TestingServer}，需要自行加入{@code curator-test}依赖
      **/
     private String registryAddress;
 
+    /**
+     * 是否在本地保存注册中心快照，启动时先用快照中的实例路由，注册中心在后台连接后再以推送的实例为准
+     **/
+    private Boolean registrySnapshot = true;
+
+    /**
+     * 注册中心快照文件的目录，为空时使用{@code ${user.home}/.prpc}，文件名由注册中心类型和地址决定
+     **/
+    private String registrySnapshotDir;
+
+    /**
+     * 静态注册中心的实例文件，每行一个服务，格式为{@code 服务名=host:port@权重|zone/rack/host,host:port}，权重和位置都可以省略，{@code #}开头的行是注释
+     **/
+    private String staticRegistryFile;
+
+    /**
+     * 检查静态注册中心实例文件是否变化的间隔，单位{@code ms}
+     **/
+    private Integer staticRegistryReloadInterval = 2000;
+
+    /**
+     * 本进程所在的可用区，服务端注册时作为元数据发布，客户端开启{@link PrpcProperties#localityRouting}时据此优先选择同一可用区的实例
+     **/
+    private String localityZone;
+
+    /**
+     * 本进程所在的机架，只在可用区相同时参与比较
+     **/
+    private String localityRack;
+
+    /**
+     * 本进程所在的主机标签，为空时使用本机主机名
+     **/
+    private String localityHost;
+
+    /**
+     * 是否开启就近路由，开启后负载均衡算法只在同主机、同机架、同可用区中最近的一层实例中选择，这一层容量不足时才扩大到下一层
+     **/
+    private Boolean localityRouting = false;
+
+    /**
+     * 就近路由中一层实例至少要有多少个健康实例才使用这一层，否则扩大到下一层
+     **/
+    private Integer localityMinInstances = 1;
+
+    /**
+     * 就近路由中一层实例的健康权重至少要占这一层总权重的比例，低于这个比例说明这一层大面积不可用，扩大到下一层
+     **/
+    private Double localityMinHealthyRatio = 0.5;
+
     /**
      * {@code Zookeeper} {@code prpc} 服务根目录
      **/
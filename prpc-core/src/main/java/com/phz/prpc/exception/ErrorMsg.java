@@ -54,6 +54,10 @@ public enum ErrorMsg {
      * 未知的魔数
      **/
     UNKNOWN_MAGIC_CODE("未知的魔数"),
+    /**
+     * 帧头中的协议版本与本端不一致，信封格式无法保证兼容
+     **/
+    UNSUPPORTED_PROTOCOL_VERSION("不支持的协议版本"),
     /**
      * 反序列化失败
      **/
@@ -82,7 +86,31 @@ public enum ErrorMsg {
     /**
      * Hessian序列化异常
      **/
-    HESSIAN_SERIALIZE_FAILED("Hessian序列化异常");
+    HESSIAN_SERIALIZE_FAILED("Hessian序列化异常"),
+    /**
+     * 聚合调用的批量方法声明错误
+     **/
+    ILLEGAL_BULK_METHOD("聚合调用的批量方法声明错误"),
+    /**
+     * 批量方法返回的结果无法与请求的键对应
+     **/
+    BULK_RESULT_MISMATCH("批量方法返回的结果无法与请求的键对应"),
+    /**
+     * 聚合调用的领头者在收集键时被中断，窗口中的调用都不会发出
+     **/
+    AGGREGATE_LEADER_INTERRUPTED("聚合调用的领头者被中断"),
+    /**
+     * 直连或者静态注册中心的服务实例地址格式错误
+     **/
+    ILLEGAL_ENDPOINT("服务实例地址格式错误"),
+    /**
+     * 嵌入式注册中心启动失败
+     **/
+    EMBEDDED_REGISTRY_FAILED("嵌入式注册中心启动失败"),
+    /**
+     * 批量请求业务线程池的等待队列已满，请求被拒绝
+     **/
+    BATCH_DISPATCH_REJECTED("服务端繁忙，批量请求被拒绝");
 
     /**
      * 错误信息
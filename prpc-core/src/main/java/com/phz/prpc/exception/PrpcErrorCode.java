@@ -0,0 +1,18 @@
+package com.phz.prpc.exception;
+
+/**
+ * <p>
+ * 业务异常可以实现此接口携带应用错误码，服务端方法抛出此类异常时，错误码会随响应信封一起传回客户端，由{@link PrpcRemoteException#getErrorCode()}取出
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 14:48
+ */
+public interface PrpcErrorCode {
+    /**
+     * 获取应用错误码
+     *
+     * @return int 错误码
+     **/
+    int getErrorCode();
+}
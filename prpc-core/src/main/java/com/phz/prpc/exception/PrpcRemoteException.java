@@ -0,0 +1,50 @@
+package com.phz.prpc.exception;
+
+import lombok.Getter;
+
+/**
+ * <p>
+ * 服务端方法调用失败后，客户端根据响应信封中的异常类名、异常信息以及错误码重建出来的轻量级异常
+ * </p>
+ * <p>
+ * 创建时不会抓取客户端本地的调用栈，如果服务端传回了截断后的堆栈，则以服务端堆栈作为本异常的堆栈
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 13:02
+ */
+@Getter
+public class PrpcRemoteException extends RuntimeException {
+    /**
+     * 服务端原始异常的全限定类名
+     **/
+    private final String remoteClassName;
+
+    /**
+     * 错误码
+     **/
+    private final int errorCode;
+
+    /**
+     * 构造方法，传入服务端异常类名、错误码以及异常信息
+     *
+     * @param remoteClassName 服务端原始异常的全限定类名
+     * @param errorCode       错误码
+     * @param message         异常信息
+     **/
+    public PrpcRemoteException(String remoteClassName, int errorCode, String message) {
+        super(remoteClassName + ": " + message);
+        this.remoteClassName = remoteClassName;
+        this.errorCode = errorCode;
+    }
+
+    /**
+     * 不抓取本地调用栈，避免重建异常的开销
+     *
+     * @return Throwable 当前异常
+     **/
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
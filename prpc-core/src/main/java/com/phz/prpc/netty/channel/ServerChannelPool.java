@@ -1,9 +1,11 @@
 package com.phz.prpc.netty.channel;
 
+import com.phz.prpc.registry.Endpoint;
 import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>
@@ -17,9 +19,14 @@ import java.util.Map;
 public final class ServerChannelPool {
 
     /**
-     * 以{@code hostName:port}为键缓存当前客户端所连接的所有服务对应的通信{@link Channel}
+     * 连接上记录的服务实例，解码响应时据此找到实例，不需要根据远端地址查找
      **/
-    private static final Map<String, Channel> CHANNEL_POOL = new HashMap<>();
+    public static final AttributeKey<Endpoint> ENDPOINT = AttributeKey.valueOf("prpc.endpoint");
+
+    /**
+     * 以{@link Endpoint}为键缓存当前客户端所连接的所有服务对应的通信{@link Channel}，多个调用线程并发读写
+     **/
+    private static final Map<Endpoint, Channel> CHANNEL_POOL = new ConcurrentHashMap<>();
 
     /**
      * 私有构造方法，禁用手动实例化
@@ -47,40 +54,39 @@ public final class ServerChannelPool {
     }
 
     /**
-     * 往{@link ServerChannelPool}中添加{@link Channel}
+     * 往{@link ServerChannelPool}中添加{@link Channel}，同时在{@link Channel}上记录对应的服务实例
      *
-     * @param hostName 主机名
-     * @param port     端口
+     * @param endpoint 服务实例
      * @param channel  {@link Channel}对象
      **/
-    public void putChannel(String hostName, int port, Channel channel) {
-        CHANNEL_POOL.put(hostName + ":" + port, channel);
+    public void putChannel(Endpoint endpoint, Channel channel) {
+        channel.attr(ENDPOINT).set(endpoint);
+        CHANNEL_POOL.put(endpoint, channel);
     }
 
     /**
      * 移除一个{@link Channel}
      *
-     * @param hostName 主机名
-     * @param port     端口
+     * @param endpoint 服务实例
      **/
-    public void removeChannel(String hostName, int port) {
-        CHANNEL_POOL.remove(hostName + ":" + port);
+    public void removeChannel(Endpoint endpoint) {
+        CHANNEL_POOL.remove(endpoint);
     }
 
     /**
-     * 根据服务主机名端口获取对应的{@link Channel}
+     * 根据服务实例获取对应的{@link Channel}
      *
-     * @param hostName 主机名
-     * @param port     端口
+     * @param endpoint 服务实例
      * @return Channel {@link Channel}对象
      **/
-    public Channel getChannel(String hostName, int port) {
-        String key = hostName + ":" + port;
-        Channel channel = CHANNEL_POOL.get(key);
+    public Channel getChannel(Endpoint endpoint) {
+        Channel channel = CHANNEL_POOL.get(endpoint);
         if (channel != null && channel.isActive()) {
             return channel;
         }
-        CHANNEL_POOL.remove(key);
+        if (channel != null) {
+            CHANNEL_POOL.remove(endpoint, channel);
+        }
         return null;
     }
-}
\ No newline at end of file
+}
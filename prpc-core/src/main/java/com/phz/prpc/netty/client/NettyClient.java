@@ -5,21 +5,29 @@ import com.phz.prpc.exception.ErrorMsg;
 import com.phz.prpc.exception.PrpcException;
 import com.phz.prpc.netty.channel.ServerChannelPool;
 import com.phz.prpc.netty.handler.RpcResponseMessageHandler;
+import com.phz.prpc.netty.loadBalance.EndpointStats;
 import com.phz.prpc.netty.message.PingMessage;
 import com.phz.prpc.netty.message.RpcRequestMessage;
 import com.phz.prpc.netty.protocol.MessageCodecSharable;
 import com.phz.prpc.netty.protocol.ProtocolFrameDecoder;
 import com.phz.prpc.proxy.PrpcJdkProxy;
+import com.phz.prpc.registry.Endpoint;
+import com.phz.prpc.registry.InMemoryRegistry;
+import com.phz.prpc.registry.Locality;
 import com.phz.prpc.registry.NacosRegistry;
 import com.phz.prpc.registry.ServiceRegistry;
+import com.phz.prpc.registry.StaticRegistry;
 import com.phz.prpc.registry.ZookeeperRegistry;
 import com.phz.prpc.spring.SpringBeanUtil;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.ChannelInputShutdownEvent;
-import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleState;
@@ -28,8 +36,10 @@ import io.netty.handler.timeout.IdleStateHandler;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
-import java.net.InetSocketAddress;
+import java.net.InetAddress;
 import java.nio.channels.Selector;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -37,6 +47,10 @@ import java.util.concurrent.TimeUnit;
  * <p>
  * 一个{@code prpc}客户端所拥有的唯一发送{@code Netty}网络请求服务的实例，通过注册中心获取到的目标可用服务集合，通过一定的策略从中选取一个服务并请求
  * </p>
+ * <br></br>
+ * <p>
+ * 实例发布了{@code Unix}域套接字并且与客户端在同一台主机上时，优先通过域套接字连接，连接失败再使用{@code TCP}
+ * </p>
  *
  * @author PengHuanZhi
  * @date 2022年01月11日 9:38
@@ -56,15 +70,28 @@ public final class NettyClient {
      **/
     private final NioEventLoopGroup group;
     /**
-     * 服务注册工具类
+     * {@code Unix}域套接字的启动类对象，没有开启或者平台不支持{@code epoll}时为{@code null}
+     **/
+    private final Bootstrap domainBootstrap;
+    /**
+     * {@code Unix}域套接字的事件循环组，没有开启或者平台不支持{@code epoll}时为{@code null}
+     **/
+    private final EventLoopGroup domainGroup;
+    /**
+     * 服务注册工具类，第一次需要时创建，没有配置外部注册中心时是{@link StaticRegistry}
      **/
-    private ServiceRegistry serviceRegistry;
+    private volatile ServiceRegistry serviceRegistry;
 
     /**
      * {@code Prpc}配置类
      **/
     private final PrpcProperties prpcProperties;
 
+    /**
+     * 请求合批器，没有开启请求合批时为{@code null}
+     **/
+    private final RequestBatcher requestBatcher;
+
     /**
      * {@link NacosRegistry}表示Nacos作为注册中心
      **/
@@ -75,22 +102,82 @@ public final class NettyClient {
      **/
     private static final String ZOOKEEPER = "zookeeper";
 
+    /**
+     * {@link InMemoryRegistry}表示使用进程内注册中心
+     **/
+    private static final String MEMORY = "memory";
+
+    /**
+     * {@code Unix}域套接字的连接超时时间，单位{@code ms}，同一台主机上的连接应该立即完成，超时后改用{@code TCP}
+     **/
+    private static final int DOMAIN_SOCKET_CONNECT_TIMEOUT = 1000;
+
+    /**
+     * 静态注册中心，保存直连实例
+     **/
+    private final StaticRegistry staticRegistry;
+
     /**
      * 私有构造方法，禁用手动实例化<br>
      * 第一次加载会将{@link ServerChannelPool }单例取出赋值到当前类属性，然后创建一个{@link NioEventLoopGroup}，最后使用这个请求事件循环组创建好一个{@code Netty}网络请求对象
      **/
     private NettyClient() {
         prpcProperties = SpringBeanUtil.getBean(PrpcProperties.class);
-        if (NACOS.equalsIgnoreCase(prpcProperties.getRegistry())) {
-            serviceRegistry = NacosRegistry.getInstance();
-        } else if (ZOOKEEPER.equalsIgnoreCase(prpcProperties.getRegistry())) {
-            serviceRegistry = ZookeeperRegistry.getInstance();
-        }
+        staticRegistry = StaticRegistry.getInstance();
         serverChannelPool = ServerChannelPool.getInstance();
+        requestBatcher = Boolean.TRUE.equals(prpcProperties.getRequestBatch()) ? new RequestBatcher(prpcProperties.getBatchMaxDelay(), prpcProperties.getBatchMaxSize()) : null;
         group = new NioEventLoopGroup();
         LoggingHandler loggingHandler = new LoggingHandler(LogLevel.INFO);
         MessageCodecSharable messageCodecSharable = new MessageCodecSharable();
         RpcResponseMessageHandler rpcResponseMessageHandler = new RpcResponseMessageHandler();
+        ChannelInitializer<Channel> handler = new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                // 用来判断是不是 读空闲时间过长，或写空闲时间过长
+                // 3s 内如果没有向服务器写数据，会触发一个 IdleState#WRITER_IDLE 事件
+                ch.pipeline().addLast(new IdleStateHandler(0, 3, 0));
+                // ChannelDuplexHandler 可以同时作为入站和出站处理器
+                ch.pipeline().addLast(new ChannelDuplexHandler() {
+                    /**
+                     * 用来触发特殊事件
+                     **/
+                    @Override
+                    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                        if (evt instanceof IdleStateEvent) {
+                            IdleStateEvent event = (IdleStateEvent) evt;
+                            // 触发了写空闲事件
+                            if (event.state() == IdleState.WRITER_IDLE) {
+                                log.info("3s 没有写数据了，发送一个心跳包");
+                                ctx.writeAndFlush(new PingMessage());
+                            }
+                        } else if (evt instanceof ChannelInputShutdownEvent) {
+                            log.info("一个连接的远端关闭");
+                        } else {
+                            super.userEventTriggered(ctx, evt);
+                        }
+                    }
+
+                    /**
+                     * 用来触发异常事件
+                     **/
+                    @Override
+                    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                        log.info("发现异常 : {}", cause.getMessage());
+                        Channel channel = ctx.channel();
+                        Channel parent = channel.parent();
+                        if (parent != null) {
+                            parent.close();
+                        } else {
+                            channel.close();
+                        }
+                    }
+                });
+                ch.pipeline().addLast(new ProtocolFrameDecoder());
+                ch.pipeline().addLast(loggingHandler);
+                ch.pipeline().addLast(messageCodecSharable);
+                ch.pipeline().addLast(rpcResponseMessageHandler);
+            }
+        };
         bootstrap = new Bootstrap()
                 .group(group)
                 .channel(NioSocketChannel.class)
@@ -99,54 +186,19 @@ public final class NettyClient {
                 //TCP默认开启了 Nagle 算法，该算法的作用是尽可能发送大数据快，减少网络传输。
                 .option(ChannelOption.TCP_NODELAY, true)
                 .option(ChannelOption.ALLOW_HALF_CLOSURE, true)
-                .handler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    protected void initChannel(SocketChannel ch) {
-                        // 用来判断是不是 读空闲时间过长，或写空闲时间过长
-                        // 3s 内如果没有向服务器写数据，会触发一个 IdleState#WRITER_IDLE 事件
-                        ch.pipeline().addLast(new IdleStateHandler(0, 3, 0));
-                        // ChannelDuplexHandler 可以同时作为入站和出站处理器
-                        ch.pipeline().addLast(new ChannelDuplexHandler() {
-                            /**
-                             * 用来触发特殊事件
-                             **/
-                            @Override
-                            public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
-                                if (evt instanceof IdleStateEvent) {
-                                    IdleStateEvent event = (IdleStateEvent) evt;
-                                    // 触发了写空闲事件
-                                    if (event.state() == IdleState.WRITER_IDLE) {
-                                        log.info("3s 没有写数据了，发送一个心跳包");
-                                        ctx.writeAndFlush(new PingMessage());
-                                    }
-                                } else if (evt instanceof ChannelInputShutdownEvent) {
-                                    log.info("一个连接的远端关闭");
-                                } else {
-                                    super.userEventTriggered(ctx, evt);
-                                }
-                            }
-
-                            /**
-                             * 用来触发异常事件
-                             **/
-                            @Override
-                            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-                                log.info("发现异常 : {}", cause.getMessage());
-                                Channel channel = ctx.channel();
-                                Channel parent = channel.parent();
-                                if (parent != null) {
-                                    parent.close();
-                                } else {
-                                    channel.close();
-                                }
-                            }
-                        });
-                        ch.pipeline().addLast(new ProtocolFrameDecoder());
-                        ch.pipeline().addLast(loggingHandler);
-                        ch.pipeline().addLast(messageCodecSharable);
-                        ch.pipeline().addLast(rpcResponseMessageHandler);
-                    }
-                });
+                .handler(handler);
+        if (Boolean.TRUE.equals(prpcProperties.getDomainSocketPreferred()) && Epoll.isAvailable()) {
+            domainGroup = new EpollEventLoopGroup();
+            domainBootstrap = new Bootstrap()
+                    .group(domainGroup)
+                    .channel(EpollDomainSocketChannel.class)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, DOMAIN_SOCKET_CONNECT_TIMEOUT)
+                    .option(ChannelOption.ALLOW_HALF_CLOSURE, true)
+                    .handler(handler);
+        } else {
+            domainGroup = null;
+            domainBootstrap = null;
+        }
     }
 
     /**
@@ -170,62 +222,103 @@ public final class NettyClient {
 
 
     /**
-     * 通过主机名和端口号获取{@link Channel}，如果没有找到，会尝试重连
+     * 获取服务实例的{@link Channel}，如果没有找到，会尝试重连
      *
-     * @param hostName 主机名
-     * @param port     端口号
+     * @param endpoint 服务实例
      * @return Channel 目标服务的{@link Channel}
      **/
-    public Channel getPrpcChannel(String hostName, int port) {
-        Channel channel = serverChannelPool.getChannel(hostName, port);
+    public Channel getPrpcChannel(Endpoint endpoint) {
+        Channel channel = serverChannelPool.getChannel(endpoint);
         if (channel == null) {
-            channel = doConnect(hostName, port);
-            serverChannelPool.putChannel(hostName, port, channel);
+            channel = connectDomainSocket(endpoint);
+            if (channel == null) {
+                channel = doConnect(endpoint);
+            }
+            serverChannelPool.putChannel(endpoint, channel);
         }
         return channel;
     }
 
     /**
-     * 通过主机名端口连接远程服务，连接的时候可能会连接失败，如果连接失败会尝试重连，重连次数可配置，默认为5次
+     * 通过{@code Unix}域套接字连接同一台主机上的实例，只尝试一次
      *
-     * @param hostName 主机名
-     * @param port     端口号
+     * @param endpoint 服务实例
+     * @return Channel 目标服务的{@link Channel}，不满足条件或者连接失败时为{@code null}，由调用方改用{@code TCP}
+     **/
+    private Channel connectDomainSocket(Endpoint endpoint) {
+        String domainSocketPath = endpoint.getDomainSocketPath();
+        if (domainBootstrap == null || domainSocketPath == null || !isSameHost(endpoint) || !Files.exists(Paths.get(domainSocketPath))) {
+            return null;
+        }
+        ChannelFuture channelFuture = domainBootstrap.connect(new DomainSocketAddress(domainSocketPath));
+        // 连接超时由CONNECT_TIMEOUT_MILLIS触发，这里多等一点时间只是兜底，不会无限阻塞调用线程
+        if (!channelFuture.awaitUninterruptibly(DOMAIN_SOCKET_CONNECT_TIMEOUT * 2L)) {
+            channelFuture.cancel(false);
+            channelFuture.channel().close();
+            log.error("{} 的Unix域套接字 {} 连接超时，改用TCP", endpoint, domainSocketPath);
+            return null;
+        }
+        if (channelFuture.isSuccess()) {
+            log.info("{} 通过Unix域套接字 {} 连接", endpoint, domainSocketPath);
+            return channelFuture.channel();
+        }
+        log.error("{} 的Unix域套接字 {} 连接失败，改用TCP，原因 : {}", endpoint, domainSocketPath, channelFuture.cause().getMessage());
+        return null;
+    }
+
+    /**
+     * 实例是否与客户端在同一台主机上：地址是回环地址，或者实例发布的主机标签与本进程相同
+     *
+     * @param endpoint 服务实例
+     * @return boolean 在同一台主机上返回{@code true}
+     **/
+    private static boolean isSameHost(Endpoint endpoint) {
+        InetAddress address = endpoint.getAddress().getAddress();
+        return address != null && address.isLoopbackAddress() || Locality.local().proximity(endpoint.getLocality()) == Locality.SAME_HOST;
+    }
+
+    /**
+     * 连接远程服务，连接的时候可能会连接失败，如果连接失败会尝试重连，重连次数可配置，默认为5次
+     *
+     * @param endpoint 服务实例
      * @return Channel 目标服务的{@link Channel}
      **/
-    private Channel doConnect(String hostName, int port) {
+    private Channel doConnect(Endpoint endpoint) {
         Integer reConnectNumber = prpcProperties.getReConnectNumber();
         if (reConnectNumber <= 0) {
             log.error("错误的重连次数:{}", reConnectNumber);
             throw new PrpcException(ErrorMsg.ILLEGAL_RECONNECT_NUMBER);
         }
-        return doConnect(hostName, port, reConnectNumber);
+        // 在调用方线程中重新解析上次连接失败的地址，不占用事件循环线程
+        endpoint.refreshAddressIfStale();
+        return doConnect(endpoint, reConnectNumber);
     }
 
     /**
-     * 携带重连次数的连接方法 {@link NettyClient#doConnect}
+     * 携带重连次数的连接方法 {@link NettyClient#doConnect}，使用{@link Endpoint}中已经解析好的地址
      *
-     * @param hostName        主机名
-     * @param port            端口号
+     * @param endpoint        服务实例
      * @param reConnectNumber 重连次数
      * @return Channel 目标服务的{@link Channel}
      **/
     @SneakyThrows
-    private Channel doConnect(String hostName, int port, int reConnectNumber) {
+    private Channel doConnect(Endpoint endpoint, int reConnectNumber) {
         CompletableFuture<Channel> completableFuture = new CompletableFuture<>();
-        ChannelFuture channelFuture = bootstrap.connect(hostName, port);
+        ChannelFuture channelFuture = bootstrap.connect(endpoint.getAddress());
         channelFuture.addListener((ChannelFutureListener) future -> {
             if (future.isSuccess()) {
                 completableFuture.complete(future.channel());
             } else if (reConnectNumber <= 0) {
+                endpoint.markAddressStale();
                 future.channel().close();
                 completableFuture.completeExceptionally(new PrpcException(ErrorMsg.CONNECT_INSTANCE_ERROR));
-                log.error("{}:{} 连接失败！", hostName, port);
-                serverChannelPool.removeChannel(hostName, port);
+                log.error("{} 连接失败！", endpoint);
+                serverChannelPool.removeChannel(endpoint);
                 throw new PrpcException(ErrorMsg.CONNECT_INSTANCE_ERROR);
             } else {
-                log.error("{} {} 连接异常，正在重连...", hostName, port);
+                log.error("{} 连接异常，正在重连...", endpoint);
                 bootstrap.config().group().schedule(() -> {
-                    doConnect(hostName, port, reConnectNumber - 1);
+                    doConnect(endpoint, reConnectNumber - 1);
                 }, 0, TimeUnit.SECONDS);
             }
         });
@@ -233,6 +326,37 @@ public final class NettyClient {
         return completableFuture.get();
     }
 
+    /**
+     * 获取服务使用的注册中心：配置了直连实例的服务使用静态注册中心，其余服务使用配置的注册中心；
+     * 外部注册中心在第一次需要时才连接，只调用直连服务的客户端不依赖注册中心启动
+     *
+     * @param serviceName 服务名
+     * @return ServiceRegistry 注册中心
+     **/
+    private ServiceRegistry serviceRegistry(String serviceName) {
+        if (staticRegistry.isDirect(serviceName)) {
+            return staticRegistry;
+        }
+        ServiceRegistry registry = serviceRegistry;
+        if (registry == null) {
+            synchronized (this) {
+                if (serviceRegistry == null) {
+                    if (NACOS.equalsIgnoreCase(prpcProperties.getRegistry())) {
+                        serviceRegistry = NacosRegistry.getInstance();
+                    } else if (ZOOKEEPER.equalsIgnoreCase(prpcProperties.getRegistry())) {
+                        serviceRegistry = ZookeeperRegistry.getInstance();
+                    } else if (MEMORY.equalsIgnoreCase(prpcProperties.getRegistry())) {
+                        serviceRegistry = InMemoryRegistry.getInstance();
+                    } else {
+                        serviceRegistry = staticRegistry;
+                    }
+                }
+                registry = serviceRegistry;
+            }
+        }
+        return registry;
+    }
+
     /**
      * 代理类{@link PrpcJdkProxy#invoke}发送消息会调用这个方法
      *
@@ -240,24 +364,69 @@ public final class NettyClient {
      * @return boolean 返回消息是否发送成功
      **/
     public boolean sendPrpcRequestMessage(RpcRequestMessage requestMessage) {
-        InetSocketAddress address = serviceRegistry.getOneServiceInstance(requestMessage.getInterfaceName() + ":" + requestMessage.getGroupName());
-        if (address == null) {
-            log.error("没有可用实例");
+        Endpoint endpoint = sendPrpcRequestMessage(requestMessage.getInterfaceName() + ":" + requestMessage.getGroupName(), requestMessage);
+        if (endpoint == null) {
             return false;
         }
-        String ip = address.getHostName();
-        int port = address.getPort();
-        Channel prpcChannel = getPrpcChannel(ip, port);
-        log.info("客户端向 {}:{} 发送消息:{}", ip, port, requestMessage);
-        prpcChannel.writeAndFlush(requestMessage);
+        // 这个入口不等待响应，发出即视为完成
+        endpoint.getStats().end();
         return true;
     }
 
+    /**
+     * 发送消息，服务名由调用方预先计算好，避免每次调用都拼接字符串；发送前目标实例的进行中请求数加一，
+     * 调用方收到响应、失败或者超时后必须调用{@link EndpointStats#end()}
+     *
+     * @param serviceName    服务名
+     * @param requestMessage 要发送的消息对象
+     * @return Endpoint 消息发往的服务实例，没有可用实例时为{@code null}
+     **/
+    public Endpoint sendPrpcRequestMessage(String serviceName, RpcRequestMessage requestMessage) {
+        return sendPrpcRequestMessage(serviceName, null, requestMessage);
+    }
+
+    /**
+     * 按哈希键选择实例并发送消息，其余与{@link NettyClient#sendPrpcRequestMessage(String, RpcRequestMessage)}相同
+     *
+     * @param serviceName    服务名
+     * @param hashKey        调用的哈希键，可以为{@code null}
+     * @param requestMessage 要发送的消息对象
+     * @return Endpoint 消息发往的服务实例，没有可用实例时为{@code null}
+     **/
+    public Endpoint sendPrpcRequestMessage(String serviceName, String hashKey, RpcRequestMessage requestMessage) {
+        Endpoint endpoint = serviceRegistry(serviceName).getOneServiceInstance(serviceName, hashKey);
+        if (endpoint == null) {
+            log.error("没有可用实例");
+            return null;
+        }
+        EndpointStats endpointStats = endpoint.getStats();
+        endpointStats.begin();
+        Channel prpcChannel;
+        try {
+            prpcChannel = getPrpcChannel(endpoint);
+        } catch (Exception e) {
+            // 连接失败的异常经过SneakyThrows可能是受检异常，这里一并处理
+            endpointStats.end();
+            endpointStats.markUnreachable();
+            throw e;
+        }
+        log.debug("客户端向 {} 发送消息:{}", endpoint, requestMessage);
+        if (requestBatcher != null) {
+            requestBatcher.send(prpcChannel, requestMessage);
+        } else {
+            prpcChannel.writeAndFlush(requestMessage);
+        }
+        return endpoint;
+    }
+
     /**
      * 客户端关闭需要释放资源
      **/
     public void close() {
         group.shutdownGracefully();
+        if (domainGroup != null) {
+            domainGroup.shutdownGracefully();
+        }
         log.info("客户端注销成功！");
     }
 }
\ No newline at end of file
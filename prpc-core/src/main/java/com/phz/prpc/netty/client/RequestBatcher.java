@@ -0,0 +1,146 @@
+package com.phz.prpc.netty.client;
+
+import com.phz.prpc.netty.message.RpcBatchRequestMessage;
+import com.phz.prpc.netty.message.RpcRequestMessage;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * 客户端请求合批器，每个连接维护一个待发送队列，第一个请求入队后在连接所属的事件循环上定时，
+ * 等待时间到达或者攒够最大批量后把队列中的请求合并成一个{@link RpcBatchRequestMessage}写出并只{@code flush}一次
+ * </p>
+ * <br></br>
+ * <p>
+ * 只攒到一个请求时直接发送单个请求，不付出批量帧的开销；每个请求仍然带着自己的请求序号，响应到达后各自完成
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 18:30
+ */
+final class RequestBatcher {
+    /**
+     * 连接上绑定的待发送队列
+     **/
+    private static final AttributeKey<BatchQueue> BATCH_QUEUE = AttributeKey.valueOf("prpcBatchQueue");
+
+    /**
+     * 最大等待时间，单位{@code ns}
+     **/
+    private final long maxDelayNanos;
+
+    /**
+     * 一个批量帧最多包含的请求数
+     **/
+    private final int maxBatchSize;
+
+    /**
+     * 构造方法
+     *
+     * @param maxDelayMicros 最大等待时间，单位{@code μs}
+     * @param maxBatchSize   一个批量帧最多包含的请求数
+     **/
+    RequestBatcher(long maxDelayMicros, int maxBatchSize) {
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, maxDelayMicros));
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * 将请求放入连接的待发送队列
+     *
+     * @param channel 连接
+     * @param request 请求消息
+     **/
+    void send(Channel channel, RpcRequestMessage request) {
+        BatchQueue batchQueue = channel.attr(BATCH_QUEUE).get();
+        if (batchQueue == null) {
+            BatchQueue newQueue = new BatchQueue(channel);
+            batchQueue = channel.attr(BATCH_QUEUE).setIfAbsent(newQueue);
+            if (batchQueue == null) {
+                batchQueue = newQueue;
+            }
+        }
+        batchQueue.add(request);
+    }
+
+    /**
+     * 一个连接的待发送队列，发送任务总是在连接所属的事件循环上执行
+     **/
+    private final class BatchQueue implements Runnable {
+        /**
+         * 连接
+         **/
+        private final Channel channel;
+
+        /**
+         * 待发送的请求
+         **/
+        private final Queue<RpcRequestMessage> pending = new ConcurrentLinkedQueue<>();
+
+        /**
+         * 待发送的请求个数
+         **/
+        private final AtomicInteger size = new AtomicInteger();
+
+        /**
+         * 是否已经有定时的发送任务
+         **/
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * 构造方法
+         *
+         * @param channel 连接
+         **/
+        private BatchQueue(Channel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * 请求入队，攒够最大批量时立即发送，否则保证有一个定时发送任务
+         *
+         * @param request 请求消息
+         **/
+        private void add(RpcRequestMessage request) {
+            pending.offer(request);
+            if (size.incrementAndGet() >= maxBatchSize) {
+                channel.eventLoop().execute(this);
+            } else if (scheduled.compareAndSet(false, true)) {
+                channel.eventLoop().schedule(this, maxDelayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * 取出队列中的全部请求，按最大批量切分后写出，最后统一{@code flush}
+         **/
+        @Override
+        public void run() {
+            scheduled.set(false);
+            boolean written = false;
+            while (true) {
+                List<RpcRequestMessage> batch = new ArrayList<>(Math.min(Math.max(size.get(), 1), maxBatchSize));
+                RpcRequestMessage request;
+                while (batch.size() < maxBatchSize && (request = pending.poll()) != null) {
+                    batch.add(request);
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                size.addAndGet(-batch.size());
+                channel.write(batch.size() == 1 ? batch.get(0) : new RpcBatchRequestMessage(batch));
+                written = true;
+            }
+            if (written) {
+                channel.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.phz.prpc.netty.handler;
+
+import com.phz.prpc.config.PrpcProperties;
+import com.phz.prpc.exception.ErrorMsg;
+import com.phz.prpc.exception.PrpcException;
+import com.phz.prpc.netty.message.MessageRecycler;
+import com.phz.prpc.netty.message.RpcBatchRequestMessage;
+import com.phz.prpc.netty.message.RpcBatchResponseMessage;
+import com.phz.prpc.netty.message.RpcRequestMessage;
+import com.phz.prpc.netty.message.RpcResponseMessage;
+import com.phz.prpc.netty.server.ServerLoad;
+import com.phz.prpc.spring.SpringBeanUtil;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * {@code rpc}批量请求消息处理器，批量帧中的请求提交到业务线程池中并行处理，全部完成后以一个批量响应帧写回
+ * </p>
+ * <br></br>
+ * <p>
+ * 业务线程池的等待队列有界，服务端处理不过来时被拒绝的请求不再排队，直接在批量响应中以错误响应返回，由客户端决定是否重试
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 18:40
+ */
+@ChannelHandler.Sharable
+@Slf4j
+public class RpcBatchRequestMessageHandler extends SimpleChannelInboundHandler<RpcBatchRequestMessage> {
+    /**
+     * 单个请求的处理逻辑
+     **/
+    private final RpcRequestMessageHandler rpcRequestMessageHandler;
+
+    /**
+     * 构造方法
+     *
+     * @param rpcRequestMessageHandler 单个请求的处理器，复用它的方法调用逻辑
+     **/
+    public RpcBatchRequestMessageHandler(RpcRequestMessageHandler rpcRequestMessageHandler) {
+        this.rpcRequestMessageHandler = rpcRequestMessageHandler;
+    }
+
+    /**
+     * 批量请求业务线程池维护静态内部类，第一次收到批量请求时才创建
+     **/
+    private static class DispatcherHolder {
+        /**
+         * 业务线程池
+         **/
+        private static final ExecutorService EXECUTOR;
+
+        /*
+         * 按配置创建线程池
+         */
+        static {
+            PrpcProperties prpcProperties = SpringBeanUtil.getBean(PrpcProperties.class);
+            Integer threads = prpcProperties.getBatchDispatchThreads();
+            int size = threads == null || threads <= 0 ? Runtime.getRuntime().availableProcessors() : threads;
+            Integer queueSize = prpcProperties.getBatchDispatchQueueSize();
+            int capacity = queueSize == null || queueSize <= 0 ? 1024 : queueSize;
+            EXECUTOR = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity), new DefaultThreadFactory("prpc-batch", true));
+        }
+    }
+
+    /**
+     * 读取批量请求，每个请求单独提交到业务线程池，线程池拒绝的请求直接填入错误响应
+     *
+     * @param ctx   {@link ChannelHandlerContext}处理器上下文
+     * @param batch {@link RpcBatchRequestMessage}批量请求消息对象
+     **/
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, RpcBatchRequestMessage batch) {
+        List<RpcRequestMessage> requests = batch.getRequests();
+        int count = requests.size();
+        if (count == 0) {
+            return;
+        }
+        RpcResponseMessage[] responses = new RpcResponseMessage[count];
+        AtomicInteger remaining = new AtomicInteger(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            RpcRequestMessage request = requests.get(i);
+            Consumer<RpcResponseMessage> responder = response -> {
+                responses[index] = response;
+                if (remaining.decrementAndGet() == 0) {
+                    ctx.writeAndFlush(new RpcBatchResponseMessage(Arrays.asList(responses)));
+                }
+            };
+            if (ServerLoad.ENABLED) {
+                ServerLoad.enqueued();
+            }
+            try {
+                DispatcherHolder.EXECUTOR.execute(() -> dispatch(request, responder));
+            } catch (RejectedExecutionException e) {
+                if (ServerLoad.ENABLED) {
+                    ServerLoad.dequeued();
+                }
+                reject(request, responder);
+            }
+        }
+    }
+
+    /**
+     * 业务线程池的等待队列已满，以错误响应代替这个请求的结果
+     *
+     * @param request   请求消息
+     * @param responder 响应方
+     **/
+    private void reject(RpcRequestMessage request, Consumer<RpcResponseMessage> responder) {
+        String sequenceId = request.getSequenceId();
+        log.warn("批量请求{}被拒绝，业务线程池的等待队列已满", sequenceId);
+        RpcResponseMessage response = MessageRecycler.newResponseMessage();
+        response.setSequenceId(sequenceId);
+        response.setExceptionValue(new PrpcException(ErrorMsg.BATCH_DISPATCH_REJECTED));
+        MessageRecycler.recycle(request);
+        responder.accept(response);
+    }
+
+    /**
+     * 处理批量中的一个请求，无论成功与否都必须给出响应，否则整个批量都无法写回
+     *
+     * @param request   请求消息
+     * @param responder 响应方
+     **/
+    private void dispatch(RpcRequestMessage request, Consumer<RpcResponseMessage> responder) {
+        if (ServerLoad.ENABLED) {
+            ServerLoad.dequeued();
+        }
+        AtomicBoolean responded = new AtomicBoolean();
+        String sequenceId = request.getSequenceId();
+        try {
+            rpcRequestMessageHandler.invoke(request, response -> {
+                responded.set(true);
+                responder.accept(response);
+            });
+        } catch (RuntimeException e) {
+            log.error("批量请求{}处理失败:{}", sequenceId, e.toString());
+            if (!responded.get()) {
+                RpcResponseMessage response = MessageRecycler.newResponseMessage();
+                response.setSequenceId(sequenceId);
+                response.setExceptionValue(e);
+                responder.accept(response);
+            }
+        } finally {
+            MessageRecycler.recycle(request);
+        }
+    }
+}
@@ -1,10 +1,23 @@
 package com.phz.prpc.netty.handler;
 
+import com.phz.prpc.cache.ArgumentsKey;
+import com.phz.prpc.cache.EncodedResponse;
+import com.phz.prpc.cache.ResponseCache;
+import com.phz.prpc.cache.SingleFlight;
+import com.phz.prpc.config.PrpcProperties;
 import com.phz.prpc.exception.ErrorMsg;
+import com.phz.prpc.exception.PrpcErrorCode;
 import com.phz.prpc.exception.PrpcException;
+import com.phz.prpc.netty.message.MessageRecycler;
 import com.phz.prpc.netty.message.RpcRequestMessage;
 import com.phz.prpc.netty.message.RpcResponseMessage;
+import com.phz.prpc.netty.protocol.EnvelopeCodec;
+import com.phz.prpc.netty.protocol.PrimitiveInvoker;
+import com.phz.prpc.netty.server.ServerLoad;
 import com.phz.prpc.netty.server.ServiceProvider;
+import com.phz.prpc.spring.SpringBeanUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -12,6 +25,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.function.Consumer;
 
 /**
  * <p>
@@ -24,6 +38,10 @@ import java.lang.reflect.Method;
 @ChannelHandler.Sharable
 @Slf4j
 public class RpcRequestMessageHandler extends SimpleChannelInboundHandler<RpcRequestMessage> {
+    /**
+     * {@code Prpc}配置类
+     **/
+    private static final PrpcProperties PRPC_PROPERTIES = SpringBeanUtil.getBean(PrpcProperties.class);
 
     /**
      * 读取{@code rpc}请求类型的消息并处理，此方法正常情况下应该是服务端方调用
@@ -33,8 +51,53 @@ public class RpcRequestMessageHandler extends SimpleChannelInboundHandler<RpcReq
      **/
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, RpcRequestMessage msg) {
+        try {
+            invoke(msg, ctx::writeAndFlush);
+        } finally {
+            // 请求分发处理完成后归还对象池，服务端解码时会复用它的参数数组
+            MessageRecycler.recycle(msg);
+        }
+    }
+
+    /**
+     * 调用请求对应的服务方法，并将结果或者异常交给响应方；响应方可能在其他线程中被回调，请求消息只在本方法返回之前有效
+     *
+     * @param msg       {@link RpcRequestMessage}请求消息对象
+     * @param responder 响应方，单个请求直接写回连接，批量请求先收集起来
+     **/
+    void invoke(RpcRequestMessage msg, Consumer<RpcResponseMessage> responder) {
+        try {
+            if (!ServerLoad.ENABLED) {
+                doInvoke(msg, responder);
+                return;
+            }
+            // 开启负载报告时统计处理中的请求数，从开始调用到给出响应为止
+            ServerLoad.TrackedResponder trackedResponder = ServerLoad.track(responder);
+            try {
+                doInvoke(msg, trackedResponder);
+            } catch (RuntimeException e) {
+                trackedResponder.release();
+                throw e;
+            }
+        } finally {
+            // 基本类型参数载荷是请求帧的切片，调用或者解码完成后就不再需要
+            ByteBuf primitiveArguments = msg.getPrimitiveArguments();
+            if (primitiveArguments != null) {
+                msg.setPrimitiveArguments(null);
+                primitiveArguments.release();
+            }
+        }
+    }
+
+    /**
+     * {@link RpcRequestMessageHandler#invoke}的实现
+     *
+     * @param msg       {@link RpcRequestMessage}请求消息对象
+     * @param responder 响应方
+     **/
+    private void doInvoke(RpcRequestMessage msg, Consumer<RpcResponseMessage> responder) {
         ServiceProvider serviceProvider = ServiceProvider.getInstance();
-        RpcResponseMessage rpcResponseMessage = new RpcResponseMessage();
+        RpcResponseMessage rpcResponseMessage = MessageRecycler.newResponseMessage();
         rpcResponseMessage.setSequenceId(msg.getSequenceId());
         String methodName = msg.getMethodName();
         String serviceName = msg.getInterfaceName() + ":" + msg.getGroupName();
@@ -46,20 +109,133 @@ public class RpcRequestMessageHandler extends SimpleChannelInboundHandler<RpcReq
         } catch (NoSuchMethodException e) {
             log.error("方法{}不存在", methodName);
             rpcResponseMessage.setExceptionValue(e);
-            ctx.writeAndFlush(rpcResponseMessage);
+            responder.accept(rpcResponseMessage);
             throw new PrpcException(ErrorMsg.UNKNOWN_METHOD);
         }
+        ResponseCache responseCache = ResponseCache.forMethod(method);
+        SingleFlight singleFlight = SingleFlight.forMethod(method);
+        ByteBuf primitiveArguments = msg.getPrimitiveArguments();
+        if (primitiveArguments != null) {
+            // 不需要参数对象的方法直接从请求帧读参数调用，基本类型参数和返回值都不装箱
+            PrimitiveInvoker primitiveInvoker = responseCache == null && singleFlight == null ? PrimitiveInvoker.forMethod(method) : null;
+            if (primitiveInvoker != null) {
+                invokePrimitive(responder, rpcResponseMessage, method, service, primitiveInvoker, primitiveArguments);
+                return;
+            }
+            EnvelopeCodec.decodePrimitiveArguments(msg);
+        }
+        // 开启了响应缓存的方法命中后不再调用，编码器直接写出缓存的响应字节
+        ArgumentsKey responseCacheKey = null;
+        if (responseCache != null) {
+            responseCacheKey = new ArgumentsKey(msg.getParameterValue());
+            EncodedResponse encodedResponse = responseCache.get(responseCacheKey);
+            if (encodedResponse != null) {
+                rpcResponseMessage.setEncodedResponse(encodedResponse);
+                responder.accept(rpcResponseMessage);
+                return;
+            }
+            // 调用方法之前记下失效代数，调用期间发生失效时编码器不会把可能过期的结果写入缓存
+            rpcResponseMessage.setResponseCacheGeneration(responseCache.generation());
+        }
+        Object[] args = msg.getParameterValue();
+        if (singleFlight != null) {
+            // 相同参数的请求正在执行时不再重复调用，拿到同一个结果后各自写回；回调中不能再访问请求消息，它可能已经被回收
+            ArgumentsKey flightKey = responseCacheKey != null ? responseCacheKey : new ArgumentsKey(args);
+            // 加入的调用可能在记下失效代数之前就已经开始，只由真正执行了调用的请求写入缓存
+            ArgumentsKey cacheKey = responseCacheKey;
+            boolean[] invoked = new boolean[1];
+            singleFlight.submit(flightKey, () -> {
+                invoked[0] = true;
+                return method.invoke(service, args);
+            }).whenComplete((result, cause) -> {
+                Throwable target = cause instanceof InvocationTargetException ? ((InvocationTargetException) cause).getTargetException() : cause;
+                writeResponse(responder, rpcResponseMessage, method, result, target, invoked[0] ? responseCache : null, cacheKey);
+            });
+            return;
+        }
         Object result;
         try {
-            result = method.invoke(service, msg.getParameterValue());
-        } catch (IllegalAccessException | InvocationTargetException e) {
+            result = method.invoke(service, args);
+        } catch (IllegalAccessException e) {
             log.error("方法{}调用失败", methodName);
             rpcResponseMessage.setExceptionValue(e);
-            ctx.writeAndFlush(rpcResponseMessage);
+            responder.accept(rpcResponseMessage);
             throw new PrpcException(ErrorMsg.FAILED_INVOKE_METHOD);
+        } catch (InvocationTargetException e) {
+            writeResponse(responder, rpcResponseMessage, method, null, e.getTargetException(), null, null);
+            return;
+        }
+        writeResponse(responder, rpcResponseMessage, method, result, null, responseCache, responseCacheKey);
+    }
+
+    /**
+     * 通过类型化调用器调用方法，返回值直接写成响应信封，由编码器原样写出
+     *
+     * @param responder          响应方
+     * @param rpcResponseMessage 响应消息
+     * @param method             被调用的方法
+     * @param service            服务对象
+     * @param primitiveInvoker   类型化调用器
+     * @param primitiveArguments 基本类型参数载荷
+     **/
+    private void invokePrimitive(Consumer<RpcResponseMessage> responder, RpcResponseMessage rpcResponseMessage, Method method, Object service, PrimitiveInvoker primitiveInvoker, ByteBuf primitiveArguments) {
+        ByteBuf body = ByteBufAllocator.DEFAULT.buffer();
+        try {
+            primitiveInvoker.invoke(service, primitiveArguments.duplicate(), body);
+        } catch (Throwable e) {
+            body.release();
+            writeResponse(responder, rpcResponseMessage, method, null, e, null, null);
+            return;
+        }
+        rpcResponseMessage.setEncodedResponse(new EncodedResponse(body, null, null));
+        log.info("远程方法调用成功 ： {}", method.getName());
+        responder.accept(rpcResponseMessage);
+    }
+
+    /**
+     * 将方法调用的结果或者业务方法抛出的异常交给响应方
+     *
+     * @param responder          响应方
+     * @param rpcResponseMessage 响应消息
+     * @param method             被调用的方法
+     * @param result             调用结果
+     * @param target             业务方法抛出的异常，调用成功时为{@code null}
+     * @param responseCache      需要写入的响应缓存，没有开启时为{@code null}
+     * @param responseCacheKey   写入响应缓存时使用的参数键
+     **/
+    private void writeResponse(Consumer<RpcResponseMessage> responder, RpcResponseMessage rpcResponseMessage, Method method, Object result, Throwable target, ResponseCache responseCache, ArgumentsKey responseCacheKey) {
+        if (target != null) {
+            // 业务方法自身抛出的异常只需要回传给调用方，不应该关闭连接
+            log.error("方法{}调用失败:{}", method.getName(), target.toString());
+            fillException(rpcResponseMessage, method, target);
+            responder.accept(rpcResponseMessage);
+            return;
         }
         rpcResponseMessage.setReturnValue(result);
+        rpcResponseMessage.setResponseCache(responseCache);
+        rpcResponseMessage.setResponseCacheKey(responseCacheKey);
         log.info("远程方法调用成功 ： {}", result);
-        ctx.writeAndFlush(rpcResponseMessage);
+        responder.accept(rpcResponseMessage);
+    }
+
+    /**
+     * 将业务方法抛出的异常填入响应，方法声明抛出的业务异常不传堆栈，其余异常按配置截断堆栈
+     *
+     * @param rpcResponseMessage 响应消息
+     * @param method             被调用的方法
+     * @param target             业务方法抛出的异常
+     **/
+    private void fillException(RpcResponseMessage rpcResponseMessage, Method method, Throwable target) {
+        rpcResponseMessage.setExceptionValue(target instanceof Exception ? (Exception) target : new RuntimeException(target));
+        if (target instanceof PrpcErrorCode) {
+            rpcResponseMessage.setErrorCode(((PrpcErrorCode) target).getErrorCode());
+        }
+        for (Class<?> exceptionType : method.getExceptionTypes()) {
+            if (exceptionType.isInstance(target)) {
+                rpcResponseMessage.setExceptionStackDepth(0);
+                return;
+            }
+        }
+        rpcResponseMessage.setExceptionStackDepth(PRPC_PROPERTIES.getExceptionStackDepth());
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.phz.prpc.netty.handler;
 
+import com.phz.prpc.netty.message.MessageRecycler;
 import com.phz.prpc.netty.message.RpcResponseMessage;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -36,15 +37,19 @@ public class RpcResponseMessageHandler extends SimpleChannelInboundHandler<RpcRe
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, RpcResponseMessage msg) {
         log.info("{} : 收到响应 : {}", ctx.channel().localAddress(), msg);
-        Promise<Object> promise = PROMISE_MAP.get(msg.getSequenceId());
+        Promise<Object> promise = PROMISE_MAP.remove(msg.getSequenceId());
         if (promise == null) {
+            // 调用方已经超时放弃，没有人会再使用这个响应
+            MessageRecycler.recycle(msg);
             return;
         }
         Exception exceptionValue = msg.getExceptionValue();
         if (exceptionValue == null) {
-            promise.setSuccess(msg.getReturnValue());
+            // 返回值的反序列化需要知道方法返回类型，交给发起调用的线程完成，并由它负责回收响应
+            promise.setSuccess(msg);
         } else {
             promise.setFailure(exceptionValue);
+            MessageRecycler.recycle(msg);
         }
     }
 
@@ -57,4 +62,13 @@ public class RpcResponseMessageHandler extends SimpleChannelInboundHandler<RpcRe
     public static void putPromise(String sequenceId, Promise<Object> promise) {
         PROMISE_MAP.put(sequenceId, promise);
     }
+
+    /**
+     * 移除一个不再等待响应的{@link Promise}，发送失败或者等待超时后调用
+     *
+     * @param sequenceId 消息序列号
+     **/
+    public static void removePromise(String sequenceId) {
+        PROMISE_MAP.remove(sequenceId);
+    }
 }
\ No newline at end of file
@@ -1,129 +1,181 @@
 package com.phz.prpc.netty.loadBalance;
 
-import com.phz.prpc.util.CollectionUtil;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-import org.springframework.util.CollectionUtils;
+import com.phz.prpc.registry.Endpoint;
 
-import java.net.InetSocketAddress;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
  * 一致性哈希算法选择器，原理参考博文 @see <a href="https://blog.csdn.net/qq_43509535/article/details/122513401">扒一扒一致性Hash算法+Java版案例演示</a>
  * </p>
+ * <br></br>
+ * <p>
+ * 每个服务一个选择器。哈希环是按哈希值排好序的{@code int[]}和与之一一对应的实例数组，查找时二分搜索第一个不小于键哈希值的虚拟节点，
+ * 超过末尾则回到第一个。实例发生变化时只计算新增实例的虚拟节点，已有实例的虚拟节点直接复用，然后生成新版本的环整体替换，查找过程不加锁
+ * </p>
  *
  * @author PengHuanZhi
  * @date 2022年01月15日 18:33
  */
-@Data
-@NoArgsConstructor
 public class ConsistenceHashChooser {
     /**
      * 虚拟节点数量
      **/
-    private int virtualNodeNum;
+    private final int virtualNodeNum;
 
     /**
-     * 物理节点
+     * 实例到它的虚拟节点哈希值的对应关系，只在{@code this}上加锁读写
      **/
-    private List<InetSocketAddress> realNodes;
+    private final Map<Endpoint, int[]> real2VirtualNodeMap = new HashMap<>();
 
     /**
-     * 对应关系
+     * 当前版本的哈希环
      **/
-    private final Map<InetSocketAddress, List<Integer>> real2VirtualNodeMap = new HashMap<>();
+    private volatile Ring ring;
 
     /**
-     * 一致性Hash环
+     * 构造方法
+     *
+     * @param virtualNodeNum 每个实例的虚拟节点数
      **/
-    private final SortedMap<Integer, InetSocketAddress> hashRing = new TreeMap<>();
+    public ConsistenceHashChooser(int virtualNodeNum) {
+        this.virtualNodeNum = Math.max(1, virtualNodeNum);
+        List<Endpoint> empty = new ArrayList<>();
+        this.ring = new Ring(0, empty, empty, new int[0], new Endpoint[0]);
+    }
 
     /**
-     * 构造方法
+     * 找到键对应的实例，实例列表与当前环的版本不一致时先重建环
      *
-     * @param virtualNodeNum 虚拟节点数
-     * @param newNodes       服务节点
+     * @param instances 当前可用的实例
+     * @param key       哈希键
+     * @return Endpoint 键对应的实例
      **/
-    public ConsistenceHashChooser(int virtualNodeNum, List<InetSocketAddress> newNodes) {
-        this.virtualNodeNum = virtualNodeNum;
-        if (realNodes == null) {
-            this.realNodes = newNodes;
-            newNodes.forEach(this::addServer);
-            return;
+    public Endpoint getServer(List<Endpoint> instances, String key) {
+        Ring current = ring;
+        // 注册中心在实例不变时返回同一个列表对象，绝大多数调用只需要比较引用
+        if (current.source != instances && !current.members.equals(instances)) {
+            current = rebuild(instances);
         }
-        newNodes.forEach(realNode -> {
-            boolean oldFlag = CollectionUtils.isEmpty(this.realNodes);
-            boolean newFlag = CollectionUtils.isEmpty(newNodes);
-            if (oldFlag && !newFlag) {
-                newNodes.forEach(this::addServer);
-            } else if (!oldFlag && newFlag) {
-                this.realNodes.forEach(this::removeServer);
-            } else {
-                Map<InetSocketAddress, Integer> compareResult = CollectionUtil.mapCompare(this.realNodes, newNodes);
-                compareResult.forEach((key, value) -> {
-                    if (value == 1) {
-                        removeServer(key);
-                    } else if (value == 3) {
-                        addServer(key);
-                    }
-                });
-            }
-        });
-        this.realNodes = newNodes;
+        int[] hashes = current.hashes;
+        if (hashes.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(hashes, FNV1_32_HASH.getHash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        //超过环上最大的节点，数据应该放在最小的节点
+        return current.nodes[index == hashes.length ? 0 : index];
     }
 
     /**
-     * 加服务
+     * 按新的实例列表重建哈希环
      *
-     * @param inetSocketAddress 真实节点
+     * @param instances 新的实例列表
+     * @return Ring 新版本的哈希环
      **/
-    public void addServer(InetSocketAddress inetSocketAddress) {
-        //虚拟出多少个虚拟节点
-        String visualNode;
-        List<Integer> virNodes = new ArrayList<>(virtualNodeNum);
-        real2VirtualNodeMap.put(inetSocketAddress, virNodes);
-        for (int i = 0; i < virtualNodeNum; i++) {
-            visualNode = inetSocketAddress + "-" + i;
-            //放到环上
-            //1、求Hash值，由于Java默认提供的HashCode方法得到的hash值散列度不是很好，所以我们采用新的HashCode算法
-            int hash = FNV1_32_HASH.getHash(visualNode);
-            //2、放到环上去
-            hashRing.put(hash, inetSocketAddress);
-            //3、保存对应关系
-            virNodes.add(hash);
+    private synchronized Ring rebuild(List<Endpoint> instances) {
+        Ring current = ring;
+        if (current.members.equals(instances)) {
+            // 其他线程已经按相同的实例列表重建过了
+            return current;
+        }
+        real2VirtualNodeMap.keySet().retainAll(instances);
+        int size = instances.size() * virtualNodeNum;
+        // 高32位放哈希值，低32位放实例下标，排序后哈希值有序且能找回实例
+        long[] entries = new long[size];
+        int count = 0;
+        for (int i = 0; i < instances.size(); i++) {
+            int[] virtualHashes = real2VirtualNodeMap.computeIfAbsent(instances.get(i), this::virtualHashes);
+            for (int hash : virtualHashes) {
+                entries[count++] = (long) hash << 32 | i;
+            }
+        }
+        Arrays.sort(entries);
+        int[] hashes = new int[size];
+        Endpoint[] nodes = new Endpoint[size];
+        for (int i = 0; i < size; i++) {
+            hashes[i] = (int) (entries[i] >>> 32);
+            nodes[i] = instances.get((int) entries[i]);
         }
+        Ring rebuilt = new Ring(current.version + 1, instances, new ArrayList<>(instances), hashes, nodes);
+        ring = rebuilt;
+        return rebuilt;
     }
 
     /**
-     * 找到数据的存放节点
+     * 计算一个实例的所有虚拟节点哈希值
      *
-     * @param virtualNode 虚拟节点key
-     * @return 返回真实节点
-     */
-    public InetSocketAddress getServer(String virtualNode) {
-        int hashValue = FNV1_32_HASH.getHash(virtualNode);
-        SortedMap<Integer, InetSocketAddress> subMap = hashRing.tailMap(hashValue);
-        if (subMap.isEmpty()) {
-            //数据应该放在最小的节点
-            return hashRing.get(hashRing.firstKey());
+     * @param endpoint 真实节点
+     * @return int[] 虚拟节点哈希值
+     **/
+    private int[] virtualHashes(Endpoint endpoint) {
+        int[] virtualHashes = new int[virtualNodeNum];
+        for (int i = 0; i < virtualNodeNum; i++) {
+            //由于Java默认提供的HashCode方法得到的hash值散列度不是很好，所以我们采用新的HashCode算法
+            virtualHashes[i] = FNV1_32_HASH.getHash(endpoint + "-" + i);
         }
-        return subMap.get(subMap.firstKey());
+        return virtualHashes;
     }
 
     /**
-     * 移除节点
+     * 获取当前哈希环的版本，每次实例变化重建后加一
      *
-     * @param inetSocketAddress 节点名称
+     * @return long 版本号
      **/
-    public void removeServer(InetSocketAddress inetSocketAddress) {
-        realNodes.remove(inetSocketAddress);
-        real2VirtualNodeMap.remove(inetSocketAddress);
-        String visualNode;
-        for (int i = 0; i < virtualNodeNum; i++) {
-            visualNode = inetSocketAddress + "-" + i;
-            int hash = FNV1_32_HASH.getHash(visualNode);
-            hashRing.remove(hash);
+    public long getVersion() {
+        return ring.version;
+    }
+
+    /**
+     * 一个版本的哈希环，创建后不再修改
+     **/
+    private static final class Ring {
+        /**
+         * 版本号
+         **/
+        private final long version;
+
+        /**
+         * 创建时传入的实例列表对象，只用来比较引用
+         **/
+        private final List<Endpoint> source;
+
+        /**
+         * 创建时的实例列表的拷贝
+         **/
+        private final List<Endpoint> members;
+
+        /**
+         * 升序排列的虚拟节点哈希值
+         **/
+        private final int[] hashes;
+
+        /**
+         * 与哈希值一一对应的实例
+         **/
+        private final Endpoint[] nodes;
+
+        /**
+         * 构造方法
+         *
+         * @param version 版本号
+         * @param source  传入的实例列表对象
+         * @param members 实例列表的拷贝
+         * @param hashes  虚拟节点哈希值
+         * @param nodes   对应的实例
+         **/
+        private Ring(long version, List<Endpoint> source, List<Endpoint> members, int[] hashes, Endpoint[] nodes) {
+            this.version = version;
+            this.source = source;
+            this.members = members;
+            this.hashes = hashes;
+            this.nodes = nodes;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,238 @@
+package com.phz.prpc.netty.loadBalance;
+
+import com.phz.prpc.netty.message.LoadReport;
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * 客户端视角下每个服务实例的实时统计，每个{@link com.phz.prpc.registry.Endpoint}持有一个，记录注册中心提供的权重、已经发出但还没有收到响应或者超时的请求数、响应耗时的峰值敏感指数加权移动平均({@code Peak-EWMA})，
+ * 以及服务端随响应附带的负载报告，供负载均衡算法参考
+ * </p>
+ * <br></br>
+ * <p>
+ * 计数器使用分段的{@link LongAdder}，大量调用线程同时发送和完成请求时不会在同一个原子变量上竞争；读取时不加锁，只是一个近似的瞬时值
+ * </p>
+ * <br></br>
+ * <p>
+ * 耗时高于当前平均值时直接取新的耗时，实例变慢能立刻被发现；低于平均值时按距上次更新的时间指数衰减地靠近，实例恢复后缓慢地重新获得流量
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 19:40
+ */
+public final class EndpointStats {
+    /**
+     * 正在进行中的请求数
+     **/
+    private final LongAdder active = new LongAdder();
+
+    /**
+     * 累计发出的请求数，用于观察负载均衡的分布
+     **/
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * 注册中心提供的实例权重，没有提供时为1
+     **/
+    @Getter
+    private volatile int weight = 1;
+
+    /**
+     * 耗时平均值的衰减时间常数，单位{@code ns}，约10秒前的耗时权重衰减到{@code 1/e}
+     **/
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * 还没有耗时记录但有请求在进行中时，每个请求计入的代价，单位{@code ns}
+     **/
+    private static final double UNKNOWN_LATENCY_PENALTY = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 负载报告超过这个时间没有更新就不再参考，单位{@code ns}
+     **/
+    private static final long LOAD_REPORT_TTL_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    /**
+     * {@code CPU}使用率参与计算时的上限，避免满载时代价变成无穷大
+     **/
+    private static final double MAX_CPU_UTILIZATION = 0.95;
+
+    /**
+     * 连接失败后实例被视为不健康的时间，单位{@code ns}
+     **/
+    private static final long UNREACHABLE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * 所有实例的权重版本，任意一个实例的权重发生变化时加一，按权重选择的算法据此判断是否需要重新读取权重
+     **/
+    private static final AtomicLong WEIGHT_VERSION = new AtomicLong();
+
+    /**
+     * 实例恢复健康的时间点，与{@link System#nanoTime()}比较，从未连接失败时为0
+     **/
+    private volatile long unreachableUntil;
+
+    /**
+     * 最近一次收到的服务端负载报告，没有收到过时为{@code null}
+     **/
+    private volatile LoadReport loadReport;
+
+    /**
+     * 最近一次收到负载报告的时间点
+     **/
+    private volatile long loadReportAt;
+
+    /**
+     * 响应耗时的移动平均值，单位{@code ns}，只在{@code this}上加锁更新，读取不加锁
+     **/
+    private volatile double ewma;
+
+    /**
+     * 上次更新移动平均值的时间点，与{@link System#nanoTime()}比较
+     **/
+    private volatile long stamp = System.nanoTime();
+
+    /**
+     * 设置注册中心提供的实例权重，注册中心查询实例时调用
+     *
+     * @param weight 权重，小于1时按1处理
+     **/
+    public void setWeight(int weight) {
+        int effective = Math.max(1, weight);
+        if (this.weight != effective) {
+            this.weight = effective;
+            WEIGHT_VERSION.incrementAndGet();
+        }
+    }
+
+    /**
+     * 获取所有实例的权重版本，版本不变说明没有任何实例的权重发生过变化
+     *
+     * @return long 权重版本
+     **/
+    public static long weightVersion() {
+        return WEIGHT_VERSION.get();
+    }
+
+    /**
+     * 请求发出前调用
+     **/
+    public void begin() {
+        active.increment();
+        total.increment();
+    }
+
+    /**
+     * 请求收到响应、失败或者等待超时后调用，每次{@link EndpointStats#begin()}都必须对应一次
+     **/
+    public void end() {
+        active.decrement();
+    }
+
+    /**
+     * 请求收到响应或者等待超时后调用，同时记录这次请求的耗时；超时的耗时就是超时时间，会迅速抬高实例的代价
+     *
+     * @param latencyNanos 从发出请求到收到响应或者超时的耗时，单位{@code ns}
+     **/
+    public void end(long latencyNanos) {
+        active.decrement();
+        synchronized (this) {
+            long now = System.nanoTime();
+            double current = decayed(now);
+            if (latencyNanos > current) {
+                ewma = latencyNanos;
+            } else {
+                double weight = Math.exp(-(now - stamp) / DECAY_NANOS);
+                ewma = current * weight + latencyNanos * (1 - weight);
+            }
+            stamp = now;
+        }
+    }
+
+    /**
+     * 选择这个实例的代价，为衰减到当前时刻的耗时平均值乘以进行中的请求数加一，不加锁
+     *
+     * @return double 代价，越小越应该被选择
+     **/
+    public double getCost() {
+        long active = getActive();
+        double latency = decayed(System.nanoTime());
+        if (latency == 0) {
+            return active * UNKNOWN_LATENCY_PENALTY;
+        }
+        return latency * (active + 1);
+    }
+
+    /**
+     * 记录服务端随响应附带的负载报告
+     *
+     * @param loadReport 负载报告
+     **/
+    public void reportLoad(LoadReport loadReport) {
+        this.loadReportAt = System.nanoTime();
+        this.loadReport = loadReport;
+    }
+
+    /**
+     * 服务端负载因子，处理中和排队中的请求越多、{@code CPU}越忙因子越大；没有负载报告或者报告已经过期时为1
+     *
+     * @return double 负载因子，不小于1
+     **/
+    public double getLoadFactor() {
+        LoadReport report = loadReport;
+        if (report == null || System.nanoTime() - loadReportAt > LOAD_REPORT_TTL_NANOS) {
+            return 1;
+        }
+        double cpu = Math.min(report.getCpuPermille() / 1000.0, MAX_CPU_UTILIZATION);
+        return (1 + report.getActive() + report.getQueued()) / (1 - cpu);
+    }
+
+    /**
+     * 连接实例失败后调用，之后一段时间内实例被视为不健康，就近路由会绕开它
+     **/
+    public void markUnreachable() {
+        unreachableUntil = System.nanoTime() + UNREACHABLE_NANOS;
+    }
+
+    /**
+     * 实例是否健康，最近一段时间内连接失败过的实例不健康
+     *
+     * @return boolean 健康时返回{@code true}
+     **/
+    public boolean isHealthy() {
+        long until = unreachableUntil;
+        return until == 0 || System.nanoTime() - until >= 0;
+    }
+
+    /**
+     * 计算衰减到指定时刻的耗时平均值，长时间没有新的耗时记录时逐渐归零，让实例重新被尝试
+     *
+     * @param now 当前时间点
+     * @return double 耗时平均值，单位{@code ns}
+     **/
+    private double decayed(long now) {
+        return ewma * Math.exp(-Math.max(0, now - stamp) / DECAY_NANOS);
+    }
+
+    /**
+     * 获取正在进行中的请求数
+     *
+     * @return long 请求数
+     **/
+    public long getActive() {
+        return active.sum();
+    }
+
+    /**
+     * 获取累计发出的请求数
+     *
+     * @return long 请求数
+     **/
+    public long getTotal() {
+        return total.sum();
+    }
+}
@@ -1,8 +1,8 @@
 package com.phz.prpc.netty.loadBalance;
 
 import com.phz.prpc.extension.Spi;
+import com.phz.prpc.registry.Endpoint;
 
-import java.net.InetSocketAddress;
 import java.util.List;
 
 /**
@@ -21,7 +21,30 @@ public interface LoadBalance {
      * @param instances 实例集合
      * @return Object 返回其中一个实例
      **/
-    default InetSocketAddress doChoice(List<InetSocketAddress> instances) {
+    default Endpoint doChoice(List<Endpoint> instances) {
         throw new UnsupportedOperationException("不支持此操作！");
     }
+
+    /**
+     * 传入服务名和目标实例集合，需要按服务维护状态的负载均衡算法实现此方法，默认忽略服务名
+     *
+     * @param serviceName 服务名
+     * @param instances   实例集合
+     * @return Endpoint 返回其中一个实例
+     **/
+    default Endpoint doChoice(String serviceName, List<Endpoint> instances) {
+        return doChoice(instances);
+    }
+
+    /**
+     * 传入服务名、目标实例集合以及调用的哈希键，需要按调用参数选择实例的负载均衡算法实现此方法，默认忽略哈希键
+     *
+     * @param serviceName 服务名
+     * @param instances   实例集合
+     * @param hashKey     方法上标注了{@link com.phz.prpc.annotation.PrpcHashKey}的参数，没有标注时为{@code null}
+     * @return Endpoint 返回其中一个实例
+     **/
+    default Endpoint doChoice(String serviceName, List<Endpoint> instances, String hashKey) {
+        return doChoice(serviceName, instances);
+    }
 }
\ No newline at end of file
@@ -1,15 +1,17 @@
 package com.phz.prpc.netty.loadBalance;
 
 import com.phz.prpc.config.PrpcProperties;
+import com.phz.prpc.registry.Endpoint;
 import com.phz.prpc.spring.SpringBeanUtil;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetAddress;
-import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author PengHuanZhi
@@ -22,60 +24,227 @@ public enum LoadBalanceAlgorithm implements LoadBalance {
      **/
     random {
         @Override
-        public InetSocketAddress doChoice(List<InetSocketAddress> instances) {
+        public Endpoint doChoice(List<Endpoint> instances) {
             return instances.get(new Random().nextInt(instances.size()));
         }
     },
     polling {
         /**
-         * 轮询下标
+         * 轮询下标，多个调用线程同时递增
          **/
-        private int index = 0;
+        private final AtomicInteger index = new AtomicInteger();
 
         @Override
-        public InetSocketAddress doChoice(List<InetSocketAddress> instances) {
-            return instances.get(index++ % instances.size());
+        public Endpoint doChoice(List<Endpoint> instances) {
+            return instances.get(Math.floorMod(index.getAndIncrement(), instances.size()));
+        }
+    },
+    /**
+     * 平滑加权轮询，权重来自注册中心，每个服务独立维护选择状态，实例列表或者权重变化时才重建
+     **/
+    weightedPolling {
+        /**
+         * 服务名到选择器的映射
+         **/
+        private final ConcurrentHashMap<String, SmoothWeightedRoundRobin> choosers = new ConcurrentHashMap<>();
+
+        @Override
+        public Endpoint doChoice(List<Endpoint> instances) {
+            return doChoice("", instances);
+        }
+
+        @Override
+        public Endpoint doChoice(String serviceName, List<Endpoint> instances) {
+            SmoothWeightedRoundRobin chooser = choosers.get(serviceName);
+            if (chooser == null || !chooser.isCurrent(instances)) {
+                // 同一个服务的选择器只在compute中确认或者替换，并发的调用不会各自创建选择器互相覆盖
+                chooser = choosers.compute(serviceName, (key, existing) -> existing != null && existing.matches(instances) ? existing : new SmoothWeightedRoundRobin(instances));
+            }
+            return chooser.next();
         }
     },
     hash {
+        /**
+         * 本机地址的哈希值，第一次用到时计算，避免每次调用都查询本机地址
+         **/
+        private volatile Integer ipHash;
+
         @Override
-        public InetSocketAddress doChoice(List<InetSocketAddress> instances) {
-            try {
-                InetAddress localHost = InetAddress.getLocalHost();
-                int ipHash = FNV1_32_HASH.getHash(localHost.getHostAddress());
-                return instances.get((ipHash + 1) % instances.size());
-            } catch (UnknownHostException e) {
-                log.error("源地址hash失败，原因:{}", e.getMessage());
-                return null;
+        public Endpoint doChoice(List<Endpoint> instances) {
+            Integer hash = ipHash;
+            if (hash == null) {
+                try {
+                    hash = FNV1_32_HASH.getHash(InetAddress.getLocalHost().getHostAddress());
+                    ipHash = hash;
+                } catch (UnknownHostException e) {
+                    log.error("源地址hash失败，原因:{}", e.getMessage());
+                    return null;
+                }
             }
+            return instances.get(Math.floorMod(hash + 1, instances.size()));
         }
     },
+    /**
+     * 一致性哈希，以方法上标注了{@link com.phz.prpc.annotation.PrpcHashKey}的参数作为键，每个服务一个哈希环；
+     * 没有标注时以本机地址作为键，同一个客户端的调用总是落到同一个实例上
+     **/
     consistentHash {
         /**
-         * 一致性哈希算法选择器
+         * 服务名到一致性哈希算法选择器的映射
          **/
-        private final ConcurrentHashMap<InetAddress, ConsistenceHashChooser> consistenceHashMap = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, ConsistenceHashChooser> consistenceHashMap = new ConcurrentHashMap<>();
         /**
          * {@code Prpc}配置类
          **/
         private final PrpcProperties prpcProperties = SpringBeanUtil.getBean(PrpcProperties.class);
+        /**
+         * 本机地址，没有哈希键时使用，第一次用到时获取
+         **/
+        private volatile String localHostAddress;
+
+        @Override
+        public Endpoint doChoice(List<Endpoint> instances) {
+            return doChoice("", instances, null);
+        }
 
         @Override
-        public InetSocketAddress doChoice(List<InetSocketAddress> instances) {
-            InetAddress localHost;
-            try {
-                localHost = InetAddress.getLocalHost();
-            } catch (UnknownHostException e) {
-                log.error("获取本机Ip失败，原因:{}", e.getMessage());
-                return null;
+        public Endpoint doChoice(String serviceName, List<Endpoint> instances, String hashKey) {
+            if (hashKey == null) {
+                hashKey = localHostAddress();
+                if (hashKey == null) {
+                    return null;
+                }
             }
-            ConsistenceHashChooser consistenceHashChooser = consistenceHashMap.get(localHost);
-            if (consistenceHashChooser == null) {
-                consistenceHashChooser = new ConsistenceHashChooser(prpcProperties.getVirtualNodeNum(), instances);
-                consistenceHashMap.put(localHost, consistenceHashChooser);
+            ConsistenceHashChooser consistenceHashChooser = consistenceHashMap.computeIfAbsent(serviceName, key -> new ConsistenceHashChooser(prpcProperties.getVirtualNodeNum()));
+            return consistenceHashChooser.getServer(instances, hashKey);
+        }
+
+        /**
+         * 获取本机地址
+         *
+         * @return String 本机地址，获取失败时为{@code null}
+         **/
+        private String localHostAddress() {
+            String address = localHostAddress;
+            if (address == null) {
+                try {
+                    address = InetAddress.getLocalHost().getHostAddress();
+                    localHostAddress = address;
+                } catch (UnknownHostException e) {
+                    log.error("获取本机Ip失败，原因:{}", e.getMessage());
+                }
             }
+            return address;
+        }
+    },
+    /**
+     * {@code Maglev}查找表一致性哈希，键的来源与{@link LoadBalanceAlgorithm#consistentHash}相同；
+     * 查找是一次数组访问，各实例分到的键几乎相等，适合实例数很多的服务
+     **/
+    maglev {
+        /**
+         * 服务名到{@code Maglev}选择器的映射
+         **/
+        private final ConcurrentHashMap<String, MaglevChooser> maglevChooserMap = new ConcurrentHashMap<>();
+        /**
+         * {@code Prpc}配置类
+         **/
+        private final PrpcProperties prpcProperties = SpringBeanUtil.getBean(PrpcProperties.class);
+
+        @Override
+        public Endpoint doChoice(List<Endpoint> instances) {
+            return doChoice("", instances, null);
+        }
+
+        @Override
+        public Endpoint doChoice(String serviceName, List<Endpoint> instances, String hashKey) {
+            if (hashKey == null) {
+                // 没有哈希键时与一致性哈希一样以本机地址作为键
+                return consistentHash.doChoice(serviceName, instances, null);
+            }
+            MaglevChooser maglevChooser = maglevChooserMap.computeIfAbsent(serviceName, key -> new MaglevChooser(prpcProperties.getMaglevTableSize()));
+            return maglevChooser.getServer(instances, hashKey);
+        }
+    },
+    /**
+     * 服务端负载感知，与{@link LoadBalanceAlgorithm#p2cEwma}一样随机抽取两个实例，代价再乘以服务端负载报告得出的{@link EndpointStats#getLoadFactor()}，
+     * 在耗时上升之前就避开处理中、排队中请求多或者{@code CPU}繁忙的实例；服务端没有开启负载报告时等同于{@link LoadBalanceAlgorithm#p2cEwma}
+     **/
+    loadAware {
+        @Override
+        public Endpoint doChoice(List<Endpoint> instances) {
+            int size = instances.size();
+            if (size == 1) {
+                return instances.get(0);
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(size);
+            int second = random.nextInt(size - 1);
+            if (second >= first) {
+                second++;
+            }
+            Endpoint a = instances.get(first);
+            Endpoint b = instances.get(second);
+            return cost(a) <= cost(b) ? a : b;
+        }
 
-            return consistenceHashChooser.getServer(localHost.getHostAddress());
+        /**
+         * 实例的代价，耗时代价加一避免还没有耗时记录的实例忽略负载因子
+         *
+         * @param instance 实例
+         * @return double 代价
+         **/
+        private double cost(Endpoint instance) {
+            EndpointStats endpointStats = instance.getStats();
+            return (endpointStats.getCost() + 1) * endpointStats.getLoadFactor();
+        }
+    },
+    /**
+     * 最少活跃调用数，选择正在进行中的请求最少的实例，慢下来的实例会积压请求从而自然分到更少的流量；
+     * 并列时随机选择，选择过程只读取计数器，不加锁
+     **/
+    leastActive {
+        @Override
+        public Endpoint doChoice(List<Endpoint> instances) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Endpoint chosen = null;
+            long least = Long.MAX_VALUE;
+            int ties = 0;
+            for (Endpoint instance : instances) {
+                long active = instance.getStats().getActive();
+                if (active < least) {
+                    least = active;
+                    chosen = instance;
+                    ties = 1;
+                } else if (active == least && random.nextInt(++ties) == 0) {
+                    // 蓄水池抽样，并列的实例被选中的概率相同
+                    chosen = instance;
+                }
+            }
+            return chosen;
+        }
+    },
+    /**
+     * 两次随机选择加峰值敏感的耗时加权，每次随机抽取两个实例，选择{@link EndpointStats#getCost()}较小的一个，
+     * 选择的开销与实例数无关，又能避开变慢或者积压的实例
+     **/
+    p2cEwma {
+        @Override
+        public Endpoint doChoice(List<Endpoint> instances) {
+            int size = instances.size();
+            if (size == 1) {
+                return instances.get(0);
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(size);
+            // 在剩下的实例中抽取第二个，保证两次抽到的不是同一个
+            int second = random.nextInt(size - 1);
+            if (second >= first) {
+                second++;
+            }
+            Endpoint a = instances.get(first);
+            Endpoint b = instances.get(second);
+            return a.getStats().getCost() <= b.getStats().getCost() ? a : b;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,231 @@
+package com.phz.prpc.netty.loadBalance;
+
+import com.phz.prpc.registry.Endpoint;
+import com.phz.prpc.registry.Locality;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 就近路由，位于{@link PrpcLoadBalancer}和具体的{@link LoadBalance}之间：按实例与本进程的接近程度分成同主机、同机架、同可用区和全部实例四层，
+ * 负载均衡算法只在最近的可用一层中选择，因此可以与任意负载均衡算法组合
+ * </p>
+ * <br></br>
+ * <p>
+ * 一层的健康实例数少于{@code minInstances}，或者健康实例的权重占这一层总权重的比例低于{@code minHealthyRatio}时，扩大到下一层；
+ * 外层总是包含内层的实例，扩大后本地实例仍然参与分担。分层结果按实例列表的引用缓存，选出的列表在实例和健康状态不变时保持同一个对象，
+ * 依赖列表引用的负载均衡算法不会反复重建
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月20日 00:10
+ */
+final class LocalityRouter {
+    /**
+     * 本进程的位置
+     **/
+    private final Locality local;
+
+    /**
+     * 一层至少需要的健康实例数
+     **/
+    private final int minInstances;
+
+    /**
+     * 一层健康权重至少需要占的比例
+     **/
+    private final double minHealthyRatio;
+
+    /**
+     * 服务名到分层结果的映射
+     **/
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+    /**
+     * 构造方法
+     *
+     * @param local           本进程的位置
+     * @param minInstances    一层至少需要的健康实例数
+     * @param minHealthyRatio 一层健康权重至少需要占的比例
+     **/
+    LocalityRouter(Locality local, int minInstances, double minHealthyRatio) {
+        this.local = local;
+        this.minInstances = Math.max(1, minInstances);
+        this.minHealthyRatio = minHealthyRatio;
+    }
+
+    /**
+     * 从实例列表中选出负载均衡算法的候选实例
+     *
+     * @param serviceName 服务名
+     * @param instances   注册中心提供的实例列表
+     * @return List<Endpoint> 候选实例
+     **/
+    List<Endpoint> route(String serviceName, List<Endpoint> instances) {
+        if (local == Locality.UNKNOWN || instances.size() <= 1) {
+            return instances;
+        }
+        Route route = routes.get(serviceName);
+        if (route == null || route.source != instances) {
+            route = new Route(instances, local);
+            routes.put(serviceName, route);
+        }
+        return route.select(minInstances, minHealthyRatio);
+    }
+
+    /**
+     * 一个实例列表的分层结果
+     **/
+    private static final class Route {
+        /**
+         * 注册中心提供的实例列表
+         **/
+        private final List<Endpoint> source;
+
+        /**
+         * 由近到远的各层实例，外层包含内层，最后一层就是全部实例；实例数相同的层只保留一个
+         **/
+        private final List<List<Endpoint>> tiers = new ArrayList<>();
+
+        /**
+         * 上一次选出的结果
+         **/
+        private volatile Selection last;
+
+        /**
+         * 构造方法，按接近程度分层
+         *
+         * @param source 实例列表
+         * @param local  本进程的位置
+         **/
+        private Route(List<Endpoint> source, Locality local) {
+            this.source = source;
+            for (int proximity = Locality.SAME_HOST; proximity > Locality.REMOTE; proximity--) {
+                List<Endpoint> tier = new ArrayList<>();
+                for (Endpoint endpoint : source) {
+                    if (local.proximity(endpoint.getLocality()) >= proximity) {
+                        tier.add(endpoint);
+                    }
+                }
+                if (!tier.isEmpty() && tier.size() < source.size()
+                        && (tiers.isEmpty() || tiers.get(tiers.size() - 1).size() < tier.size())) {
+                    tiers.add(Collections.unmodifiableList(tier));
+                }
+            }
+            tiers.add(source);
+        }
+
+        /**
+         * 选出最近的可用一层，并去掉其中不健康的实例；所有实例都不健康时返回全部实例，交给负载均衡算法和重连逻辑处理
+         *
+         * @param minInstances    一层至少需要的健康实例数
+         * @param minHealthyRatio 一层健康权重至少需要占的比例
+         * @return List<Endpoint> 候选实例
+         **/
+        private List<Endpoint> select(int minInstances, double minHealthyRatio) {
+            int level = tiers.size() - 1;
+            boolean filter = false;
+            for (int i = 0; i < tiers.size(); i++) {
+                long total = 0;
+                long healthy = 0;
+                int healthyCount = 0;
+                for (Endpoint endpoint : tiers.get(i)) {
+                    EndpointStats stats = endpoint.getStats();
+                    total += stats.getWeight();
+                    if (stats.isHealthy()) {
+                        healthy += stats.getWeight();
+                        healthyCount++;
+                    }
+                }
+                if (healthyCount >= minInstances && healthy >= minHealthyRatio * total || i == tiers.size() - 1) {
+                    level = i;
+                    filter = healthyCount != 0 && healthyCount != tiers.get(i).size();
+                    break;
+                }
+            }
+            List<Endpoint> tier = tiers.get(level);
+            Selection selection = last;
+            if (selection != null && selection.level == level && selection.matches(tier, filter)) {
+                return selection.instances;
+            }
+            BitSet excluded = new BitSet(tier.size());
+            List<Endpoint> instances = tier;
+            if (filter) {
+                List<Endpoint> healthyInstances = new ArrayList<>(tier.size());
+                for (int i = 0; i < tier.size(); i++) {
+                    Endpoint endpoint = tier.get(i);
+                    if (endpoint.getStats().isHealthy()) {
+                        healthyInstances.add(endpoint);
+                    } else {
+                        excluded.set(i);
+                    }
+                }
+                // 两次遍历之间健康状态可能变化，全部变为不健康时同样返回整层
+                if (healthyInstances.isEmpty()) {
+                    excluded.clear();
+                } else {
+                    instances = Collections.unmodifiableList(healthyInstances);
+                }
+            }
+            last = new Selection(level, excluded, instances);
+            return instances;
+        }
+    }
+
+    /**
+     * 一次选择的结果，层号和被排除的实例位置都不变时直接复用
+     **/
+    private static final class Selection {
+        /**
+         * 选中的层
+         **/
+        private final int level;
+
+        /**
+         * 层中被排除的不健康实例的位置，没有排除任何实例时为空
+         **/
+        private final BitSet excluded;
+
+        /**
+         * 候选实例
+         **/
+        private final List<Endpoint> instances;
+
+        /**
+         * 构造方法
+         *
+         * @param level     选中的层
+         * @param excluded  被排除的实例位置
+         * @param instances 候选实例
+         **/
+        private Selection(int level, BitSet excluded, List<Endpoint> instances) {
+            this.level = level;
+            this.excluded = excluded;
+            this.instances = instances;
+        }
+
+        /**
+         * 判断当前的健康状态是否与这次选择排除的实例逐个位置完全一致
+         *
+         * @param tier   选中的层
+         * @param filter 当前是否需要排除不健康实例
+         * @return boolean 是否可以复用
+         **/
+        private boolean matches(List<Endpoint> tier, boolean filter) {
+            if (!filter) {
+                return excluded.isEmpty();
+            }
+            for (int i = 0; i < tier.size(); i++) {
+                if (tier.get(i).getStats().isHealthy() == excluded.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
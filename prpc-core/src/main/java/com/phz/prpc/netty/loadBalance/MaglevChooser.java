@@ -0,0 +1,211 @@
+package com.phz.prpc.netty.loadBalance;
+
+import com.phz.prpc.registry.Endpoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>
+ * {@code Maglev}一致性哈希选择器，用一张固定大小的查找表代替哈希环，查找只需要一次取模和一次数组访问
+ * </p>
+ * <br></br>
+ * <p>
+ * 每个实例根据自己的地址算出在表中的起始位置和步长，得到一个槽位的排列；各实例轮流沿自己的排列认领第一个还没有被占用的槽位，直到填满整张表。
+ * 每个实例认领的槽位数最多相差1，实例增减时只有少量槽位换了主人。表的大小需要是远大于实例数的质数，过小的值会被调整到下一个质数
+ * </p>
+ * <br></br>
+ * <p>
+ * 每个服务一个选择器，实例列表变化时生成新版本的查找表整体替换，查找过程不加锁
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 20:55
+ */
+public class MaglevChooser {
+    /**
+     * 查找表大小，质数
+     **/
+    private final int tableSize;
+
+    /**
+     * 当前版本的查找表
+     **/
+    private volatile Table table;
+
+    /**
+     * 构造方法
+     *
+     * @param tableSize 查找表大小，不是质数时取下一个质数
+     **/
+    public MaglevChooser(int tableSize) {
+        this.tableSize = nextPrime(Math.max(tableSize, 2));
+        List<Endpoint> empty = new ArrayList<>();
+        this.table = new Table(0, empty, empty, new Endpoint[0]);
+    }
+
+    /**
+     * 找到键对应的实例，实例列表与当前查找表的版本不一致时先重建
+     *
+     * @param instances 当前可用的实例
+     * @param key       哈希键
+     * @return Endpoint 键对应的实例
+     **/
+    public Endpoint getServer(List<Endpoint> instances, String key) {
+        Table current = table;
+        // 注册中心在实例不变时返回同一个列表对象，绝大多数调用只需要比较引用
+        if (current.source != instances && !current.members.equals(instances)) {
+            current = rebuild(instances);
+        }
+        Endpoint[] entries = current.entries;
+        if (entries.length == 0) {
+            return null;
+        }
+        return entries[Math.floorMod(FNV1_32_HASH.getHash(key), entries.length)];
+    }
+
+    /**
+     * 获取当前查找表的版本，每次实例变化重建后加一
+     *
+     * @return long 版本号
+     **/
+    public long getVersion() {
+        return table.version;
+    }
+
+    /**
+     * 按新的实例列表重建查找表
+     *
+     * @param instances 新的实例列表
+     * @return Table 新版本的查找表
+     **/
+    private synchronized Table rebuild(List<Endpoint> instances) {
+        Table current = table;
+        if (current.members.equals(instances)) {
+            // 其他线程已经按相同的实例列表重建过了
+            return current;
+        }
+        Table rebuilt = new Table(current.version + 1, instances, new ArrayList<>(instances), populate(instances));
+        table = rebuilt;
+        return rebuilt;
+    }
+
+    /**
+     * 填充查找表
+     *
+     * @param instances 实例列表
+     * @return Endpoint[] 查找表，没有实例时为空数组
+     **/
+    private Endpoint[] populate(List<Endpoint> instances) {
+        int n = instances.size();
+        if (n == 0) {
+            return new Endpoint[0];
+        }
+        // 按地址排序，不同客户端拿到的实例顺序不同也能生成相同的表
+        List<Endpoint> sorted = new ArrayList<>(instances);
+        sorted.sort(Comparator.comparing(Endpoint::toString));
+        int[] offsets = new int[n];
+        int[] skips = new int[n];
+        int[] next = new int[n];
+        for (int i = 0; i < n; i++) {
+            String name = sorted.get(i).toString();
+            offsets[i] = Math.floorMod(FNV1_32_HASH.getHash(name), tableSize);
+            skips[i] = Math.floorMod(FNV1_32_HASH.getHash(name + "#skip"), tableSize - 1) + 1;
+        }
+        int[] owners = new int[tableSize];
+        Arrays.fill(owners, -1);
+        int filled = 0;
+        while (true) {
+            for (int i = 0; i < n; i++) {
+                int slot = (int) ((offsets[i] + (long) next[i] * skips[i]) % tableSize);
+                while (owners[slot] >= 0) {
+                    next[i]++;
+                    slot = (int) ((offsets[i] + (long) next[i] * skips[i]) % tableSize);
+                }
+                owners[slot] = i;
+                next[i]++;
+                if (++filled == tableSize) {
+                    Endpoint[] entries = new Endpoint[tableSize];
+                    for (int j = 0; j < tableSize; j++) {
+                        entries[j] = sorted.get(owners[j]);
+                    }
+                    return entries;
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取不小于指定值的最小质数
+     *
+     * @param value 指定值
+     * @return int 质数
+     **/
+    private static int nextPrime(int value) {
+        int candidate = value;
+        while (!isPrime(candidate)) {
+            candidate++;
+        }
+        return candidate;
+    }
+
+    /**
+     * 判断是否是质数
+     *
+     * @param value 值
+     * @return boolean 是质数返回{@code true}
+     **/
+    private static boolean isPrime(int value) {
+        if (value < 2) {
+            return false;
+        }
+        for (int i = 2; (long) i * i <= value; i++) {
+            if (value % i == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 一个版本的查找表，创建后不再修改
+     **/
+    private static final class Table {
+        /**
+         * 版本号
+         **/
+        private final long version;
+
+        /**
+         * 创建时传入的实例列表对象，只用来比较引用
+         **/
+        private final List<Endpoint> source;
+
+        /**
+         * 创建时的实例列表的拷贝
+         **/
+        private final List<Endpoint> members;
+
+        /**
+         * 槽位到实例的查找表
+         **/
+        private final Endpoint[] entries;
+
+        /**
+         * 构造方法
+         *
+         * @param version 版本号
+         * @param source  传入的实例列表对象
+         * @param members 实例列表的拷贝
+         * @param entries 查找表
+         **/
+        private Table(long version, List<Endpoint> source, List<Endpoint> members, Endpoint[] entries) {
+            this.version = version;
+            this.source = source;
+            this.members = members;
+            this.entries = entries;
+        }
+    }
+}
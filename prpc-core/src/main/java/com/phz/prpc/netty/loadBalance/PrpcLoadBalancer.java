@@ -4,10 +4,11 @@ import com.phz.prpc.config.PrpcProperties;
 import com.phz.prpc.exception.ErrorMsg;
 import com.phz.prpc.exception.PrpcException;
 import com.phz.prpc.extension.ExtensionLoader;
+import com.phz.prpc.registry.Endpoint;
+import com.phz.prpc.registry.Locality;
 import com.phz.prpc.spring.SpringBeanUtil;
 import lombok.extern.slf4j.Slf4j;
 
-import java.net.InetSocketAddress;
 import java.util.List;
 
 /**
@@ -21,11 +22,19 @@ public final class PrpcLoadBalancer {
      **/
     private static PrpcProperties prpcProperties;
 
+    /**
+     * 就近路由，没有开启时为{@code null}
+     **/
+    private final LocalityRouter localityRouter;
+
     /**
      * 私有构造方法，禁用手动实例化
      **/
     private PrpcLoadBalancer() {
         prpcProperties = SpringBeanUtil.getBean(PrpcProperties.class);
+        localityRouter = Boolean.TRUE.equals(prpcProperties.getLocalityRouting())
+                ? new LocalityRouter(Locality.local(), prpcProperties.getLocalityMinInstances(), prpcProperties.getLocalityMinHealthyRatio())
+                : null;
     }
 
 
@@ -49,12 +58,14 @@ public final class PrpcLoadBalancer {
     }
 
     /**
-     * 使用负载均衡算法从服务集合中选取一个服务
+     * 使用负载均衡算法从服务集合中选取一个服务，开启就近路由时只在最近的可用一层实例中选取
      *
+     * @param serviceName      服务名
      * @param serviceInstances 服务集合
-     * @return InetSocketAddress 选取的服务
+     * @param hashKey          调用的哈希键，可以为{@code null}
+     * @return Endpoint 选取的服务
      **/
-    public InetSocketAddress doChoice(List<InetSocketAddress> serviceInstances) {
+    public Endpoint doChoice(String serviceName, List<Endpoint> serviceInstances, String hashKey) {
         String loadBalanceAlgorithm = prpcProperties.getLoadBalanceAlgorithm();
         LoadBalance loadBalance;
         try {
@@ -66,6 +77,7 @@ public final class PrpcLoadBalancer {
             log.error("未知的负载均衡算法:{},异常信息为:{}", loadBalanceAlgorithm, e.getMessage());
             throw new PrpcException(ErrorMsg.UNKNOWN_LOAD_BALANCE_ALGORITHM);
         }
-        return loadBalance.doChoice(serviceInstances);
+        List<Endpoint> candidates = localityRouter == null ? serviceInstances : localityRouter.route(serviceName, serviceInstances);
+        return loadBalance.doChoice(serviceName, candidates, hashKey);
     }
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+package com.phz.prpc.netty.loadBalance;
+
+import com.phz.prpc.registry.Endpoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * 平滑加权轮询选择器，与{@code Nginx}的做法相同：每次选择时所有实例的当前权重加上各自的权重，选出当前权重最大的实例，再将它的当前权重减去总权重
+ * </p>
+ * <br></br>
+ * <p>
+ * 权重为{@code 5,1,1}的三个实例一轮的选择顺序是{@code a,a,b,a,c,a,a}，高权重的实例不会被连续选中很多次。
+ * 每个服务一个选择器，实例列表或者权重发生变化时才重新创建。注册中心在实例不变时返回同一个列表对象，
+ * 与{@link MaglevChooser}一样先比较列表引用，再比较{@link EndpointStats#weightVersion()}，选择时不需要遍历实例也不分配内存
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 20:10
+ */
+public final class SmoothWeightedRoundRobin {
+    /**
+     * 创建时的实例列表，用于判断实例是否发生了变化
+     **/
+    private final List<Endpoint> instances;
+
+    /**
+     * 最近一次确认过与本选择器一致的实例列表对象
+     **/
+    private volatile List<Endpoint> source;
+
+    /**
+     * 最近一次确认过权重一致时的权重版本
+     **/
+    private volatile long weightVersion;
+
+    /**
+     * 创建时各实例的权重
+     **/
+    private final int[] weights;
+
+    /**
+     * 各实例的当前权重，在{@code this}上加锁读写
+     **/
+    private final long[] currentWeights;
+
+    /**
+     * 权重之和
+     **/
+    private final long totalWeight;
+
+    /**
+     * 构造方法，权重从{@link EndpointStats#getWeight()}读取
+     *
+     * @param instances 实例列表
+     **/
+    public SmoothWeightedRoundRobin(List<Endpoint> instances) {
+        // 先记下权重版本再读取权重，读取期间发生的变化会在下一次选择时被发现
+        this.weightVersion = EndpointStats.weightVersion();
+        this.source = instances;
+        this.instances = new ArrayList<>(instances);
+        this.weights = readWeights(instances);
+        this.currentWeights = new long[weights.length];
+        long total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        this.totalWeight = total;
+    }
+
+    /**
+     * 快速判断选择器是否仍然可用：实例列表还是同一个对象，并且没有任何实例的权重发生过变化
+     *
+     * @param instances 新的实例列表
+     * @return boolean 可用返回{@code true}；返回{@code false}时需要调用{@link SmoothWeightedRoundRobin#matches}确认
+     **/
+    public boolean isCurrent(List<Endpoint> instances) {
+        return source == instances && weightVersion == EndpointStats.weightVersion();
+    }
+
+    /**
+     * 逐个比较实例列表和权重是否与创建时相同，相同时记下这个列表对象和当前的权重版本，之后的选择只需要{@link SmoothWeightedRoundRobin#isCurrent}
+     *
+     * @param instances 新的实例列表
+     * @return boolean 相同返回{@code true}，此时可以继续使用这个选择器
+     **/
+    public boolean matches(List<Endpoint> instances) {
+        long version = EndpointStats.weightVersion();
+        if (!this.instances.equals(instances)) {
+            return false;
+        }
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] != instances.get(i).getStats().getWeight()) {
+                return false;
+            }
+        }
+        weightVersion = version;
+        source = instances;
+        return true;
+    }
+
+    /**
+     * 选择一个实例
+     *
+     * @return Endpoint 选中的实例
+     **/
+    public synchronized Endpoint next() {
+        int chosen = 0;
+        for (int i = 0; i < currentWeights.length; i++) {
+            currentWeights[i] += weights[i];
+            if (currentWeights[i] > currentWeights[chosen]) {
+                chosen = i;
+            }
+        }
+        currentWeights[chosen] -= totalWeight;
+        return instances.get(chosen);
+    }
+
+    /**
+     * 读取实例列表中每个实例的权重
+     *
+     * @param instances 实例列表
+     * @return int[] 权重
+     **/
+    private static int[] readWeights(List<Endpoint> instances) {
+        int[] weights = new int[instances.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = instances.get(i).getStats().getWeight();
+        }
+        return weights;
+    }
+}
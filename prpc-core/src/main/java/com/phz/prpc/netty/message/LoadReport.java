@@ -0,0 +1,34 @@
+package com.phz.prpc.netty.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * <p>
+ * 服务端负载报告，开启后由服务端附带在响应帧头的填充字节中，格式为 标记(1字节，固定为1) | 处理中的请求数(2字节) | 排队中的请求数(2字节) | 进程{@code CPU}使用率千分比(2字节)，
+ * 各字段超出2字节时按最大值截断
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 21:20
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public final class LoadReport {
+    /**
+     * 处理中的请求数
+     **/
+    private final int active;
+
+    /**
+     * 在业务线程池中排队的请求数
+     **/
+    private final int queued;
+
+    /**
+     * 进程{@code CPU}使用率，千分比，无法获取时为0
+     **/
+    private final int cpuPermille;
+}
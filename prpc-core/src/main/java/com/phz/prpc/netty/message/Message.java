@@ -1,6 +1,13 @@
 package com.phz.prpc.netty.message;
 
+import io.netty.util.Recycler;
+import io.netty.util.ResourceLeakTracker;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.io.Serializable;
 import java.util.HashMap;
@@ -28,6 +35,14 @@ public abstract class Message implements Serializable {
      * {@link PingMessage}消息类型
      */
     public static final int PING_MESSAGE = 3;
+    /**
+     * 批量请求类型 {@code byte} 值
+     */
+    public static final int RPC_MESSAGE_TYPE_BATCH_REQUEST = 4;
+    /**
+     * 批量响应类型 {@code byte} 值
+     */
+    public static final int RPC_MESSAGE_TYPE_BATCH_RESPONSE = 5;
     /**
      * 消息类型对应{@link Class}类的集合
      */
@@ -39,6 +54,8 @@ public abstract class Message implements Serializable {
     static {
         MESSAGE_CLASSES.put(RPC_MESSAGE_TYPE_REQUEST, RpcRequestMessage.class);
         MESSAGE_CLASSES.put(RPC_MESSAGE_TYPE_RESPONSE, RpcResponseMessage.class);
+        MESSAGE_CLASSES.put(RPC_MESSAGE_TYPE_BATCH_REQUEST, RpcBatchRequestMessage.class);
+        MESSAGE_CLASSES.put(RPC_MESSAGE_TYPE_BATCH_RESPONSE, RpcBatchResponseMessage.class);
     }
 
     /**
@@ -61,6 +78,33 @@ public abstract class Message implements Serializable {
      */
     private int messageType;
 
+    /**
+     * 开启消息回收时，对象池{@link Recycler}分配的回收句柄，未开启时为{@code null}
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    transient Recycler.Handle<Message> recyclerHandle;
+
+    /**
+     * 开启泄漏检测时，跟踪本消息是否在回收之前就被丢弃
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    transient ResourceLeakTracker<Message> leakTracker;
+
+    /**
+     * 是否已经被回收，防止同一个消息被回收多次
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    transient boolean recycled;
+
     /**
      * 获取消息的类型
      *
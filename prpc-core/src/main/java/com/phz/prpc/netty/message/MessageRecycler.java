@@ -0,0 +1,197 @@
+package com.phz.prpc.netty.message;
+
+import com.phz.prpc.config.PrpcProperties;
+import com.phz.prpc.spring.SpringBeanUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.Recycler;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import io.netty.util.ResourceLeakTracker;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * 请求与响应消息的分配与回收入口，开启{@link PrpcProperties#getMessageRecycle()}后消息对象从{@link Recycler}对象池中分配，否则直接创建
+ * </p>
+ * <br></br>
+ * <p>
+ * 回收的时机是严格约定好的：发送方在消息编码完成后回收，接收方在消息分发处理完成后回收，回收之后不允许再访问消息。
+ * 服务端解码请求时会复用已回收消息上的参数数组，参数个数相同时不再重新分配
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 16:02
+ */
+@Slf4j
+public final class MessageRecycler {
+    /**
+     * 请求消息对象池
+     **/
+    private static final Recycler<Message> REQUEST_RECYCLER = new Recycler<Message>() {
+        @Override
+        protected Message newObject(Handle<Message> handle) {
+            RpcRequestMessage message = new RpcRequestMessage();
+            message.recyclerHandle = handle;
+            return message;
+        }
+    };
+
+    /**
+     * 响应消息对象池
+     **/
+    private static final Recycler<Message> RESPONSE_RECYCLER = new Recycler<Message>() {
+        @Override
+        protected Message newObject(Handle<Message> handle) {
+            RpcResponseMessage message = new RpcResponseMessage();
+            message.recyclerHandle = handle;
+            return message;
+        }
+    };
+
+    /**
+     * 消息泄漏检测器
+     **/
+    private static final ResourceLeakDetector<Message> LEAK_DETECTOR = ResourceLeakDetectorFactory.instance().newResourceLeakDetector(Message.class);
+
+    /**
+     * 私有构造方法，禁用手动实例化
+     **/
+    private MessageRecycler() {
+    }
+
+    /**
+     * 回收配置维护静态内部类，第一次分配消息时才读取配置
+     **/
+    private static class RecycleConfigHolder {
+        /**
+         * {@code Prpc}配置类
+         **/
+        private static final PrpcProperties PRPC_PROPERTIES = SpringBeanUtil.getBean(PrpcProperties.class);
+
+        /**
+         * 是否开启消息回收
+         **/
+        private static final boolean RECYCLE = Boolean.TRUE.equals(PRPC_PROPERTIES.getMessageRecycle());
+
+        /**
+         * 是否开启泄漏检测
+         **/
+        private static final boolean LEAK_DETECTION = RECYCLE && Boolean.TRUE.equals(PRPC_PROPERTIES.getMessageLeakDetection());
+    }
+
+    /**
+     * 分配一个请求消息
+     *
+     * @return RpcRequestMessage 请求消息
+     **/
+    public static RpcRequestMessage newRequestMessage() {
+        if (!RecycleConfigHolder.RECYCLE) {
+            return new RpcRequestMessage();
+        }
+        return (RpcRequestMessage) acquire(REQUEST_RECYCLER.get());
+    }
+
+    /**
+     * 分配一个响应消息
+     *
+     * @return RpcResponseMessage 响应消息
+     **/
+    public static RpcResponseMessage newResponseMessage() {
+        if (!RecycleConfigHolder.RECYCLE) {
+            return new RpcResponseMessage();
+        }
+        return (RpcResponseMessage) acquire(RESPONSE_RECYCLER.get());
+    }
+
+    /**
+     * 回收一个消息，清空其所有字段后归还对象池；不是从对象池中分配的消息直接忽略
+     *
+     * @param message 消息
+     **/
+    public static void recycle(Message message) {
+        if (message == null || message.recyclerHandle == null) {
+            return;
+        }
+        if (message.recycled) {
+            log.error("消息 {} 被重复回收", message.getSequenceId());
+            throw new IllegalStateException("消息已经被回收");
+        }
+        message.recycled = true;
+        message.setSequenceId(null);
+        if (message instanceof RpcRequestMessage) {
+            clear((RpcRequestMessage) message);
+        } else if (message instanceof RpcResponseMessage) {
+            clear((RpcResponseMessage) message);
+        }
+        ResourceLeakTracker<Message> leakTracker = message.leakTracker;
+        if (leakTracker != null) {
+            message.leakTracker = null;
+            leakTracker.close(message);
+        }
+        message.recyclerHandle.recycle(message);
+    }
+
+    /**
+     * 从对象池取出消息后重置回收标记，按需开始泄漏跟踪
+     *
+     * @param message 消息
+     * @return Message 消息
+     **/
+    private static Message acquire(Message message) {
+        message.recycled = false;
+        if (RecycleConfigHolder.LEAK_DETECTION) {
+            message.leakTracker = LEAK_DETECTOR.track(message);
+        }
+        return message;
+    }
+
+    /**
+     * 清空请求消息，服务端解码分配的参数数组只清空元素，留给下一次解码复用
+     *
+     * @param message 请求消息
+     **/
+    private static void clear(RpcRequestMessage message) {
+        message.setInterfaceName(null);
+        message.setMethodName(null);
+        message.setGroupName(null);
+        message.setReturnType(null);
+        message.setEnvelopeHeader(null);
+        message.setPrimitivePayload(false);
+        ByteBuf primitiveArguments = message.getPrimitiveArguments();
+        if (primitiveArguments != null) {
+            // 解码后没有经过请求处理器的消息，在这里释放请求帧的切片
+            message.setPrimitiveArguments(null);
+            primitiveArguments.release();
+        }
+        if (!message.isReusableArrays()) {
+            // 客户端的参数数组属于调用方，参数类型数组属于方法描述符，只能断开引用
+            message.setParameterTypes(null);
+            message.setParameterValue(null);
+            return;
+        }
+        Object[] parameterValue = message.getParameterValue();
+        if (parameterValue != null) {
+            Arrays.fill(parameterValue, null);
+        }
+    }
+
+    /**
+     * 清空响应消息
+     *
+     * @param message 响应消息
+     **/
+    private static void clear(RpcResponseMessage message) {
+        message.setReturnValue(null);
+        message.setExceptionValue(null);
+        message.setErrorCode(0);
+        message.setExceptionStackDepth(0);
+        message.setReturnPayload(null);
+        message.setSerializerAlgorithm(null);
+        message.setEncodedResponse(null);
+        message.setResponseCache(null);
+        message.setResponseCacheKey(null);
+        message.setResponseCacheGeneration(0);
+    }
+}
@@ -0,0 +1,30 @@
+package com.phz.prpc.netty.message;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * <p>
+ * {@code rpc}批量请求消息类型，客户端合批后发送，服务端解码后并行处理其中的每个请求。批量帧本身没有请求序号，每个请求各自携带自己的请求序号
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 18:20
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString(callSuper = true)
+public class RpcBatchRequestMessage extends Message {
+    /**
+     * 批量帧中的请求
+     */
+    private List<RpcRequestMessage> requests;
+
+    @Override
+    public int getMessageType() {
+        return RPC_MESSAGE_TYPE_BATCH_REQUEST;
+    }
+}
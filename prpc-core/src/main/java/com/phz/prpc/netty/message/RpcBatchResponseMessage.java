@@ -0,0 +1,30 @@
+package com.phz.prpc.netty.message;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * <p>
+ * {@code rpc}批量响应消息类型，服务端所有请求处理完成后一次写回，客户端解码时直接拆成单个响应。批量帧本身没有请求序号，每个响应各自携带自己的请求序号
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 18:20
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString(callSuper = true)
+public class RpcBatchResponseMessage extends Message {
+    /**
+     * 批量帧中的响应
+     */
+    private List<RpcResponseMessage> responses;
+
+    @Override
+    public int getMessageType() {
+        return RPC_MESSAGE_TYPE_BATCH_RESPONSE;
+    }
+}
@@ -1,5 +1,6 @@
 package com.phz.prpc.netty.message;
 
+import io.netty.buffer.ByteBuf;
 import lombok.*;
 
 /**
@@ -41,6 +42,25 @@ public class RpcRequestMessage extends Message {
      * 方法参数值数组
      */
     private Object[] parameterValue;
+    /**
+     * 客户端代理预先编码好的信封头部，为空时由编解码器按字段编码
+     */
+    @ToString.Exclude
+    private transient byte[] envelopeHeader;
+    /**
+     * 参数载荷是否由{@link com.phz.prpc.netty.protocol.PrimitiveCodec}编码，客户端代理从方法描述符带入，与预编码的信封头部末尾的编码方式一致
+     */
+    private transient boolean primitivePayload;
+    /**
+     * 服务端解码出的基本类型参数载荷，是请求帧的一个{@code retain}过的切片，参数数组此时为空；
+     * 由请求处理器直接交给{@link com.phz.prpc.netty.protocol.PrimitiveInvoker}或者按需解码成参数数组，处理完成后释放
+     */
+    @ToString.Exclude
+    private transient ByteBuf primitiveArguments;
+    /**
+     * 参数类型和参数值数组是否由服务端解码时分配，是的话回收消息时保留下来，供下一次解码复用
+     */
+    private transient boolean reusableArrays;
 
     @Override
     public int getMessageType() {
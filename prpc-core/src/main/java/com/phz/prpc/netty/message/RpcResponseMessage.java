@@ -1,5 +1,9 @@
 package com.phz.prpc.netty.message;
 
+import com.phz.prpc.cache.ArgumentsKey;
+import com.phz.prpc.cache.EncodedResponse;
+import com.phz.prpc.cache.ResponseCache;
+import com.phz.prpc.netty.serializer.SerializerAlgorithm;
 import lombok.*;
 
 /**
@@ -24,6 +28,42 @@ public class RpcResponseMessage extends Message {
      * 异常值
      */
     private Exception exceptionValue;
+    /**
+     * 错误码，调用成功时为0
+     */
+    private int errorCode;
+    /**
+     * 异常随响应传回的堆栈最大帧数，0表示不传堆栈，只在服务端编码时使用
+     */
+    private transient int exceptionStackDepth;
+    /**
+     * 客户端解码后尚未反序列化的返回值字节，需要结合方法返回类型才能还原，由调用方线程延迟反序列化
+     */
+    @ToString.Exclude
+    private transient byte[] returnPayload;
+    /**
+     * 返回值字节所使用的序列化算法
+     */
+    private transient SerializerAlgorithm serializerAlgorithm;
+    /**
+     * 服务端响应缓存命中时取出的已编码响应，编码器直接写出，不再编码返回值
+     */
+    @ToString.Exclude
+    private transient EncodedResponse encodedResponse;
+    /**
+     * 服务端响应缓存未命中时，编码器需要把编码结果写入的缓存
+     */
+    @ToString.Exclude
+    private transient ResponseCache responseCache;
+    /**
+     * 写入响应缓存时使用的参数键
+     */
+    @ToString.Exclude
+    private transient ArgumentsKey responseCacheKey;
+    /**
+     * 调用开始前记下的响应缓存失效代数，写入缓存时代数已经变化则不写入
+     */
+    private transient long responseCacheGeneration;
 
     @Override
     public int getMessageType() {
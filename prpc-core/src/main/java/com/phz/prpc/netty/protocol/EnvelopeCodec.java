@@ -0,0 +1,474 @@
+package com.phz.prpc.netty.protocol;
+
+import com.phz.prpc.exception.ErrorMsg;
+import com.phz.prpc.exception.PrpcException;
+import com.phz.prpc.exception.PrpcRemoteException;
+import com.phz.prpc.netty.compress.CompressAlgorithm;
+import com.phz.prpc.netty.message.MessageRecycler;
+import com.phz.prpc.netty.message.RpcRequestMessage;
+import com.phz.prpc.netty.message.RpcResponseMessage;
+import com.phz.prpc.netty.serializer.SerializerAlgorithm;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 消息信封编解码器，请求与响应中的接口名、方法名、参数类型、状态、错误码等信封字段按照固定格式手工读写，
+ * 只有方法参数以及返回值才会交给可插拔的{@link SerializerAlgorithm}序列化，并按{@link CompressAlgorithm}压缩
+ * </p>
+ * <br></br>
+ * <p>
+ * 请求信封：接口名 | 方法名 | 组名 | 参数个数(2字节) | 参数类型名... | 载荷编码方式(1字节) | 参数载荷<br>
+ * 响应信封：状态(1字节) | 错误码(4字节) | [异常类名 | 异常信息 | 堆栈帧数(2字节) | 堆栈帧...] | [返回值载荷]<br>
+ * 异常不会整体序列化，只传类名、信息、错误码以及按配置截断的堆栈，不传{@code cause}链<br>
+ * 参数类型全部受{@link PrimitiveCodec}支持时，参数直接写入帧中，不经过序列化和压缩；返回值同理<br>
+ * 字符串统一为4字节长度加{@code UTF-8}内容，长度为-1表示{@code null}；载荷为4字节长度加压缩后的内容，长度为0表示没有载荷，此时不会经过序列化与压缩
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 13:10
+ */
+@Slf4j
+public final class EnvelopeCodec {
+    /**
+     * 响应状态：调用成功且有返回值
+     **/
+    public static final byte STATUS_VALUE = 0;
+
+    /**
+     * 响应状态：调用成功，返回值为{@code void}或{@code null}
+     **/
+    public static final byte STATUS_VOID = 1;
+
+    /**
+     * 响应状态：调用失败
+     **/
+    public static final byte STATUS_ERROR = 2;
+
+    /**
+     * 响应状态：调用成功，返回值由{@link PrimitiveCodec}带类型标记直接写入
+     **/
+    public static final byte STATUS_PRIMITIVE_VALUE = 3;
+
+    /**
+     * 参数载荷编码方式：经过{@link SerializerAlgorithm}序列化
+     **/
+    private static final byte PAYLOAD_SERIALIZER = 0;
+
+    /**
+     * 参数载荷编码方式：由{@link PrimitiveCodec}按照声明类型直接写入
+     **/
+    private static final byte PAYLOAD_PRIMITIVE = 1;
+
+    /**
+     * 表示{@code null}的长度值
+     **/
+    private static final int NULL_LENGTH = -1;
+
+    /**
+     * 参数类型名对应{@link Class}的缓存，避免每一帧都通过{@link Class#forName}反射查找
+     **/
+    private static final Map<String, Class<?>> CLASS_CACHE = new ConcurrentHashMap<>();
+
+    /*
+     * 基本类型无法通过Class.forName加载，预先放入缓存
+     */
+    static {
+        Class<?>[] primitives = {boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class, void.class};
+        for (Class<?> primitive : primitives) {
+            CLASS_CACHE.put(primitive.getName(), primitive);
+        }
+    }
+
+    /**
+     * 私有构造方法，禁用手动实例化
+     **/
+    private EnvelopeCodec() {
+    }
+
+    /**
+     * 预先编码请求信封中与单次调用无关的部分，客户端代理创建时为每个方法生成一次，之后每次调用直接拷贝
+     *
+     * @param interfaceName  接口全限定名
+     * @param methodName     方法名
+     * @param groupName      服务组名
+     * @param parameterTypes   参数类型数组
+     * @param primitivePayload 参数载荷是否走基本类型编码，由{@link PrimitiveCodec#isSupported}判断
+     * @return byte[] 编码后的信封头部，以载荷编码方式字节结尾
+     **/
+    public static byte[] encodeRequestHeader(String interfaceName, String methodName, String groupName, Class<?>[] parameterTypes, boolean primitivePayload) {
+        ByteBuf header = Unpooled.buffer();
+        try {
+            writeRequestHeader(header, interfaceName, methodName, groupName, parameterTypes, primitivePayload);
+            return ByteBufUtil.getBytes(header);
+        } finally {
+            header.release();
+        }
+    }
+
+    /**
+     * 编码请求消息的信封以及参数载荷，如果请求携带了预编码的信封头部，则直接拷贝，载荷编码方式也沿用请求上记录的结果
+     *
+     * @param out                 输出缓冲区
+     * @param msg                 {@link RpcRequestMessage}请求消息
+     * @param serializerAlgorithm 参数所使用的序列化算法
+     * @param compressAlgorithm   参数载荷所使用的压缩算法
+     **/
+    public static void encodeRequest(ByteBuf out, RpcRequestMessage msg, SerializerAlgorithm serializerAlgorithm, CompressAlgorithm compressAlgorithm) {
+        Class<?>[] parameterTypes = msg.getParameterTypes();
+        byte[] envelopeHeader = msg.getEnvelopeHeader();
+        boolean primitivePayload;
+        if (envelopeHeader != null) {
+            // 预编码的信封头部与载荷编码方式都由方法描述符生成，末尾写入的就是同一个结果
+            primitivePayload = msg.isPrimitivePayload();
+            out.writeBytes(envelopeHeader);
+        } else {
+            primitivePayload = PrimitiveCodec.isSupported(parameterTypes);
+            writeRequestHeader(out, msg.getInterfaceName(), msg.getMethodName(), msg.getGroupName(), parameterTypes, primitivePayload);
+        }
+        Object[] parameterValue = msg.getParameterValue();
+        if (primitivePayload) {
+            for (int i = 0; i < parameterTypes.length; i++) {
+                PrimitiveCodec.writeValue(out, parameterTypes[i], parameterValue[i]);
+            }
+            return;
+        }
+        if (parameterValue == null || parameterValue.length == 0) {
+            out.writeInt(0);
+            return;
+        }
+        ByteBuf payload = out.alloc().heapBuffer();
+        try {
+            for (Object value : parameterValue) {
+                writeBytes(payload, value == null ? null : serializerAlgorithm.serialize(value));
+            }
+            writePayload(out, ByteBufUtil.getBytes(payload), compressAlgorithm);
+        } finally {
+            payload.release();
+        }
+    }
+
+    /**
+     * 写入请求信封中与单次调用无关的部分
+     *
+     * @param out              输出缓冲区
+     * @param interfaceName    接口全限定名
+     * @param methodName       方法名
+     * @param groupName        服务组名
+     * @param parameterTypes   参数类型数组
+     * @param primitivePayload 参数载荷是否走基本类型编码
+     **/
+    private static void writeRequestHeader(ByteBuf out, String interfaceName, String methodName, String groupName, Class<?>[] parameterTypes, boolean primitivePayload) {
+        writeString(out, interfaceName);
+        writeString(out, methodName);
+        writeString(out, groupName);
+        out.writeShort(parameterTypes.length);
+        for (Class<?> parameterType : parameterTypes) {
+            writeString(out, parameterType.getName());
+        }
+        out.writeByte(primitivePayload ? PAYLOAD_PRIMITIVE : PAYLOAD_SERIALIZER);
+    }
+
+    /**
+     * 解码请求消息的信封以及参数载荷
+     *
+     * @param in                  输入缓冲区
+     * @param serializerAlgorithm 参数所使用的序列化算法
+     * @param compressAlgorithm   参数载荷所使用的压缩算法
+     * @return RpcRequestMessage 解码后的请求消息
+     **/
+    public static RpcRequestMessage decodeRequest(ByteBuf in, SerializerAlgorithm serializerAlgorithm, CompressAlgorithm compressAlgorithm) {
+        RpcRequestMessage msg = MessageRecycler.newRequestMessage();
+        msg.setInterfaceName(readString(in));
+        msg.setMethodName(readString(in));
+        msg.setGroupName(readString(in));
+        int parameterCount = in.readUnsignedShort();
+        // 回收的消息上保留了上一次解码分配的数组，参数个数相同时直接复用
+        Class<?>[] parameterTypes = msg.isReusableArrays() ? msg.getParameterTypes() : null;
+        Object[] parameterValue = msg.isReusableArrays() ? msg.getParameterValue() : null;
+        if (parameterTypes == null || parameterTypes.length != parameterCount) {
+            parameterTypes = new Class<?>[parameterCount];
+            parameterValue = new Object[parameterCount];
+        }
+        for (int i = 0; i < parameterCount; i++) {
+            parameterTypes[i] = loadClass(readString(in));
+        }
+        msg.setParameterTypes(parameterTypes);
+        msg.setParameterValue(parameterValue);
+        msg.setReusableArrays(true);
+        if (in.readByte() == PAYLOAD_PRIMITIVE) {
+            // 基本类型载荷只确定长度，不在这里装箱，交给请求处理器直接调用或者按需解码
+            int start = in.readerIndex();
+            for (int i = 0; i < parameterCount; i++) {
+                PrimitiveCodec.skipValue(in, parameterTypes[i]);
+            }
+            msg.setPrimitiveArguments(in.retainedSlice(start, in.readerIndex() - start));
+            return msg;
+        }
+        byte[] payload = readPayload(in, compressAlgorithm);
+        if (payload != null) {
+            ByteBuf payloadBuf = Unpooled.wrappedBuffer(payload);
+            for (int i = 0; i < parameterCount; i++) {
+                byte[] bytes = readBytes(payloadBuf);
+                parameterValue[i] = bytes == null ? null : serializerAlgorithm.deserialize(parameterTypes[i], bytes);
+            }
+        }
+        return msg;
+    }
+
+    /**
+     * 把服务端解码时保留下来的基本类型参数载荷解码到参数数组中，供需要参数对象的调用路径使用
+     *
+     * @param msg {@link RpcRequestMessage}请求消息
+     **/
+    public static void decodePrimitiveArguments(RpcRequestMessage msg) {
+        ByteBuf in = msg.getPrimitiveArguments().duplicate();
+        Class<?>[] parameterTypes = msg.getParameterTypes();
+        Object[] parameterValue = msg.getParameterValue();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameterValue[i] = PrimitiveCodec.readValue(in, parameterTypes[i]);
+        }
+    }
+
+    /**
+     * 编码响应消息的信封以及返回值载荷，调用失败或者返回值为空时不会经过序列化
+     *
+     * @param out                 输出缓冲区
+     * @param msg                 {@link RpcResponseMessage}响应消息
+     * @param serializerAlgorithm 返回值所使用的序列化算法
+     * @param compressAlgorithm   返回值载荷所使用的压缩算法
+     **/
+    public static void encodeResponse(ByteBuf out, RpcResponseMessage msg, SerializerAlgorithm serializerAlgorithm, CompressAlgorithm compressAlgorithm) {
+        Exception exceptionValue = msg.getExceptionValue();
+        Object returnValue = msg.getReturnValue();
+        if (exceptionValue != null) {
+            out.writeByte(STATUS_ERROR);
+            out.writeInt(msg.getErrorCode());
+            writeString(out, exceptionValue.getClass().getName());
+            writeString(out, exceptionValue.getMessage());
+            writeStackTrace(out, exceptionValue, msg.getExceptionStackDepth());
+        } else if (returnValue == null) {
+            out.writeByte(STATUS_VOID);
+            out.writeInt(msg.getErrorCode());
+        } else if (PrimitiveCodec.isSupportedValue(returnValue)) {
+            out.writeByte(STATUS_PRIMITIVE_VALUE);
+            out.writeInt(msg.getErrorCode());
+            PrimitiveCodec.writeTagged(out, returnValue);
+        } else {
+            out.writeByte(STATUS_VALUE);
+            out.writeInt(msg.getErrorCode());
+            writePayload(out, serializerAlgorithm.serialize(returnValue), compressAlgorithm);
+        }
+    }
+
+    /**
+     * 解码响应消息的信封，返回值只做解压，真正的反序列化推迟到{@link EnvelopeCodec#decodeReturnValue}
+     *
+     * @param in                  输入缓冲区
+     * @param serializerAlgorithm 返回值所使用的序列化算法
+     * @param compressAlgorithm   返回值载荷所使用的压缩算法
+     * @return RpcResponseMessage 解码后的响应消息
+     **/
+    public static RpcResponseMessage decodeResponse(ByteBuf in, SerializerAlgorithm serializerAlgorithm, CompressAlgorithm compressAlgorithm) {
+        RpcResponseMessage msg = MessageRecycler.newResponseMessage();
+        byte status = in.readByte();
+        msg.setErrorCode(in.readInt());
+        if (status == STATUS_ERROR) {
+            String className = readString(in);
+            String message = readString(in);
+            PrpcRemoteException exception = new PrpcRemoteException(className, msg.getErrorCode(), message);
+            StackTraceElement[] stackTrace = readStackTrace(in);
+            if (stackTrace != null) {
+                exception.setStackTrace(stackTrace);
+            }
+            msg.setExceptionValue(exception);
+        } else if (status == STATUS_VALUE) {
+            msg.setReturnPayload(readPayload(in, compressAlgorithm));
+            msg.setSerializerAlgorithm(serializerAlgorithm);
+        } else if (status == STATUS_PRIMITIVE_VALUE) {
+            msg.setReturnValue(PrimitiveCodec.readTagged(in));
+        }
+        return msg;
+    }
+
+    /**
+     * 根据方法返回类型反序列化响应中的返回值，由发起调用的线程执行，不占用{@code IO}线程
+     *
+     * @param msg        {@link RpcResponseMessage}响应消息
+     * @param returnType 方法返回类型
+     * @return Object 返回值
+     **/
+    public static Object decodeReturnValue(RpcResponseMessage msg, Class<?> returnType) {
+        byte[] returnPayload = msg.getReturnPayload();
+        if (returnPayload == null) {
+            return msg.getReturnValue();
+        }
+        Object returnValue = msg.getSerializerAlgorithm().deserialize(returnType, returnPayload);
+        msg.setReturnValue(returnValue);
+        msg.setReturnPayload(null);
+        return returnValue;
+    }
+
+    /**
+     * 写入截断后的异常堆栈
+     *
+     * @param out       输出缓冲区
+     * @param exception 异常
+     * @param maxDepth  最大帧数，0表示不写堆栈
+     **/
+    private static void writeStackTrace(ByteBuf out, Exception exception, int maxDepth) {
+        if (maxDepth <= 0) {
+            out.writeShort(0);
+            return;
+        }
+        StackTraceElement[] stackTrace = exception.getStackTrace();
+        int depth = Math.min(Math.min(maxDepth, stackTrace.length), Short.MAX_VALUE);
+        out.writeShort(depth);
+        for (int i = 0; i < depth; i++) {
+            StackTraceElement element = stackTrace[i];
+            writeString(out, element.getClassName());
+            writeString(out, element.getMethodName());
+            writeString(out, element.getFileName());
+            out.writeInt(element.getLineNumber());
+        }
+    }
+
+    /**
+     * 读取异常堆栈
+     *
+     * @param in 输入缓冲区
+     * @return StackTraceElement[] 堆栈，没有传堆栈时返回{@code null}
+     **/
+    private static StackTraceElement[] readStackTrace(ByteBuf in) {
+        int depth = in.readShort();
+        if (depth == 0) {
+            return null;
+        }
+        StackTraceElement[] stackTrace = new StackTraceElement[depth];
+        for (int i = 0; i < depth; i++) {
+            stackTrace[i] = new StackTraceElement(readString(in), readString(in), readString(in), in.readInt());
+        }
+        return stackTrace;
+    }
+
+    /**
+     * 通过类名加载参数类型，并缓存下来
+     *
+     * @param className 类的全限定名
+     * @return Class<?> 对应的{@link Class}对象
+     **/
+    private static Class<?> loadClass(String className) {
+        Class<?> clazz = CLASS_CACHE.get(className);
+        if (clazz != null) {
+            return clazz;
+        }
+        try {
+            clazz = Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            log.error("未知的参数类型:{}", className);
+            throw new PrpcException(ErrorMsg.DESERIALIZE_FAILED);
+        }
+        CLASS_CACHE.put(className, clazz);
+        return clazz;
+    }
+
+    /**
+     * 压缩并写入一段载荷
+     *
+     * @param out               输出缓冲区
+     * @param bytes             原始载荷
+     * @param compressAlgorithm 压缩算法
+     **/
+    private static void writePayload(ByteBuf out, byte[] bytes, CompressAlgorithm compressAlgorithm) {
+        byte[] compressed = compressAlgorithm.compress(bytes);
+        out.writeInt(compressed.length);
+        out.writeBytes(compressed);
+    }
+
+    /**
+     * 读取并解压一段载荷
+     *
+     * @param in                输入缓冲区
+     * @param compressAlgorithm 压缩算法
+     * @return byte[] 解压后的载荷，没有载荷时返回{@code null}
+     **/
+    private static byte[] readPayload(ByteBuf in, CompressAlgorithm compressAlgorithm) {
+        int length = in.readInt();
+        if (length == 0) {
+            return null;
+        }
+        byte[] compressed = new byte[length];
+        in.readBytes(compressed);
+        return compressAlgorithm.decompress(compressed);
+    }
+
+    /**
+     * 写入带长度的字节数组
+     *
+     * @param out   输出缓冲区
+     * @param bytes 字节数组，可以为{@code null}
+     **/
+    private static void writeBytes(ByteBuf out, byte[] bytes) {
+        if (bytes == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        out.writeInt(bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    /**
+     * 读取带长度的字节数组
+     *
+     * @param in 输入缓冲区
+     * @return byte[] 字节数组，可能为{@code null}
+     **/
+    private static byte[] readBytes(ByteBuf in) {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * 写入{@code UTF-8}字符串
+     *
+     * @param out   输出缓冲区
+     * @param value 字符串，可以为{@code null}
+     **/
+    private static void writeString(ByteBuf out, String value) {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        int length = ByteBufUtil.writeUtf8(out, value);
+        out.setInt(lengthIndex, length);
+    }
+
+    /**
+     * 读取{@code UTF-8}字符串
+     *
+     * @param in 输入缓冲区
+     * @return String 字符串，可能为{@code null}
+     **/
+    private static String readString(ByteBuf in) {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        String value = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+        in.skipBytes(length);
+        return value;
+    }
+}
@@ -1,27 +1,41 @@
 package com.phz.prpc.netty.protocol;
 
+import com.phz.prpc.cache.EncodedResponse;
+import com.phz.prpc.cache.ResponseCache;
 import com.phz.prpc.config.PrpcProperties;
 import com.phz.prpc.exception.ErrorMsg;
 import com.phz.prpc.exception.PrpcException;
+import com.phz.prpc.netty.channel.ServerChannelPool;
 import com.phz.prpc.netty.compress.CompressAlgorithm;
+import com.phz.prpc.netty.message.LoadReport;
 import com.phz.prpc.netty.message.Message;
+import com.phz.prpc.netty.message.MessageRecycler;
+import com.phz.prpc.netty.message.PingMessage;
+import com.phz.prpc.netty.message.RpcBatchRequestMessage;
+import com.phz.prpc.netty.message.RpcBatchResponseMessage;
+import com.phz.prpc.netty.message.RpcRequestMessage;
+import com.phz.prpc.netty.message.RpcResponseMessage;
 import com.phz.prpc.netty.serializer.SerializerAlgorithm;
+import com.phz.prpc.netty.server.ServerLoad;
+import com.phz.prpc.registry.Endpoint;
 import com.phz.prpc.spring.SpringBeanUtil;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.util.AttributeKey;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * <p>
- * 编解码器，用于将{@code rpc}消息按照我们自己的协议编解码
+ * 编解码器，用于将{@code rpc}消息按照我们自己的协议编解码，消息体中的信封字段由{@link EnvelopeCodec}手工读写，只有参数和返回值才会经过序列化
  * </p>
  *
  * @author PengHuanZhi
@@ -50,13 +64,38 @@ public class MessageCodecSharable extends MessageToMessageCodec<ByteBuf, Message
     /**
      * 版本号
      **/
-    private static final byte VERSION = 1;
+    private static final byte VERSION = 2;
 
     /**
      * 填充字节长度，满足固定字节长度为2^n
      **/
     private static final int FILL_BYTE_LENGTH = 16;
 
+    /**
+     * 长度字段字节数
+     **/
+    private static final int LENGTH_FIELD_LENGTH = 4;
+
+    /**
+     * 填充字节中负载报告的标记
+     **/
+    private static final byte LOAD_REPORT_MARK = 1;
+
+    /**
+     * 负载报告所占的填充字节数
+     **/
+    private static final int LOAD_REPORT_LENGTH = 7;
+
+    /**
+     * 负载报告字段的最大值
+     **/
+    private static final int LOAD_REPORT_FIELD_MAX = 0xFFFF;
+
+    /**
+     * 连接上次附带负载报告的时间点，只在连接的事件循环中读写
+     **/
+    private static final AttributeKey<Long> LAST_LOAD_REPORT = AttributeKey.valueOf("prpcLastLoadReport");
+
     /**
      * 将明文按照自己的协议编码
      *
@@ -66,53 +105,241 @@ public class MessageCodecSharable extends MessageToMessageCodec<ByteBuf, Message
      **/
     @Override
     protected void encode(ChannelHandlerContext ctx, Message msg, List<Object> outList) {
-        String serializer = PRPC_PROPERTIES.getSerializerAlgorithm();
-        SerializerAlgorithm serializerAlgorithm;
-        try {
-            serializerAlgorithm = SerializerAlgorithm.valueOf(serializer.toUpperCase());
-            log.info("{} 发送消息的序列化算法为:{}", ctx.channel().localAddress(), serializer);
-        } catch (IllegalArgumentException e) {
-            log.error("未知的序列化算法:{},异常信息为:{}", serializer, e.getMessage());
-            throw new PrpcException(ErrorMsg.UNKNOWN_SERIALIZER_ALGORITHM);
+        // 命中服务端响应缓存的响应直接复用缓存的字节，帧头中的序列化和压缩算法也要沿用缓存编码时的算法
+        EncodedResponse encodedResponse = msg instanceof RpcResponseMessage ? ((RpcResponseMessage) msg).getEncodedResponse() : null;
+        SerializerAlgorithm serializerAlgorithm = encodedResponse != null ? encodedResponse.getSerializerAlgorithm() : null;
+        CompressAlgorithm compressAlgorithm = encodedResponse != null ? encodedResponse.getCompressAlgorithm() : null;
+        if (serializerAlgorithm == null) {
+            serializerAlgorithm = resolveSerializerAlgorithm();
+            compressAlgorithm = resolveCompressAlgorithm();
         }
-        int serializerOrdinal = serializerAlgorithm.ordinal();
         ByteBuf out = ctx.alloc().buffer();
         // 1. 4 字节的魔数
         out.writeBytes(MAGIC_NUMBER);
         // 2. 1 字节的版本
         out.writeByte(VERSION);
         // 3. 1 字节的序列化方式 枚举类ordinal()方法可以获取下标，也是从0开始的
-        out.writeByte(serializerOrdinal);
+        out.writeByte(serializerAlgorithm.ordinal());
         // 4. 1 字节的指令类型
         int messageType = msg.getMessageType();
         out.writeByte(messageType);
-        // 5. 36个字节的请求序列号
-        byte[] sequenceId = msg.getSequenceId().getBytes(StandardCharsets.UTF_8);
-        out.writeBytes(sequenceId);
-        // 6、无意义，对齐填充
-        out.writeBytes(new byte[FILL_BYTE_LENGTH]);
-        // 7. 根据指定的序列化方式去序列化
-        byte[] message = serializerAlgorithm.serialize(msg);
-        // 8.内容压缩算法
+        // 5. 36个字节的请求序列号，心跳包和批量帧没有序列号，全部填0
+        String sequenceId = msg.getSequenceId();
+        writeSequenceId(out, sequenceId);
+        // 6、对齐填充，服务端开启负载报告时在响应帧中附带负载报告
+        writePadding(ctx, out, messageType);
+        // 7. 1 字节的载荷压缩算法
+        out.writeByte(compressAlgorithm.ordinal());
+        // 8. 长度，先占位，信封写完后回填
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        if (encodedResponse != null) {
+            // 9. 缓存的信封以及载荷，只回填长度，不再拷贝
+            ByteBuf body = encodedResponse.getBody();
+            out.setInt(lengthIndex, body.readableBytes());
+            log.debug("编码：sequenceId:{}, 命中响应缓存, length:{}", sequenceId, body.readableBytes());
+            outList.add(out);
+            outList.add(body);
+            MessageRecycler.recycle(msg);
+            return;
+        }
+        // 9. 信封以及载荷，只有参数和返回值会经过序列化和压缩
+        try {
+            if (messageType == Message.RPC_MESSAGE_TYPE_REQUEST) {
+                EnvelopeCodec.encodeRequest(out, (RpcRequestMessage) msg, serializerAlgorithm, compressAlgorithm);
+            } else if (messageType == Message.RPC_MESSAGE_TYPE_RESPONSE) {
+                encodeResponse(out, (RpcResponseMessage) msg, serializerAlgorithm, compressAlgorithm);
+            } else if (messageType == Message.RPC_MESSAGE_TYPE_BATCH_REQUEST) {
+                encodeBatchRequest(out, (RpcBatchRequestMessage) msg, serializerAlgorithm, compressAlgorithm);
+            } else if (messageType == Message.RPC_MESSAGE_TYPE_BATCH_RESPONSE) {
+                encodeBatchResponse(out, (RpcBatchResponseMessage) msg, serializerAlgorithm, compressAlgorithm);
+            }
+        } catch (RuntimeException e) {
+            out.release();
+            throw e;
+        } finally {
+            // 发送方的消息编码完成后就不再使用了，归还对象池
+            MessageRecycler.recycle(msg);
+        }
+        int length = out.writerIndex() - lengthIndex - LENGTH_FIELD_LENGTH;
+        out.setInt(lengthIndex, length);
+        log.debug("编码：version:{}, serializer:{}, messageType:{}, sequenceId:{}, length:{}, compressAlgorithm:{}", VERSION, serializerAlgorithm, messageType, sequenceId, length, compressAlgorithm);
+        outList.add(out);
+    }
+
+    /**
+     * 写入36个字节的请求序列号，没有序列号时全部填0
+     *
+     * @param out        输出缓冲区
+     * @param sequenceId 请求序列号
+     **/
+    private void writeSequenceId(ByteBuf out, String sequenceId) {
+        if (sequenceId == null) {
+            out.writeZero(SEQUENCE_ID_LENGTH);
+        } else {
+            out.writeBytes(sequenceId.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * 读取36个字节的请求序列号
+     *
+     * @param in 输入缓冲区
+     * @return String 请求序列号，全部为0时返回{@code null}
+     **/
+    private String readSequenceId(ByteBuf in) {
+        String sequenceId = null;
+        if (in.getByte(in.readerIndex()) != 0) {
+            sequenceId = in.toString(in.readerIndex(), SEQUENCE_ID_LENGTH, StandardCharsets.US_ASCII);
+        }
+        in.skipBytes(SEQUENCE_ID_LENGTH);
+        return sequenceId;
+    }
+
+    /**
+     * 写入16个字节的填充，响应帧距这个连接上次附带负载报告超过报告间隔时，在开头写入负载报告
+     *
+     * @param ctx         {@link ChannelHandlerContext}处理器上下文
+     * @param out         输出缓冲区
+     * @param messageType 消息类型
+     **/
+    private void writePadding(ChannelHandlerContext ctx, ByteBuf out, int messageType) {
+        boolean response = messageType == Message.RPC_MESSAGE_TYPE_RESPONSE || messageType == Message.RPC_MESSAGE_TYPE_BATCH_RESPONSE;
+        if (!response || !ServerLoad.ENABLED) {
+            out.writeZero(FILL_BYTE_LENGTH);
+            return;
+        }
+        long now = System.nanoTime();
+        Long last = ctx.channel().attr(LAST_LOAD_REPORT).get();
+        if (last != null && now - last < ServerLoad.INTERVAL_NANOS) {
+            out.writeZero(FILL_BYTE_LENGTH);
+            return;
+        }
+        ctx.channel().attr(LAST_LOAD_REPORT).set(now);
+        LoadReport report = ServerLoad.snapshot();
+        out.writeByte(LOAD_REPORT_MARK);
+        out.writeShort(Math.min(report.getActive(), LOAD_REPORT_FIELD_MAX));
+        out.writeShort(Math.min(report.getQueued(), LOAD_REPORT_FIELD_MAX));
+        out.writeShort(Math.min(report.getCpuPermille(), LOAD_REPORT_FIELD_MAX));
+        out.writeZero(FILL_BYTE_LENGTH - LOAD_REPORT_LENGTH);
+    }
+
+    /**
+     * 读取16个字节的填充，响应帧中附带了负载报告时记入对端实例的统计
+     *
+     * @param ctx         {@link ChannelHandlerContext}处理器上下文
+     * @param in          输入缓冲区
+     * @param messageType 消息类型
+     **/
+    private void readPadding(ChannelHandlerContext ctx, ByteBuf in, byte messageType) {
+        boolean response = messageType == Message.RPC_MESSAGE_TYPE_RESPONSE || messageType == Message.RPC_MESSAGE_TYPE_BATCH_RESPONSE;
+        int index = in.readerIndex();
+        if (response && in.getByte(index) == LOAD_REPORT_MARK) {
+            // 连接池建立连接时在Channel上记录了服务实例，不需要根据远端地址查找
+            Endpoint endpoint = ctx.channel().attr(ServerChannelPool.ENDPOINT).get();
+            if (endpoint != null) {
+                LoadReport report = new LoadReport(in.getUnsignedShort(index + 1), in.getUnsignedShort(index + 3), in.getUnsignedShort(index + 5));
+                endpoint.getStats().reportLoad(report);
+            }
+        }
+        in.skipBytes(FILL_BYTE_LENGTH);
+    }
+
+    /**
+     * 编码单个响应的信封以及载荷，方法开启了响应缓存时顺便把编码结果放入缓存
+     *
+     * @param out                 输出缓冲区
+     * @param response            响应消息
+     * @param serializerAlgorithm 序列化算法
+     * @param compressAlgorithm   压缩算法
+     **/
+    private void encodeResponse(ByteBuf out, RpcResponseMessage response, SerializerAlgorithm serializerAlgorithm, CompressAlgorithm compressAlgorithm) {
+        int bodyIndex = out.writerIndex();
+        EnvelopeCodec.encodeResponse(out, response, serializerAlgorithm, compressAlgorithm);
+        ResponseCache responseCache = response.getResponseCache();
+        if (responseCache != null && response.getExceptionValue() == null) {
+            responseCache.put(response.getResponseCacheKey(), response.getResponseCacheGeneration(), out, bodyIndex, out.writerIndex() - bodyIndex, serializerAlgorithm, compressAlgorithm);
+        }
+    }
+
+    /**
+     * 编码批量请求：4字节请求个数，然后每个请求依次为 请求序列号(36字节) | 序列化算法(1字节) | 压缩算法(1字节) | 请求信封以及载荷
+     *
+     * @param out                 输出缓冲区
+     * @param batch               批量请求消息
+     * @param serializerAlgorithm 序列化算法
+     * @param compressAlgorithm   压缩算法
+     **/
+    private void encodeBatchRequest(ByteBuf out, RpcBatchRequestMessage batch, SerializerAlgorithm serializerAlgorithm, CompressAlgorithm compressAlgorithm) {
+        List<RpcRequestMessage> requests = batch.getRequests();
+        out.writeInt(requests.size());
+        for (RpcRequestMessage request : requests) {
+            writeSequenceId(out, request.getSequenceId());
+            out.writeByte(serializerAlgorithm.ordinal());
+            out.writeByte(compressAlgorithm.ordinal());
+            EnvelopeCodec.encodeRequest(out, request, serializerAlgorithm, compressAlgorithm);
+            MessageRecycler.recycle(request);
+        }
+    }
+
+    /**
+     * 编码批量响应，格式与批量请求相同；命中响应缓存的响应沿用缓存编码时的序列化和压缩算法，直接拷贝缓存的字节
+     *
+     * @param out                 输出缓冲区
+     * @param batch               批量响应消息
+     * @param serializerAlgorithm 序列化算法
+     * @param compressAlgorithm   压缩算法
+     **/
+    private void encodeBatchResponse(ByteBuf out, RpcBatchResponseMessage batch, SerializerAlgorithm serializerAlgorithm, CompressAlgorithm compressAlgorithm) {
+        List<RpcResponseMessage> responses = batch.getResponses();
+        out.writeInt(responses.size());
+        for (RpcResponseMessage response : responses) {
+            writeSequenceId(out, response.getSequenceId());
+            EncodedResponse encodedResponse = response.getEncodedResponse();
+            if (encodedResponse != null) {
+                ByteBuf body = encodedResponse.getBody();
+                SerializerAlgorithm encodedSerializer = encodedResponse.getSerializerAlgorithm();
+                out.writeByte((encodedSerializer != null ? encodedSerializer : serializerAlgorithm).ordinal());
+                out.writeByte((encodedSerializer != null ? encodedResponse.getCompressAlgorithm() : compressAlgorithm).ordinal());
+                out.writeBytes(body);
+                body.release();
+            } else {
+                out.writeByte(serializerAlgorithm.ordinal());
+                out.writeByte(compressAlgorithm.ordinal());
+                encodeResponse(out, response, serializerAlgorithm, compressAlgorithm);
+            }
+            MessageRecycler.recycle(response);
+        }
+    }
+
+    /**
+     * 读取配置的序列化算法
+     *
+     * @return SerializerAlgorithm 序列化算法
+     **/
+    public static SerializerAlgorithm resolveSerializerAlgorithm() {
+        String serializer = PRPC_PROPERTIES.getSerializerAlgorithm();
+        try {
+            return SerializerAlgorithm.valueOf(serializer.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.error("未知的序列化算法:{},异常信息为:{}", serializer, e.getMessage());
+            throw new PrpcException(ErrorMsg.UNKNOWN_SERIALIZER_ALGORITHM);
+        }
+    }
+
+    /**
+     * 读取配置的消息压缩算法
+     *
+     * @return CompressAlgorithm 消息压缩算法
+     **/
+    public static CompressAlgorithm resolveCompressAlgorithm() {
         String compress = PRPC_PROPERTIES.getCompressAlgorithm();
-        CompressAlgorithm compressAlgorithm;
         try {
-            compressAlgorithm = CompressAlgorithm.valueOf(compress.toUpperCase());
-            log.info("{} 发送消息的压缩算法为:{}", ctx.channel().localAddress(), compress);
+            return CompressAlgorithm.valueOf(compress.toUpperCase());
         } catch (IllegalArgumentException e) {
             log.error("未知的消息压缩算法:{},异常信息为:{}", compress, e.getMessage());
             throw new PrpcException(ErrorMsg.UNKNOWN_COMPRESS_ALGORITHM);
         }
-        int compressOrdinal = compressAlgorithm.ordinal();
-        out.writeByte(compressOrdinal);
-        byte[] compressMessage = compressAlgorithm.compress(message);
-        // 9. 长度
-        int length = compressMessage.length;
-        out.writeInt(length);
-        // 10. 写入内容
-        out.writeBytes(compressMessage);
-        log.info("编码：magicNum:{}, version:{}, serializer:{}, messageType:{}, sequenceId:{}, length:{}, compressAlgorithm:{}", MAGIC_NUMBER, VERSION, serializerAlgorithm, messageType, sequenceId, length, compressAlgorithm);
-        outList.add(out);
     }
 
     /**
@@ -124,54 +351,126 @@ public class MessageCodecSharable extends MessageToMessageCodec<ByteBuf, Message
      **/
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> outList) {
-        ByteBuf unwrap = in.unwrap();
-        unwrap.resetReaderIndex();
-        byte[] magicNum = new byte[MAGIC_NUMBER.length];
         // 1. 4 字节的魔数
-        unwrap.readBytes(magicNum);
-        if (!Arrays.equals(magicNum, MAGIC_NUMBER)) {
-            log.error("未知的魔数:{}", Arrays.toString(magicNum));
-            throw new PrpcException(ErrorMsg.UNKNOWN_MAGIC_CODE);
+        for (byte magic : MAGIC_NUMBER) {
+            if (in.readByte() != magic) {
+                log.error("未知的魔数:{}", ByteBufUtil.hexDump(in, 0, MAGIC_NUMBER.length));
+                throw new PrpcException(ErrorMsg.UNKNOWN_MAGIC_CODE);
+            }
+        }
+        // 2. 1 字节的版本号，不同版本的信封格式不兼容，直接拒绝而不是按本端的格式错误地解码
+        byte version = in.readByte();
+        if (version != VERSION) {
+            log.error("不支持的协议版本:{}，本端版本:{}，远端:{}", version, VERSION, ctx.channel().remoteAddress());
+            throw new PrpcException(ErrorMsg.UNSUPPORTED_PROTOCOL_VERSION);
         }
-        // 2. 1 字节的版本号
-        byte version = unwrap.readByte();
         // 3. 1 字节的序列化算法
-        byte serializer = unwrap.readByte();
+        byte serializer = in.readByte();
         // 4. 1 字节的指令类型
-        byte messageType = unwrap.readByte();
+        byte messageType = in.readByte();
         // 5. 36个字节的请求序列号
-        byte[] sequenceIdBytes = new byte[SEQUENCE_ID_LENGTH];
-        unwrap.readBytes(sequenceIdBytes);
-        String sequenceId = new String(sequenceIdBytes, (StandardCharsets.UTF_8));
-        // 6、无意义，对齐填充
-        unwrap.readBytes(new byte[FILL_BYTE_LENGTH]);
-        byte compress = unwrap.readByte();
+        String sequenceId = readSequenceId(in);
+        // 6、对齐填充，响应帧中可能附带服务端的负载报告
+        readPadding(ctx, in, messageType);
+        byte compress = in.readByte();
         // 7. 长度
-        int length = unwrap.readInt();
-        // 8. 读取内容
-        byte[] compressMessage = new byte[length];
-        unwrap.readBytes(compressMessage, 0, length);
+        int length = in.readInt();
         // 找到压缩算法
-        CompressAlgorithm compressAlgorithm;
+        CompressAlgorithm compressAlgorithm = compressAlgorithm(ctx, compress);
+        // 找到反序列化算法
+        SerializerAlgorithm serializerAlgorithm = serializerAlgorithm(ctx, serializer);
+        // 8. 根据消息类型解码信封以及载荷
+        Message message;
+        if (messageType == Message.RPC_MESSAGE_TYPE_REQUEST) {
+            message = EnvelopeCodec.decodeRequest(in, serializerAlgorithm, compressAlgorithm);
+        } else if (messageType == Message.RPC_MESSAGE_TYPE_RESPONSE) {
+            message = EnvelopeCodec.decodeResponse(in, serializerAlgorithm, compressAlgorithm);
+        } else if (messageType == Message.RPC_MESSAGE_TYPE_BATCH_REQUEST) {
+            message = decodeBatchRequest(ctx, in);
+        } else if (messageType == Message.RPC_MESSAGE_TYPE_BATCH_RESPONSE) {
+            // 批量响应直接拆成单个响应交给响应处理器，每个调用方各自完成
+            int count = decodeBatchResponse(ctx, in, outList);
+            log.debug("解码：version:{}, messageType:{}, 批量响应个数:{}, length:{}", version, messageType, count, length);
+            return;
+        } else {
+            message = new PingMessage();
+        }
+        message.setSequenceId(sequenceId);
+        log.debug("解码：version:{}, serializerAlgorithm:{}, messageType:{}, sequenceId:{}, length:{}, compressAlgorithm:{}", version, serializerAlgorithm, messageType, sequenceId, length, compressAlgorithm);
+        outList.add(message);
+    }
+
+    /**
+     * 解码批量请求
+     *
+     * @param ctx {@link ChannelHandlerContext}处理器上下文
+     * @param in  输入缓冲区
+     * @return RpcBatchRequestMessage 批量请求消息
+     **/
+    private RpcBatchRequestMessage decodeBatchRequest(ChannelHandlerContext ctx, ByteBuf in) {
+        int count = in.readInt();
+        List<RpcRequestMessage> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String sequenceId = readSequenceId(in);
+            SerializerAlgorithm serializerAlgorithm = serializerAlgorithm(ctx, in.readByte());
+            CompressAlgorithm compressAlgorithm = compressAlgorithm(ctx, in.readByte());
+            RpcRequestMessage request = EnvelopeCodec.decodeRequest(in, serializerAlgorithm, compressAlgorithm);
+            request.setSequenceId(sequenceId);
+            requests.add(request);
+        }
+        return new RpcBatchRequestMessage(requests);
+    }
+
+    /**
+     * 解码批量响应，每个响应单独放入消息集合
+     *
+     * @param ctx     {@link ChannelHandlerContext}处理器上下文
+     * @param in      输入缓冲区
+     * @param outList 消息集合
+     * @return int 响应个数
+     **/
+    private int decodeBatchResponse(ChannelHandlerContext ctx, ByteBuf in, List<Object> outList) {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String sequenceId = readSequenceId(in);
+            SerializerAlgorithm serializerAlgorithm = serializerAlgorithm(ctx, in.readByte());
+            CompressAlgorithm compressAlgorithm = compressAlgorithm(ctx, in.readByte());
+            RpcResponseMessage response = EnvelopeCodec.decodeResponse(in, serializerAlgorithm, compressAlgorithm);
+            response.setSequenceId(sequenceId);
+            outList.add(response);
+        }
+        return count;
+    }
+
+    /**
+     * 根据帧中的下标找到压缩算法
+     *
+     * @param ctx      {@link ChannelHandlerContext}处理器上下文
+     * @param compress 压缩算法下标
+     * @return CompressAlgorithm 压缩算法
+     **/
+    private CompressAlgorithm compressAlgorithm(ChannelHandlerContext ctx, byte compress) {
         try {
-            compressAlgorithm = CompressAlgorithm.values()[compress];
-        } catch (IllegalArgumentException e) {
+            return CompressAlgorithm.values()[compress];
+        } catch (ArrayIndexOutOfBoundsException e) {
             log.error("{}收到的消息所指定压缩算法未知,异常信息为:{}", ctx.channel().localAddress(), e.getMessage());
             throw new PrpcException(ErrorMsg.UNKNOWN_COMPRESS_ALGORITHM);
         }
-        byte[] decompressMessage = compressAlgorithm.decompress(compressMessage);
-        // 找到反序列化算法
-        SerializerAlgorithm serializerAlgorithm;
+    }
+
+    /**
+     * 根据帧中的下标找到反序列化算法
+     *
+     * @param ctx        {@link ChannelHandlerContext}处理器上下文
+     * @param serializer 序列化算法下标
+     * @return SerializerAlgorithm 反序列化算法
+     **/
+    private SerializerAlgorithm serializerAlgorithm(ChannelHandlerContext ctx, byte serializer) {
         try {
-            serializerAlgorithm = SerializerAlgorithm.values()[serializer];
-        } catch (IllegalArgumentException e) {
+            return SerializerAlgorithm.values()[serializer];
+        } catch (ArrayIndexOutOfBoundsException e) {
             log.error("{}收到的消息所指定反序列化算法未知,异常信息为:{}", ctx.channel().localAddress(), e.getMessage());
             throw new PrpcException(ErrorMsg.UNKNOWN_SERIALIZER_ALGORITHM);
         }
-        // 确定具体消息类型
-        Class<? extends Message> messageClass = Message.getMessageClass(messageType);
-        Message message = (Message) serializerAlgorithm.deserialize(messageClass, decompressMessage);
-        log.info("解码：magicNum:{}, version:{}, serializerAlgorithm:{}, messageType:{}, sequenceId:{}, length:{}, compressAlgorithm:{}", magicNum, version, serializerAlgorithm, messageType, sequenceId, length, compressAlgorithm);
-        outList.add(message);
     }
-}
\ No newline at end of file
+}
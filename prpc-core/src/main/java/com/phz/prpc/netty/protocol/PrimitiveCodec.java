@@ -0,0 +1,324 @@
+package com.phz.prpc.netty.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * 基本类型参数编解码器，方法签名只由基本类型、包装类型、{@link String}以及{@code byte[]}组成时，参数和返回值不再经过{@link com.phz.prpc.netty.serializer.SerializerAlgorithm}，
+ * 而是直接以定长、变长整数({@code zigzag varint})或{@code UTF-8}字段写入帧中
+ * </p>
+ * <br></br>
+ * <p>
+ * 参数按照声明类型直接读写，不需要类型标记；返回值的声明类型服务端编码时并不知道，所以在值前面写入1字节的类型标记
+ * </p>
+ * <br></br>
+ * <p>
+ * 服务端通过{@link PrimitiveInvoker}直接从帧中读取基本类型参数调用方法并写出返回值，整个过程不装箱；
+ * 其余情况(开启了响应缓存、合并调用等需要参数对象的场景)才按声明类型解码成参数数组
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 14:05
+ */
+public final class PrimitiveCodec {
+    /**
+     * 类型标记：不支持的类型
+     **/
+    private static final byte TAG_UNSUPPORTED = 0;
+
+    /**
+     * 支持的类型到类型标记的映射，基本类型与其包装类型共用同一个标记
+     **/
+    private static final Map<Class<?>, Byte> TYPE_TAGS = new IdentityHashMap<>();
+
+    /**
+     * 类型标记到类型的映射，返回值解码使用
+     **/
+    private static final Class<?>[] TAG_TYPES = {null, Boolean.class, Byte.class, Character.class, Short.class, Integer.class, Long.class, Float.class, Double.class, String.class, byte[].class};
+
+    /*
+     * 初始化所有支持的类型
+     */
+    static {
+        Class<?>[] primitives = {null, boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class};
+        for (byte tag = 1; tag < TAG_TYPES.length; tag++) {
+            TYPE_TAGS.put(TAG_TYPES[tag], tag);
+            if (tag < primitives.length) {
+                TYPE_TAGS.put(primitives[tag], tag);
+            }
+        }
+    }
+
+    /**
+     * 私有构造方法，禁用手动实例化
+     **/
+    private PrimitiveCodec() {
+    }
+
+    /**
+     * 判断一个方法签名的参数是否都可以走基本类型编码
+     *
+     * @param parameterTypes 参数类型数组
+     * @return boolean 是否全部支持
+     **/
+    public static boolean isSupported(Class<?>[] parameterTypes) {
+        for (Class<?> parameterType : parameterTypes) {
+            if (!TYPE_TAGS.containsKey(parameterType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 判断一个类型是否可以走基本类型编码
+     *
+     * @param type 类型
+     * @return boolean 是否支持
+     **/
+    public static boolean isSupportedType(Class<?> type) {
+        return TYPE_TAGS.containsKey(type);
+    }
+
+    /**
+     * 获取一个受支持类型的类型标记
+     *
+     * @param type 类型
+     * @return byte 类型标记
+     **/
+    static byte tagOf(Class<?> type) {
+        return TYPE_TAGS.get(type);
+    }
+
+    /**
+     * 判断一个运行时值是否可以走基本类型编码
+     *
+     * @param value 运行时值
+     * @return boolean 是否支持
+     **/
+    public static boolean isSupportedValue(Object value) {
+        return value != null && TYPE_TAGS.containsKey(value.getClass());
+    }
+
+    /**
+     * 按照声明类型写入一个参数值，基本类型不会为{@code null}，其余类型先写1字节的是否为空标记
+     *
+     * @param out   输出缓冲区
+     * @param type  声明类型
+     * @param value 参数值
+     **/
+    public static void writeValue(ByteBuf out, Class<?> type, Object value) {
+        if (!type.isPrimitive()) {
+            if (value == null) {
+                out.writeBoolean(false);
+                return;
+            }
+            out.writeBoolean(true);
+        }
+        writeTagValue(out, TYPE_TAGS.get(type), value);
+    }
+
+    /**
+     * 按照声明类型读取一个参数值
+     *
+     * @param in   输入缓冲区
+     * @param type 声明类型
+     * @return Object 参数值
+     **/
+    public static Object readValue(ByteBuf in, Class<?> type) {
+        if (!type.isPrimitive() && !in.readBoolean()) {
+            return null;
+        }
+        return readTagValue(in, TYPE_TAGS.get(type));
+    }
+
+    /**
+     * 按照声明类型跳过一个参数值，不解码也不装箱，用于确定参数载荷的长度
+     *
+     * @param in   输入缓冲区
+     * @param type 声明类型
+     **/
+    public static void skipValue(ByteBuf in, Class<?> type) {
+        if (!type.isPrimitive() && !in.readBoolean()) {
+            return;
+        }
+        switch (TYPE_TAGS.get(type)) {
+            case 1:
+            case 2:
+                in.skipBytes(1);
+                break;
+            case 3:
+            case 4:
+                in.skipBytes(2);
+                break;
+            case 5:
+            case 6:
+                readVarLong(in);
+                break;
+            case 7:
+                in.skipBytes(4);
+                break;
+            case 8:
+                in.skipBytes(8);
+                break;
+            default:
+                in.skipBytes((int) readVarLong(in));
+        }
+    }
+
+    /**
+     * 写入一个带类型标记的值，值的类型必须满足{@link PrimitiveCodec#isSupportedValue}
+     *
+     * @param out   输出缓冲区
+     * @param value 值
+     **/
+    public static void writeTagged(ByteBuf out, Object value) {
+        byte tag = TYPE_TAGS.get(value.getClass());
+        out.writeByte(tag);
+        writeTagValue(out, tag, value);
+    }
+
+    /**
+     * 读取一个带类型标记的值
+     *
+     * @param in 输入缓冲区
+     * @return Object 值
+     **/
+    public static Object readTagged(ByteBuf in) {
+        byte tag = in.readByte();
+        if (tag <= TAG_UNSUPPORTED || tag >= TAG_TYPES.length) {
+            throw new IllegalArgumentException("未知的基本类型标记:" + tag);
+        }
+        return readTagValue(in, tag);
+    }
+
+    /**
+     * 按类型标记写入值
+     *
+     * @param out   输出缓冲区
+     * @param tag   类型标记
+     * @param value 值
+     **/
+    private static void writeTagValue(ByteBuf out, byte tag, Object value) {
+        switch (tag) {
+            case 1:
+                out.writeBoolean((Boolean) value);
+                break;
+            case 2:
+                out.writeByte((Byte) value);
+                break;
+            case 3:
+                out.writeChar((Character) value);
+                break;
+            case 4:
+                out.writeShort((Short) value);
+                break;
+            case 5:
+                writeVarLong(out, (Integer) value);
+                break;
+            case 6:
+                writeVarLong(out, (Long) value);
+                break;
+            case 7:
+                out.writeFloat((Float) value);
+                break;
+            case 8:
+                out.writeDouble((Double) value);
+                break;
+            case 9:
+                String string = (String) value;
+                writeVarLong(out, ByteBufUtil.utf8Bytes(string));
+                ByteBufUtil.writeUtf8(out, string);
+                break;
+            default:
+                byte[] bytes = (byte[]) value;
+                writeVarLong(out, bytes.length);
+                out.writeBytes(bytes);
+        }
+    }
+
+    /**
+     * 按类型标记读取值
+     *
+     * @param in  输入缓冲区
+     * @param tag 类型标记
+     * @return Object 值
+     **/
+    private static Object readTagValue(ByteBuf in, byte tag) {
+        switch (tag) {
+            case 1:
+                return in.readBoolean();
+            case 2:
+                return in.readByte();
+            case 3:
+                return in.readChar();
+            case 4:
+                return in.readShort();
+            case 5:
+                return (int) readVarLong(in);
+            case 6:
+                return readVarLong(in);
+            case 7:
+                return in.readFloat();
+            case 8:
+                return in.readDouble();
+            case 9:
+                int length = (int) readVarLong(in);
+                String string = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+                in.skipBytes(length);
+                return string;
+            default:
+                byte[] bytes = new byte[(int) readVarLong(in)];
+                in.readBytes(bytes);
+                return bytes;
+        }
+    }
+
+    /**
+     * 以{@code zigzag varint}写入一个整数，绝对值小的数字只占用很少的字节
+     *
+     * @param out   输出缓冲区
+     * @param value 整数
+     **/
+    static void writeVarLong(ByteBuf out, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    /**
+     * 读取一个{@code zigzag varint}整数
+     *
+     * @param in 输入缓冲区
+     * @return long 整数
+     **/
+    static long readVarLong(ByteBuf in) {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * 读取一个{@code zigzag varint}编码的{@code int}
+     *
+     * @param in 输入缓冲区
+     * @return int 整数
+     **/
+    static int readVarInt(ByteBuf in) {
+        return (int) readVarLong(in);
+    }
+}
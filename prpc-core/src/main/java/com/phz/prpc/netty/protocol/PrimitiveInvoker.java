@@ -0,0 +1,218 @@
+package com.phz.prpc.netty.protocol;
+
+import io.netty.buffer.ByteBuf;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 基本类型方法的类型化调用器，参数和返回值都受{@link PrimitiveCodec}支持的服务方法，直接从请求帧中按声明类型读出参数调用方法，
+ * 再把返回值连同响应状态写成响应信封，不经过参数数组和反射调用，基本类型的参数和返回值全程不装箱
+ * </p>
+ * <br></br>
+ * <p>
+ * 调用器是一条{@link MethodHandle}链：每个参数的读取器按声明顺序依次从请求缓冲区读取，结果直接作为服务方法的对应参数，
+ * 返回值交给按返回类型选出的写入器；整条链的类型是{@code (ByteBuf, Object, ByteBuf)void}，通过{@link MethodHandle#invokeExact}调用
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 19:20
+ */
+@Slf4j
+public final class PrimitiveInvoker {
+    /**
+     * 查找本类以及{@link PrimitiveCodec}中读写方法使用的{@link MethodHandles.Lookup}
+     **/
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * 方法到调用器的缓存，不支持的方法对应{@link PrimitiveInvoker#UNSUPPORTED}
+     **/
+    private static final Map<Method, PrimitiveInvoker> INVOKERS = new ConcurrentHashMap<>();
+
+    /**
+     * 表示方法不能走类型化调用的占位调用器
+     **/
+    private static final PrimitiveInvoker UNSUPPORTED = new PrimitiveInvoker(null);
+
+    /**
+     * 调用链，类型为{@code (ByteBuf arguments, Object service, ByteBuf out)void}
+     **/
+    private final MethodHandle handle;
+
+    /**
+     * 构造方法
+     *
+     * @param handle 调用链
+     **/
+    private PrimitiveInvoker(MethodHandle handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * 获取方法的类型化调用器，第一次获取时生成
+     *
+     * @param method 服务实现类的方法
+     * @return PrimitiveInvoker 调用器，参数或者返回值不受支持时为{@code null}
+     **/
+    public static PrimitiveInvoker forMethod(Method method) {
+        PrimitiveInvoker invoker = INVOKERS.computeIfAbsent(method, PrimitiveInvoker::create);
+        return invoker == UNSUPPORTED ? null : invoker;
+    }
+
+    /**
+     * 读取参数并调用服务方法，把响应信封写入输出缓冲区
+     *
+     * @param service   服务对象
+     * @param arguments 基本类型编码的参数载荷
+     * @param out       响应信封的输出缓冲区
+     * @throws Throwable 服务方法抛出的异常，或者参数载荷损坏时的解码异常
+     **/
+    public void invoke(Object service, ByteBuf arguments, ByteBuf out) throws Throwable {
+        handle.invokeExact(arguments, service, out);
+    }
+
+    /**
+     * 为方法生成调用器
+     *
+     * @param method 服务实现类的方法
+     * @return PrimitiveInvoker 调用器，不支持时为{@link PrimitiveInvoker#UNSUPPORTED}
+     **/
+    private static PrimitiveInvoker create(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Class<?> returnType = method.getReturnType();
+        if (!PrimitiveCodec.isSupported(parameterTypes) || (returnType != void.class && !PrimitiveCodec.isSupportedType(returnType))) {
+            return UNSUPPORTED;
+        }
+        try {
+            MethodHandle target = LOOKUP.unreflect(method);
+            target = target.asType(target.type().changeParameterType(0, Object.class));
+            // 从最后一个参数开始，逐个把参数换成从缓冲区读取，外层的读取器先执行，保证按声明顺序读取
+            MethodHandle invoker = MethodHandles.dropArguments(target, 0, ByteBuf.class);
+            for (int k = parameterTypes.length; k >= 1; k--) {
+                Class<?> parameterType = parameterTypes[k - 1];
+                // (ByteBuf, Object, p1..pk) -> (pk, ByteBuf, Object, p1..pk-1)
+                Class<?>[] permutedTypes = new Class<?>[k + 2];
+                int[] reorder = new int[k + 2];
+                permutedTypes[0] = parameterType;
+                permutedTypes[1] = ByteBuf.class;
+                permutedTypes[2] = Object.class;
+                reorder[0] = 1;
+                reorder[1] = 2;
+                for (int i = 0; i < k - 1; i++) {
+                    permutedTypes[i + 3] = parameterTypes[i];
+                    reorder[i + 2] = i + 3;
+                }
+                reorder[k + 1] = 0;
+                invoker = MethodHandles.permuteArguments(invoker, MethodType.methodType(invoker.type().returnType(), permutedTypes), reorder);
+                invoker = MethodHandles.foldArguments(invoker, reader(parameterType));
+            }
+            // (ByteBuf, Object)R -> (ByteBuf, Object, ByteBuf)void
+            invoker = MethodHandles.collectArguments(writer(returnType), 0, invoker);
+            return new PrimitiveInvoker(invoker);
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            log.warn("方法{}无法生成类型化调用器，使用反射调用:{}", method, e.toString());
+            return UNSUPPORTED;
+        }
+    }
+
+    /**
+     * 生成按声明类型读取一个参数的读取器
+     *
+     * @param type 声明类型
+     * @return MethodHandle 类型为{@code (ByteBuf)type}的读取器
+     * @throws IllegalAccessException 查找失败
+     * @throws NoSuchMethodException  查找失败
+     **/
+    private static MethodHandle reader(Class<?> type) throws IllegalAccessException, NoSuchMethodException {
+        if (type == int.class) {
+            return LOOKUP.findStatic(PrimitiveCodec.class, "readVarInt", MethodType.methodType(int.class, ByteBuf.class));
+        }
+        if (type == long.class) {
+            return LOOKUP.findStatic(PrimitiveCodec.class, "readVarLong", MethodType.methodType(long.class, ByteBuf.class));
+        }
+        if (type.isPrimitive()) {
+            String name = "read" + Character.toUpperCase(type.getName().charAt(0)) + type.getName().substring(1);
+            return LOOKUP.findVirtual(ByteBuf.class, name, MethodType.methodType(type));
+        }
+        MethodHandle readValue = LOOKUP.findStatic(PrimitiveCodec.class, "readValue", MethodType.methodType(Object.class, ByteBuf.class, Class.class));
+        return MethodHandles.insertArguments(readValue, 1, type).asType(MethodType.methodType(type, ByteBuf.class));
+    }
+
+    /**
+     * 生成按返回类型写出响应信封的写入器
+     *
+     * @param type 返回类型
+     * @return MethodHandle {@code void}方法为{@code (ByteBuf)void}，其余为{@code (type, ByteBuf)void}
+     * @throws IllegalAccessException 查找失败
+     * @throws NoSuchMethodException  查找失败
+     **/
+    private static MethodHandle writer(Class<?> type) throws IllegalAccessException, NoSuchMethodException {
+        if (type == void.class) {
+            return LOOKUP.findStatic(PrimitiveInvoker.class, "writeVoid", MethodType.methodType(void.class, ByteBuf.class));
+        }
+        if (!type.isPrimitive()) {
+            MethodHandle writeTagged = LOOKUP.findStatic(PrimitiveInvoker.class, "writeTagged", MethodType.methodType(void.class, Object.class, ByteBuf.class));
+            return writeTagged.asType(MethodType.methodType(void.class, type, ByteBuf.class));
+        }
+        MethodHandle valueWriter;
+        if (type == int.class || type == long.class) {
+            valueWriter = LOOKUP.findStatic(PrimitiveCodec.class, "writeVarLong", MethodType.methodType(void.class, ByteBuf.class, long.class));
+        } else {
+            // ByteBuf的writeByte、writeChar、writeShort都接收int，由asType完成拓宽
+            Class<?> parameterType = type == byte.class || type == char.class || type == short.class ? int.class : type;
+            String name = "write" + Character.toUpperCase(type.getName().charAt(0)) + type.getName().substring(1);
+            valueWriter = LOOKUP.findVirtual(ByteBuf.class, name, MethodType.methodType(ByteBuf.class, parameterType));
+        }
+        valueWriter = valueWriter.asType(MethodType.methodType(void.class, ByteBuf.class, type));
+        MethodHandle headerWriter = LOOKUP.findStatic(PrimitiveInvoker.class, "writePrimitiveHeader", MethodType.methodType(void.class, ByteBuf.class, byte.class));
+        headerWriter = MethodHandles.insertArguments(headerWriter, 1, PrimitiveCodec.tagOf(type));
+        // 先写状态和类型标记，再写值：(ByteBuf, type)void -> (type, ByteBuf)void
+        MethodHandle writer = MethodHandles.foldArguments(valueWriter, headerWriter);
+        return MethodHandles.permuteArguments(writer, MethodType.methodType(void.class, type, ByteBuf.class), 1, 0);
+    }
+
+    /**
+     * 写出{@code void}方法的响应信封
+     *
+     * @param out 输出缓冲区
+     **/
+    private static void writeVoid(ByteBuf out) {
+        out.writeByte(EnvelopeCodec.STATUS_VOID);
+        out.writeInt(0);
+    }
+
+    /**
+     * 写出基本类型返回值的状态、错误码以及类型标记，值由调用链随后写入
+     *
+     * @param out 输出缓冲区
+     * @param tag 类型标记
+     **/
+    private static void writePrimitiveHeader(ByteBuf out, byte tag) {
+        out.writeByte(EnvelopeCodec.STATUS_PRIMITIVE_VALUE);
+        out.writeInt(0);
+        out.writeByte(tag);
+    }
+
+    /**
+     * 写出包装类型、字符串或者字节数组返回值的响应信封
+     *
+     * @param value 返回值
+     * @param out   输出缓冲区
+     **/
+    private static void writeTagged(Object value, ByteBuf out) {
+        if (value == null) {
+            writeVoid(out);
+            return;
+        }
+        out.writeByte(EnvelopeCodec.STATUS_PRIMITIVE_VALUE);
+        out.writeInt(0);
+        PrimitiveCodec.writeTagged(out, value);
+    }
+}
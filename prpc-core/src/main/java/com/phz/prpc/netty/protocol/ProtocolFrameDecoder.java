@@ -14,13 +14,13 @@ import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
  */
 public class ProtocolFrameDecoder extends LengthFieldBasedFrameDecoder {
     /**
-     * 最长帧
+     * 最长帧，批量帧中包含多个请求，需要留出足够的空间
      **/
-    private static final Integer MAX_FRAME_LENGTH = 4096;
+    private static final Integer MAX_FRAME_LENGTH = 8 * 1024 * 1024;
     /**
-     * 长度字段偏移量，在编解码器中，我们将长度字节放在了第四十四个，所以长度字段偏移量为44
+     * 长度字段偏移量，魔数4 + 版本1 + 序列化算法1 + 指令类型1 + 请求序列号36 + 填充16 + 压缩算法1，所以长度字段偏移量为60
      **/
-    private static final Integer LENGTH_FIELD_OFFSET = 44;
+    private static final Integer LENGTH_FIELD_OFFSET = 60;
     /**
      * 长度字段长度
      **/
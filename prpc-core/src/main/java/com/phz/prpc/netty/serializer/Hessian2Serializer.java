@@ -53,13 +53,15 @@ public class Hessian2Serializer {
      * @param clazz         反序列化对象的{@link Class}
      * @param serializeData 序列化数据.
      */
+    @SuppressWarnings("unchecked")
     public static <T> T deserialize(Class<T> clazz, byte[] serializeData) {
         Hessian2Input hi = null;
         ByteArrayInputStream byteArrayInputStream;
         try {
             byteArrayInputStream = new ByteArrayInputStream(serializeData);
             hi = new Hessian2Input(byteArrayInputStream);
-            return clazz.cast(hi.readObject());
+            // 基本类型的Class无法cast其包装类对象，这里直接强转
+            return (T) hi.readObject(clazz);
         } catch (Exception ex) {
             throw new PrpcException(ErrorMsg.HESSIAN_DESERIALIZE_FAILED);
         } finally {
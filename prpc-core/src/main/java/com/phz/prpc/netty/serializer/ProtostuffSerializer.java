@@ -59,6 +59,51 @@ public class ProtostuffSerializer {
         return obj;
     }
 
+    /**
+     * 序列化任意值，{@code protostuff}只能处理带字段的消息类型，字符串、数组、包装类等值需要先装入{@link ValueWrapper}
+     *
+     * @param value 待序列化的值
+     * @return byte 序列化后的字节数组
+     **/
+    public static byte[] serializeValue(Object value) {
+        return serialize(new ValueWrapper(value));
+    }
+
+    /**
+     * 反序列化由{@link ProtostuffSerializer#serializeValue}序列化的值
+     *
+     * @param data 待反序列化字节数组
+     * @return Object 原始值
+     **/
+    public static Object deserializeValue(byte[] data) {
+        return deserialize(data, ValueWrapper.class).value;
+    }
+
+    /**
+     * 值包装类，借助{@code protostuff}对{@link Object}类型字段的动态类型支持序列化任意值
+     **/
+    private static final class ValueWrapper {
+        /**
+         * 被包装的值
+         **/
+        private Object value;
+
+        /**
+         * 无参构造方法，供{@link Schema#newMessage()}使用
+         **/
+        private ValueWrapper() {
+        }
+
+        /**
+         * 构造方法，包装一个值
+         *
+         * @param value 被包装的值
+         **/
+        private ValueWrapper(Object value) {
+            this.value = value;
+        }
+    }
+
     /**
      * 获取并缓存{@link Schema}
      *
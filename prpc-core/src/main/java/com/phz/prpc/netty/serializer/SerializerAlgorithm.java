@@ -109,12 +109,12 @@ public enum SerializerAlgorithm implements Serializer {
     PROTOSTUFF {
         @Override
         public <T> Object deserialize(Class<T> clazz, byte[] bytes) {
-            return ProtostuffSerializer.deserialize(bytes, clazz);
+            return ProtostuffSerializer.deserializeValue(bytes);
         }
 
         @Override
         public <T> byte[] serialize(T object) {
-            return ProtostuffSerializer.serialize(object);
+            return ProtostuffSerializer.serializeValue(object);
         }
     }
 }
\ No newline at end of file
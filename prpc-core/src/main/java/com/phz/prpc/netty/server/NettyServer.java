@@ -1,18 +1,24 @@
 package com.phz.prpc.netty.server;
 
 import com.phz.prpc.config.PrpcProperties;
+import com.phz.prpc.netty.handler.RpcBatchRequestMessageHandler;
 import com.phz.prpc.netty.handler.RpcRequestMessageHandler;
 import com.phz.prpc.netty.protocol.MessageCodecSharable;
 import com.phz.prpc.netty.protocol.ProtocolFrameDecoder;
+import com.phz.prpc.registry.InMemoryRegistry;
 import com.phz.prpc.registry.NacosRegistry;
 import com.phz.prpc.registry.ServiceRegistry;
+import com.phz.prpc.registry.StaticRegistry;
 import com.phz.prpc.registry.ZookeeperRegistry;
 import com.phz.prpc.spring.SpringBeanUtil;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleState;
@@ -21,10 +27,19 @@ import io.netty.handler.timeout.IdleStateHandler;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
 /**
  * <p>
  * {@code rpc}实例的的{@code Netty}服务端
  * </p>
+ * <br></br>
+ * <p>
+ * 配置了{@link PrpcProperties#getDomainSocketPath()}并且平台支持{@code epoll}时，同时监听一个{@code Unix}域套接字，
+ * 两种连接使用相同的处理器，同一台主机上的客户端可以绕过{@code TCP}协议栈
+ * </p>
  *
  * @author PengHuanZhi
  * @date 2022年01月11日 20:17
@@ -35,16 +50,16 @@ public final class NettyServer {
     /**
      * {@code Netty Boss}线程，只处理客户端连接请求
      **/
-    private static EventLoopGroup boss;
+    private final EventLoopGroup boss;
     /**
      * {@code Netty Worker}线程，只处理客户端读写请求
      **/
-    private static EventLoopGroup worker;
+    private final EventLoopGroup worker;
 
     /**
-     * 服务注册工具类
+     * 服务注册工具类，只有单例服务端关闭时注销所有服务，其余服务端为{@code null}
      **/
-    private static ServiceRegistry serviceRegistry;
+    private final ServiceRegistry serviceRegistry;
 
     /**
      * {@link NacosRegistry}表示Nacos作为注册中心
@@ -56,22 +71,90 @@ public final class NettyServer {
      **/
     private static final String ZOOKEEPER = "zookeeper";
 
-    private static ServerBootstrap bootstrap;
+    /**
+     * {@link StaticRegistry}表示不使用外部注册中心
+     **/
+    private static final String STATIC = "static";
+
+    /**
+     * {@link InMemoryRegistry}表示使用进程内注册中心
+     **/
+    private static final String MEMORY = "memory";
+
+    /**
+     * 监听端口
+     **/
+    private final int port;
+
+    /**
+     * 监听的{@link Channel}，启动后才有值
+     **/
+    private Channel serverChannel;
+
+    /**
+     * {@code Unix}域套接字路径，没有配置时为{@code null}
+     **/
+    private final String domainSocketPath;
+
+    /**
+     * 监听{@code Unix}域套接字的{@link Channel}，没有配置、平台不支持、监听失败或者还没有启动时为{@code null}
+     **/
+    private volatile Channel domainServerChannel;
+
+    /**
+     * 服务端启动器，启动后才有值
+     **/
+    private ServerBootstrap bootstrap;
 
     /**
      * 私有构造方法，禁用手动实例化
+     *
+     * @param port             监听端口
+     * @param domainSocketPath {@code Unix}域套接字路径，为空时不监听
+     * @param singleton        是否是按配置创建的单例服务端
      **/
-    private NettyServer() {
+    private NettyServer(int port, String domainSocketPath, boolean singleton) {
+        this.port = port;
+        this.domainSocketPath = domainSocketPath == null || domainSocketPath.trim().isEmpty() ? null : domainSocketPath.trim();
         boss = new NioEventLoopGroup(1);
         worker = new NioEventLoopGroup();
         PrpcProperties prpcProperties = SpringBeanUtil.getBean(PrpcProperties.class);
-        if (NACOS.equalsIgnoreCase(prpcProperties.getRegistry())) {
+        if (!singleton) {
+            serviceRegistry = null;
+        } else if (NACOS.equalsIgnoreCase(prpcProperties.getRegistry())) {
             serviceRegistry = NacosRegistry.getInstance();
         } else if (ZOOKEEPER.equalsIgnoreCase(prpcProperties.getRegistry())) {
             serviceRegistry = ZookeeperRegistry.getInstance();
+        } else if (STATIC.equalsIgnoreCase(prpcProperties.getRegistry())) {
+            serviceRegistry = StaticRegistry.getInstance();
+        } else if (MEMORY.equalsIgnoreCase(prpcProperties.getRegistry())) {
+            serviceRegistry = InMemoryRegistry.getInstance();
+        } else {
+            serviceRegistry = null;
         }
     }
 
+    /**
+     * 创建一个监听指定端口的服务端，与单例服务端提供相同的服务，用于在一个进程中启动多个服务实例做压测或者故障演练
+     *
+     * @param port 监听端口
+     * @return NettyServer 新的服务端，需要调用{@link NettyServer#start()}启动
+     **/
+    public static NettyServer newServer(int port) {
+        return new NettyServer(port, null, false);
+    }
+
+    /**
+     * 创建一个监听指定端口的服务端，同时监听{@code Unix}域套接字，用于比较两种传输方式
+     *
+     * @param port             监听端口
+     * @param domainSocketPath {@code Unix}域套接字路径
+     * @return NettyServer 新的服务端，需要调用{@link NettyServer#start()}启动
+     **/
+    public static NettyServer newServer(int port, String domainSocketPath) {
+        return new NettyServer(port, domainSocketPath, false);
+    }
+
     /**
      * {@code NettyServer}单例维护静态内部类：类的加载都是懒惰的，第一次调用{@link NettyServer#getInstance()}方法，才会加载此内部类，然后创建唯一{@code Netty}服务端
      **/
@@ -79,7 +162,17 @@ public final class NettyServer {
         /**
          * 单例
          **/
-        private static final NettyServer INSTANCE = new NettyServer();
+        private static final NettyServer INSTANCE = newSingleton();
+
+        /**
+         * 按配置创建单例服务端
+         *
+         * @return NettyServer 单例服务端
+         **/
+        private static NettyServer newSingleton() {
+            PrpcProperties prpcProperties = SpringBeanUtil.getBean(PrpcProperties.class);
+            return new NettyServer(prpcProperties.getServerPort(), prpcProperties.getDomainSocketPath(), true);
+        }
     }
 
     /**
@@ -95,15 +188,63 @@ public final class NettyServer {
      * 扫描到服务提供对象后，就会开启{@code Netty}服务
      **/
     @SneakyThrows
-    public void start() {
+    public synchronized void start() {
         if (bootstrap != null) {
             return;
         }
-        PrpcProperties prpcProperties = SpringBeanUtil.getBean(PrpcProperties.class);
         LoggingHandler loggingHandler = new LoggingHandler(LogLevel.INFO);
         MessageCodecSharable messageCodecSharable = new MessageCodecSharable();
         // rpc 请求消息处理器
         RpcRequestMessageHandler rpcRequestMessageHandler = new RpcRequestMessageHandler();
+        // rpc 批量请求消息处理器
+        RpcBatchRequestMessageHandler rpcBatchRequestMessageHandler = new RpcBatchRequestMessageHandler(rpcRequestMessageHandler);
+        ChannelInitializer<Channel> childHandler = new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                /*
+                 * 5s 内如果没有收到 channel 的数据，会触发一个 IdleState#READER_IDLE 事件
+                 * readerIdleTimeSeconds：读的空闲时间上限
+                 * writerIdleTimeSeconds：写的空闲时间上限
+                 * allIdleTimeSeconds：读写都空闲的时间上限
+                 **/
+                ch.pipeline().addLast(new IdleStateHandler(5, 0, 0));
+                // ChannelDuplexHandler 可以同时作为入站和出站处理器
+                ch.pipeline().addLast(new ChannelDuplexHandler() {
+                    /**
+                     * 用来触发特殊事件
+                     **/
+                    @Override
+                    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                        if (evt instanceof IdleStateEvent) {
+                            IdleStateEvent event = (IdleStateEvent) evt;
+                            // 触发了读空闲事件
+                            if (event.state() == IdleState.READER_IDLE) {
+                                log.debug("已经 5s 没有读到数据了");
+                                if (!ctx.channel().isActive()) {
+                                    ctx.channel().close();
+                                }
+                            }
+                        } else {
+                            super.userEventTriggered(ctx, evt);
+                        }
+                    }
+
+                    /**
+                     * 用来触发异常事件
+                     **/
+                    @Override
+                    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                        log.info("发现异常 : {}{} 连接关闭...", cause.getMessage(), ctx.channel().remoteAddress());
+                        ctx.channel().close();
+                    }
+                });
+                ch.pipeline().addLast(loggingHandler);
+                ch.pipeline().addLast(new ProtocolFrameDecoder());
+                ch.pipeline().addLast(messageCodecSharable);
+                ch.pipeline().addLast(rpcRequestMessageHandler);
+                ch.pipeline().addLast(rpcBatchRequestMessageHandler);
+            }
+        };
         bootstrap = new ServerBootstrap();
         ChannelFuture channelFuture = bootstrap
                 .group(boss, worker)
@@ -111,57 +252,72 @@ public final class NettyServer {
                 .childOption(ChannelOption.SO_KEEPALIVE, true)
                 .childOption(ChannelOption.ALLOW_HALF_CLOSURE, true)
                 .childOption(ChannelOption.TCP_NODELAY, true)
-                .childHandler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    protected void initChannel(SocketChannel ch) {
-                        /*
-                         * 5s 内如果没有收到 channel 的数据，会触发一个 IdleState#READER_IDLE 事件
-                         * readerIdleTimeSeconds：读的空闲时间上限
-                         * writerIdleTimeSeconds：写的空闲时间上限
-                         * allIdleTimeSeconds：读写都空闲的时间上限
-                         **/
-                        ch.pipeline().addLast(new IdleStateHandler(5, 0, 0));
-                        // ChannelDuplexHandler 可以同时作为入站和出站处理器
-                        ch.pipeline().addLast(new ChannelDuplexHandler() {
-                            /**
-                             * 用来触发特殊事件
-                             **/
-                            @Override
-                            public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
-                                if (evt instanceof IdleStateEvent) {
-                                    IdleStateEvent event = (IdleStateEvent) evt;
-                                    // 触发了读空闲事件
-                                    if (event.state() == IdleState.READER_IDLE) {
-                                        log.debug("已经 5s 没有读到数据了");
-                                        if (!ctx.channel().isActive()) {
-                                            ctx.channel().close();
-                                        }
-                                    }
-                                } else {
-                                    super.userEventTriggered(ctx, evt);
-                                }
-                            }
-
-                            /**
-                             * 用来触发异常事件
-                             **/
-                            @Override
-                            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-                                log.info("发现异常 : {}{} 连接关闭...", cause.getMessage(), ctx.channel().remoteAddress());
-                                ctx.channel().close();
-                            }
-                        });
-                        ch.pipeline().addLast(loggingHandler);
-                        ch.pipeline().addLast(new ProtocolFrameDecoder());
-                        ch.pipeline().addLast(messageCodecSharable);
-                        ch.pipeline().addLast(rpcRequestMessageHandler);
-                    }
-                }).bind(prpcProperties.getServerPort()).sync();
-        ChannelFuture closeFuture = channelFuture.channel().closeFuture();
+                .childHandler(childHandler)
+                .bind(port).sync();
+        serverChannel = channelFuture.channel();
+        if (domainSocketPath != null && Epoll.isAvailable()) {
+            startDomainSocket(childHandler);
+        }
+        ChannelFuture closeFuture = serverChannel.closeFuture();
         closeFuture.addListener((ChannelFutureListener) future -> {
             boss.shutdownGracefully();
             worker.shutdownGracefully();
-            serviceRegistry.deRegisterAllService();
+            if (serviceRegistry != null) {
+                serviceRegistry.deRegisterAllService();
+            }
+        });
+    }
+
+    /**
+     * 监听{@code Unix}域套接字，使用单独的{@code epoll}线程；上次没有正常退出留下的套接字文件先删除，监听失败时只记录日志，不影响{@code TCP}监听
+     *
+     * @param childHandler 与{@code TCP}连接相同的处理器
+     **/
+    private void startDomainSocket(ChannelInitializer<Channel> childHandler) {
+        EventLoopGroup domainBoss = new EpollEventLoopGroup(1);
+        EventLoopGroup domainWorker = new EpollEventLoopGroup();
+        try {
+            Files.deleteIfExists(Paths.get(domainSocketPath));
+            domainServerChannel = new ServerBootstrap()
+                    .group(domainBoss, domainWorker)
+                    .channel(EpollServerDomainSocketChannel.class)
+                    .childOption(ChannelOption.ALLOW_HALF_CLOSURE, true)
+                    .childHandler(childHandler)
+                    .bind(new DomainSocketAddress(domainSocketPath)).sync().channel();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            log.error("Unix域套接字 {} 监听失败，只使用TCP，原因 : {}", domainSocketPath, e.getMessage());
+            domainBoss.shutdownGracefully();
+            domainWorker.shutdownGracefully();
+            return;
+        }
+        log.info("服务端同时监听Unix域套接字 {}", domainSocketPath);
+        domainServerChannel.closeFuture().addListener((ChannelFutureListener) future -> {
+            domainBoss.shutdownGracefully();
+            domainWorker.shutdownGracefully();
+            Files.deleteIfExists(Paths.get(domainSocketPath));
         });
     }
+
+    /**
+     * 获取服务端发布给客户端的{@code Unix}域套接字路径，只有监听成功后才会发布，注册中心需要在{@link NettyServer#start()}之后读取
+     *
+     * @return String 套接字路径，没有配置、平台不支持{@code epoll}、监听失败或者还没有启动时为{@code null}
+     **/
+    public String getDomainSocketPath() {
+        return domainServerChannel != null ? domainSocketPath : null;
+    }
+
+    /**
+     * 关闭服务端，已经建立的连接随{@code Worker}线程一起关闭
+     **/
+    public synchronized void stop() {
+        if (domainServerChannel != null) {
+            domainServerChannel.close().syncUninterruptibly();
+            domainServerChannel = null;
+        }
+        if (serverChannel != null) {
+            serverChannel.close().syncUninterruptibly();
+            serverChannel = null;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+package com.phz.prpc.netty.server;
+
+import com.phz.prpc.config.PrpcProperties;
+import com.phz.prpc.netty.message.LoadReport;
+import com.phz.prpc.netty.message.RpcResponseMessage;
+import com.phz.prpc.spring.SpringBeanUtil;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * 服务端负载统计，记录处理中和排队中的请求数，并按{@link PrpcProperties#getLoadReportInterval()}限频生成{@link LoadReport}快照，
+ * 两次快照之间的响应复用同一个快照，{@code CPU}使用率也只在生成快照时读取
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 21:25
+ */
+public final class ServerLoad {
+    /**
+     * 是否开启负载报告
+     **/
+    public static final boolean ENABLED;
+
+    /**
+     * 负载报告的最小间隔，单位{@code ns}
+     **/
+    public static final long INTERVAL_NANOS;
+
+    /**
+     * 处理中的请求数
+     **/
+    private static final LongAdder ACTIVE = new LongAdder();
+
+    /**
+     * 排队中的请求数
+     **/
+    private static final LongAdder QUEUED = new LongAdder();
+
+    /**
+     * 操作系统信息
+     **/
+    private static final OperatingSystemMXBean OPERATING_SYSTEM = ManagementFactory.getOperatingSystemMXBean();
+
+    /**
+     * 最近一次的快照
+     **/
+    private static volatile LoadReport snapshot = new LoadReport(0, 0, 0);
+
+    /**
+     * 最近一次快照的生成时间点，与{@link System#nanoTime()}比较
+     **/
+    private static volatile long snapshotAt;
+
+    /*
+     * 读取配置
+     */
+    static {
+        PrpcProperties prpcProperties = SpringBeanUtil.getBean(PrpcProperties.class);
+        ENABLED = Boolean.TRUE.equals(prpcProperties.getLoadReport());
+        INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(Math.max(1, prpcProperties.getLoadReportInterval()));
+        // 第一次报告时立即生成快照
+        snapshotAt = System.nanoTime() - INTERVAL_NANOS;
+    }
+
+    /**
+     * 私有构造方法，禁用手动实例化
+     **/
+    private ServerLoad() {
+    }
+
+    /**
+     * 一个请求开始处理，返回的响应方第一次被调用时视为处理完成
+     *
+     * @param responder 原始响应方
+     * @return TrackedResponder 记录处理完成的响应方
+     **/
+    public static TrackedResponder track(Consumer<RpcResponseMessage> responder) {
+        begin();
+        return new TrackedResponder(responder);
+    }
+
+    /**
+     * 一个请求开始处理，没有响应方的调用（例如进程内调用）直接使用，每次调用都必须对应一次{@link ServerLoad#end()}
+     **/
+    public static void begin() {
+        ACTIVE.increment();
+    }
+
+    /**
+     * 一个请求处理完成
+     **/
+    public static void end() {
+        ACTIVE.decrement();
+    }
+
+    /**
+     * 一个请求进入业务线程池排队
+     **/
+    public static void enqueued() {
+        QUEUED.increment();
+    }
+
+    /**
+     * 一个请求离开业务线程池的队列开始处理
+     **/
+    public static void dequeued() {
+        QUEUED.decrement();
+    }
+
+    /**
+     * 获取负载快照，距上次生成超过报告间隔时重新生成
+     *
+     * @return LoadReport 负载快照
+     **/
+    public static LoadReport snapshot() {
+        long now = System.nanoTime();
+        if (now - snapshotAt >= INTERVAL_NANOS) {
+            // 并发生成时多算一次也没有关系
+            snapshotAt = now;
+            snapshot = new LoadReport((int) ACTIVE.sum(), (int) QUEUED.sum(), cpuPermille());
+        }
+        return snapshot;
+    }
+
+    /**
+     * 读取进程{@code CPU}使用率，{@code JDK}不提供时用系统平均负载除以核心数估算
+     *
+     * @return int 千分比
+     **/
+    private static int cpuPermille() {
+        double load = -1;
+        if (OPERATING_SYSTEM instanceof com.sun.management.OperatingSystemMXBean) {
+            load = ((com.sun.management.OperatingSystemMXBean) OPERATING_SYSTEM).getProcessCpuLoad();
+        }
+        if (load < 0) {
+            load = OPERATING_SYSTEM.getSystemLoadAverage() / OPERATING_SYSTEM.getAvailableProcessors();
+        }
+        return load < 0 ? 0 : (int) Math.min(1000, Math.round(load * 1000));
+    }
+
+    /**
+     * 记录处理完成的响应方，只有第一次响应或者{@link TrackedResponder#release()}会使处理中的请求数减一
+     **/
+    public static final class TrackedResponder implements Consumer<RpcResponseMessage> {
+        /**
+         * 原始响应方
+         **/
+        private final Consumer<RpcResponseMessage> responder;
+
+        /**
+         * 是否已经处理完成
+         **/
+        private volatile boolean done;
+
+        /**
+         * 构造方法
+         *
+         * @param responder 原始响应方
+         **/
+        private TrackedResponder(Consumer<RpcResponseMessage> responder) {
+            this.responder = responder;
+        }
+
+        /**
+         * 写出响应
+         *
+         * @param response 响应消息
+         **/
+        @Override
+        public void accept(RpcResponseMessage response) {
+            release();
+            responder.accept(response);
+        }
+
+        /**
+         * 处理异常结束，没有调用过响应方时也要结束计数
+         **/
+        public void release() {
+            if (!done) {
+                done = true;
+                end();
+            }
+        }
+    }
+}
@@ -1,17 +1,24 @@
 package com.phz.prpc.netty.server;
 
 import com.alibaba.cloud.nacos.NacosDiscoveryProperties;
+import com.phz.prpc.cache.ResponseCache;
+import com.phz.prpc.cache.SingleFlight;
 import com.phz.prpc.config.PrpcProperties;
 import com.phz.prpc.exception.ErrorMsg;
 import com.phz.prpc.exception.PrpcException;
+import com.phz.prpc.registry.InMemoryRegistry;
 import com.phz.prpc.registry.NacosRegistry;
 import com.phz.prpc.registry.ServiceRegistry;
+import com.phz.prpc.registry.StaticRegistry;
 import com.phz.prpc.registry.ZookeeperRegistry;
 import com.phz.prpc.spring.SpringBeanUtil;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -30,6 +37,11 @@ public final class ServiceProvider {
      **/
     private final Map<String, Object> serviceMap = new ConcurrentHashMap<>();
 
+    /**
+     * 已经加入但还没有注册到注册中心的服务，在{@link ServiceProvider#publishPendingServices()}时一次性注册
+     **/
+    private final Map<String, InetSocketAddress> pendingServices = new LinkedHashMap<>();
+
     /**
      * 服务注册中心
      **/
@@ -46,23 +58,57 @@ public final class ServiceProvider {
     private static final String ZOOKEEPER = "zookeeper";
 
     /**
-     * 私有构造方法，禁用手动实例化
+     * {@link StaticRegistry}表示不使用外部注册中心
+     **/
+    private static final String STATIC = "static";
+
+    /**
+     * {@link InMemoryRegistry}表示使用进程内注册中心
+     **/
+    private static final String MEMORY = "memory";
+
+    /**
+     * 配置的注册中心类型
+     **/
+    private final String registry;
+
+    /**
+     * 私有构造方法，禁用手动实例化；注册中心在第一次发布服务时才连接，只使用客户端的应用不会因为注册中心不可用而阻塞启动
      **/
     private ServiceProvider() {
         PrpcProperties prpcProperties = SpringBeanUtil.getBean(PrpcProperties.class);
         NacosDiscoveryProperties nacosProperties = SpringBeanUtil.getBean(NacosDiscoveryProperties.class);
         nacosProperties.setService("prpc");
-        if (NACOS.equalsIgnoreCase(prpcProperties.getRegistry())) {
-            serviceRegistry = NacosRegistry.getInstance();
+        registry = prpcProperties.getRegistry();
+        if (NACOS.equalsIgnoreCase(registry)) {
             nacosProperties.setServerAddr(prpcProperties.getRegistryAddress());
-        } else if (ZOOKEEPER.equalsIgnoreCase(prpcProperties.getRegistry())) {
+        } else if (ZOOKEEPER.equalsIgnoreCase(registry) || STATIC.equalsIgnoreCase(registry) || MEMORY.equalsIgnoreCase(registry)) {
             nacosProperties.setRegisterEnabled(false);
             nacosProperties.setInstanceEnabled(false);
             nacosProperties.setEphemeral(false);
-            serviceRegistry = ZookeeperRegistry.getInstance();
         }
     }
 
+    /**
+     * 获取配置的注册中心，第一次调用时创建
+     *
+     * @return ServiceRegistry 注册中心，没有配置时为{@code null}
+     **/
+    private synchronized ServiceRegistry serviceRegistry() {
+        if (serviceRegistry == null) {
+            if (NACOS.equalsIgnoreCase(registry)) {
+                serviceRegistry = NacosRegistry.getInstance();
+            } else if (ZOOKEEPER.equalsIgnoreCase(registry)) {
+                serviceRegistry = ZookeeperRegistry.getInstance();
+            } else if (STATIC.equalsIgnoreCase(registry)) {
+                serviceRegistry = StaticRegistry.getInstance();
+            } else if (MEMORY.equalsIgnoreCase(registry)) {
+                serviceRegistry = InMemoryRegistry.getInstance();
+            }
+        }
+        return serviceRegistry;
+    }
+
     /**
      * {@code ServiceProviderHolder}单例维护静态内部类：类的加载都是懒惰的，第一次调用{@link ServiceProvider#getInstance()}方法，才会加载此内部类，然后创建唯一{@link ServiceProvider}服务端
      **/
@@ -92,7 +138,51 @@ public final class ServiceProvider {
      **/
     public void publishService(String serviceName, String hostName, int port, Object service) {
         serviceMap.put(serviceName, service);
-        serviceRegistry.registerService(serviceName, new InetSocketAddress(hostName, port));
+        ResponseCache.register(serviceName, service.getClass());
+        SingleFlight.register(serviceName, service.getClass());
+        serviceRegistry().registerService(serviceName, new InetSocketAddress(hostName, port));
+    }
+
+    /**
+     * 加入一个服务实例，暂不注册，等到{@link ServiceProvider#publishPendingServices()}时与其他服务一起批量注册
+     *
+     * @param serviceName 服务名
+     * @param hostName    主机名
+     * @param port        端口号
+     * @param service     服务类
+     **/
+    public void addService(String serviceName, String hostName, int port, Object service) {
+        serviceMap.put(serviceName, service);
+        ResponseCache.register(serviceName, service.getClass());
+        SingleFlight.register(serviceName, service.getClass());
+        synchronized (pendingServices) {
+            pendingServices.put(serviceName, new InetSocketAddress(hostName, port));
+        }
+    }
+
+    /**
+     * 把所有加入后还没有注册的服务批量注册到注册中心
+     **/
+    public void publishPendingServices() {
+        Map<String, InetSocketAddress> services;
+        synchronized (pendingServices) {
+            if (pendingServices.isEmpty()) {
+                return;
+            }
+            services = new LinkedHashMap<>(pendingServices);
+            pendingServices.clear();
+        }
+        log.info("批量注册 {} 个服务 : {}", services.size(), services.keySet());
+        serviceRegistry().registerServices(services);
+    }
+
+    /**
+     * 获取所有已经加入的服务名
+     *
+     * @return Set<String> 服务名集合
+     **/
+    public Set<String> getServiceNames() {
+        return Collections.unmodifiableSet(serviceMap.keySet());
     }
 
     /**
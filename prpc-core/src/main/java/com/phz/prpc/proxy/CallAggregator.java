@@ -0,0 +1,237 @@
+package com.phz.prpc.proxy;
+
+import com.phz.prpc.annotation.PrpcAggregate;
+import com.phz.prpc.exception.ErrorMsg;
+import com.phz.prpc.exception.PrpcException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>
+ * 客户端调用聚合器，把标注了{@link PrpcAggregate}的单键方法的并发调用合并成一次批量方法调用
+ * </p>
+ * <br></br>
+ * <p>
+ * 窗口中的第一个调用方成为领头者，最多等待{@link PrpcAggregate#maxDelay()}，期间其他调用方只登记自己的键；
+ * 键数达到{@link PrpcAggregate#maxSize()}时窗口立即关闭。窗口关闭后由领头者在自己的线程中发起批量调用并拆分结果，不需要额外的线程
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 19:08
+ */
+@Slf4j
+final class CallAggregator {
+    /**
+     * 批量方法的描述符
+     **/
+    private final MethodDescriptor bulkDescriptor;
+
+    /**
+     * 批量方法的参数是否是{@link java.util.Set}
+     **/
+    private final boolean setArgument;
+
+    /**
+     * 批量方法是否返回{@link Map}，否则返回与键顺序对应的{@link List}
+     **/
+    private final boolean mapResult;
+
+    /**
+     * 收集键的最长等待时间，单位{@code ns}
+     **/
+    private final long maxDelayNanos;
+
+    /**
+     * 一次批量调用最多包含的键数
+     **/
+    private final int maxSize;
+
+    /**
+     * 调用方等待结果的最长时间，单位{@code ns}，为收集键的等待时间加上批量方法的调用超时时间
+     **/
+    private final long maxWaitNanos;
+
+    /**
+     * 保护当前窗口的锁
+     **/
+    private final Object lock = new Object();
+
+    /**
+     * 正在收集键的窗口
+     **/
+    private Window current;
+
+    /**
+     * 构造方法，校验批量方法的签名
+     *
+     * @param bulkDescriptor 批量方法的描述符
+     * @param aggregate      聚合配置注解
+     **/
+    CallAggregator(MethodDescriptor bulkDescriptor, PrpcAggregate aggregate) {
+        Class<?>[] parameterTypes = bulkDescriptor.getParameterTypes();
+        Class<?> returnType = bulkDescriptor.getReturnType();
+        boolean listArgument = parameterTypes.length == 1 && parameterTypes[0].isAssignableFrom(ArrayList.class);
+        boolean setArgument = parameterTypes.length == 1 && parameterTypes[0].isAssignableFrom(LinkedHashSet.class);
+        if (!listArgument && !setArgument || !Map.class.isAssignableFrom(returnType) && !List.class.isAssignableFrom(returnType)) {
+            log.error("批量方法{}必须只有一个集合参数，并返回Map或List", bulkDescriptor.getMethodName());
+            throw new PrpcException(ErrorMsg.ILLEGAL_BULK_METHOD);
+        }
+        this.bulkDescriptor = bulkDescriptor;
+        this.setArgument = !listArgument;
+        this.mapResult = Map.class.isAssignableFrom(returnType);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(aggregate.maxDelay());
+        this.maxSize = Math.max(1, aggregate.maxSize());
+        this.maxWaitNanos = maxDelayNanos + TimeUnit.MILLISECONDS.toNanos(bulkDescriptor.getTimeOut());
+    }
+
+    /**
+     * 登记一个键并等待它的结果，窗口中的第一个调用方负责发起批量调用
+     *
+     * @param key 单键方法的参数
+     * @return Object 键对应的结果，等待超时为{@code null}，与单次调用超时时一致
+     * @throws Exception 批量调用抛出的异常
+     **/
+    Object invoke(Object key) throws Exception {
+        Window window;
+        CompletableFuture<Object> future;
+        boolean leader = false;
+        synchronized (lock) {
+            if (current == null) {
+                current = new Window();
+                leader = true;
+            }
+            window = current;
+            future = window.results.computeIfAbsent(key, k -> new CompletableFuture<>());
+            if (window.results.size() >= maxSize) {
+                close(window);
+            }
+        }
+        if (leader) {
+            boolean collected = false;
+            try {
+                awaitClose(window);
+                collected = true;
+            } finally {
+                // 领头者异常退出时窗口同样要关闭，并让已经登记的调用方失败返回，否则它们等不到批量调用
+                if (!collected) {
+                    abandon(window);
+                }
+            }
+            execute(window);
+        }
+        try {
+            return future.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.error("聚合调用{}等待结果超时", bulkDescriptor.getMethodName());
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * 领头者等待窗口攒满或者超时，之后窗口不再接受新的键
+     *
+     * @param window 窗口
+     * @throws InterruptedException 等待被中断
+     **/
+    private void awaitClose(Window window) throws InterruptedException {
+        long deadline = System.nanoTime() + maxDelayNanos;
+        synchronized (lock) {
+            long remaining;
+            while (!window.closed && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            }
+            close(window);
+        }
+    }
+
+    /**
+     * 领头者没有等到窗口关闭就退出时调用，关闭窗口并让其中所有的调用失败
+     *
+     * @param window 窗口
+     **/
+    private void abandon(Window window) {
+        synchronized (lock) {
+            close(window);
+        }
+        PrpcException exception = new PrpcException(ErrorMsg.AGGREGATE_LEADER_INTERRUPTED);
+        window.results.values().forEach(future -> future.completeExceptionally(exception));
+    }
+
+    /**
+     * 关闭窗口，必须持有锁
+     *
+     * @param window 窗口
+     **/
+    private void close(Window window) {
+        if (current == window) {
+            current = null;
+        }
+        if (!window.closed) {
+            window.closed = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 发起批量调用并把结果拆分给每个键
+     *
+     * @param window 已经关闭的窗口
+     **/
+    private void execute(Window window) {
+        Map<Object, CompletableFuture<Object>> results = window.results;
+        Collection<Object> keys = setArgument ? new LinkedHashSet<>(results.keySet()) : new ArrayList<>(results.keySet());
+        try {
+            Object bulkResult = InvokeRpcMessage.invokeRpcMessageMethod(bulkDescriptor, new Object[]{keys});
+            if (bulkResult == null) {
+                // 与单次调用失败时一样返回null
+                results.values().forEach(future -> future.complete(null));
+            } else if (mapResult) {
+                Map<?, ?> map = (Map<?, ?>) bulkResult;
+                results.forEach((key, future) -> future.complete(map.get(key)));
+            } else {
+                List<?> list = (List<?>) bulkResult;
+                if (list.size() != results.size()) {
+                    log.error("批量方法{}返回了{}个结果，请求了{}个键", bulkDescriptor.getMethodName(), list.size(), results.size());
+                    throw new PrpcException(ErrorMsg.BULK_RESULT_MISMATCH);
+                }
+                int index = 0;
+                for (CompletableFuture<Object> future : results.values()) {
+                    future.complete(list.get(index++));
+                }
+            }
+        } catch (Throwable e) {
+            results.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * 一个收集键的窗口，只能在锁内读写
+     **/
+    private static final class Window {
+        /**
+         * 键到结果的映射，相同的键共用一个结果，保持登记顺序
+         **/
+        private final Map<Object, CompletableFuture<Object>> results = new LinkedHashMap<>();
+
+        /**
+         * 窗口是否已经关闭
+         **/
+        private boolean closed;
+    }
+}
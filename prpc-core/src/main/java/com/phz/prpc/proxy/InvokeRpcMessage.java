@@ -1,17 +1,23 @@
 package com.phz.prpc.proxy;
 
-import com.phz.prpc.config.PrpcProperties;
+import com.phz.prpc.cache.ArgumentsKey;
+import com.phz.prpc.cache.ResultCache;
+import com.phz.prpc.cache.SingleFlight;
+import com.phz.prpc.exception.PrpcRemoteException;
 import com.phz.prpc.netty.client.NettyClient;
 import com.phz.prpc.netty.handler.RpcResponseMessageHandler;
+import com.phz.prpc.netty.message.MessageRecycler;
 import com.phz.prpc.netty.message.RpcRequestMessage;
-import com.phz.prpc.spring.SpringBeanUtil;
-import io.netty.channel.DefaultEventLoop;
+import com.phz.prpc.netty.message.RpcResponseMessage;
+import com.phz.prpc.netty.protocol.EnvelopeCodec;
+import com.phz.prpc.registry.Endpoint;
 import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import io.netty.util.concurrent.Promise;
 import lombok.extern.slf4j.Slf4j;
 
-import java.lang.reflect.Method;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>
@@ -25,52 +31,141 @@ import java.util.UUID;
 public class InvokeRpcMessage {
 
     /**
-     * {@code Prpc配置类}
+     * 客户端{@code Netty Rpc}请求实例{@link NettyClient}
      **/
-    private static final PrpcProperties PRPC_PROPERTIES = SpringBeanUtil.getBean(PrpcProperties.class);
+    private static final NettyClient NETTY_CLIENT = NettyClient.getInstance();
 
     /**
-     * 客户端{@code Netty Rpc}请求实例{@link NettyClient}
+     * 请求序号前缀，每个客户端进程随机生成一次，保证不同客户端之间的序号不会重复
      **/
-    private static final NettyClient NETTY_CLIENT = NettyClient.getInstance();
+    private static final String SEQUENCE_ID_PREFIX = UUID.randomUUID().toString().substring(0, 20);
 
     /**
-     * 代理对象都需要执行这个方法，抽离出来作为公用
+     * 请求序号计数器，代替每次调用都要加锁读取{@link java.security.SecureRandom}的{@link UUID#randomUUID()}
+     **/
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /**
+     * 请求序号中计数器部分的十六进制位数，与前缀合起来刚好是协议约定的36个字节
+     **/
+    private static final int SEQUENCE_HEX_LENGTH = 16;
+
+    /**
+     * 代理对象都需要执行这个方法，抽离出来作为公用；方法开启了结果缓存时先查缓存，未命中才构建请求，
+     * 开启了调用聚合时把一个时间窗口内的单键调用合并成一次批量调用，开启了调用合并时相同参数的并发调用共用一个请求和响应
      *
-     * @param groupName 服务组名
-     * @param method    方法对象
-     * @param args      方法参数
+     * @param descriptor 代理创建时预先计算好的方法描述符
+     * @param args       方法参数
      * @return Object 代理类
      **/
-    public static Object invokeRpcMessageMethod(String groupName, Method method, Object[] args) throws InterruptedException {
-        String sequenceId = UUID.randomUUID().toString();
-        String methodName = method.getName();
-        RpcRequestMessage rpcRequestMessage = RpcRequestMessage
-                .builder()
-                .interfaceName(method.getDeclaringClass().getCanonicalName())
-                .methodName(methodName)
-                .groupName(groupName)
-                .returnType(method.getReturnType())
-                .parameterTypes(method.getParameterTypes())
-                .parameterValue(args)
-                .build();
-        rpcRequestMessage.setSequenceId(sequenceId);
-        boolean flag = NETTY_CLIENT.sendPrpcRequestMessage(rpcRequestMessage);
-        if (!flag) {
-            return null;
+    public static Object invokeRpcMessageMethod(MethodDescriptor descriptor, Object[] args) throws Exception {
+        ResultCache resultCache = descriptor.getResultCache();
+        if (resultCache != null) {
+            return resultCache.get(args, () -> invokeUncached(descriptor, args));
         }
-        //创建这次Rpc请求所需要的Promise对象用于接收结果
-        Promise<Object> promise = new DefaultPromise<>(new DefaultEventLoop().next());
-        //将当前Promise传送到响应处理类中的一个Map
+        return invokeUncached(descriptor, args);
+    }
+
+    /**
+     * 结果缓存未命中时的调用，依次经过调用聚合和调用合并；结果缓存本身已经合并了同一组参数的并发加载，进程内调用同样经过这些步骤
+     *
+     * @param descriptor 方法描述符
+     * @param args       方法参数
+     * @return Object 方法结果
+     **/
+    private static Object invokeUncached(MethodDescriptor descriptor, Object[] args) throws Exception {
+        CallAggregator callAggregator = descriptor.getCallAggregator();
+        if (callAggregator != null) {
+            return callAggregator.invoke(args[0]);
+        }
+        SingleFlight singleFlight = descriptor.getSingleFlight();
+        if (singleFlight != null) {
+            return singleFlight.execute(new ArgumentsKey(args), () -> invokeTarget(descriptor, args));
+        }
+        return invokeTarget(descriptor, args);
+    }
+
+    /**
+     * 服务由当前进程提供并且已经绑定时直接进程内调用，否则发起远程调用
+     *
+     * @param descriptor 方法描述符
+     * @param args       方法参数
+     * @return Object 方法结果
+     **/
+    private static Object invokeTarget(MethodDescriptor descriptor, Object[] args) throws Exception {
+        LocalInvoker localInvoker = descriptor.localInvoker();
+        if (localInvoker != null) {
+            return localInvoker.invoke(args);
+        }
+        return invokeRemote(descriptor, args);
+    }
+
+    /**
+     * 发起一次远程调用并等待结果
+     *
+     * @param descriptor 方法描述符
+     * @param args       方法参数
+     * @return Object 方法结果，调用失败或者超时为{@code null}
+     **/
+    private static Object invokeRemote(MethodDescriptor descriptor, Object[] args) throws InterruptedException {
+        String sequenceId = nextSequenceId();
+        String methodName = descriptor.getMethodName();
+        RpcRequestMessage rpcRequestMessage = descriptor.newRequest(sequenceId, args);
+        //创建这次Rpc请求所需要的Promise对象用于接收结果，必须在发送之前放入响应处理类中的Map，否则响应可能先于Promise到达
+        Promise<Object> promise = new DefaultPromise<>(GlobalEventExecutor.INSTANCE);
         RpcResponseMessageHandler.putPromise(sequenceId, promise);
-        promise.await(PRPC_PROPERTIES.getTimeOut());
+        long start = System.nanoTime();
+        Endpoint endpoint;
+        try {
+            endpoint = NETTY_CLIENT.sendPrpcRequestMessage(descriptor.getServiceName(), descriptor.hashKey(args), rpcRequestMessage);
+        } catch (Exception e) {
+            // 连接或者写出失败时不会再有响应，Promise必须移除，否则一直留在响应处理类的Map中
+            RpcResponseMessageHandler.removePromise(sequenceId);
+            throw e;
+        }
+        if (endpoint == null) {
+            RpcResponseMessageHandler.removePromise(sequenceId);
+            return null;
+        }
+        try {
+            if (!promise.await(descriptor.getTimeOut())) {
+                RpcResponseMessageHandler.removePromise(sequenceId);
+            }
+        } finally {
+            // 收到响应或者超时之后，这个请求不再占用目标实例，耗时计入实例的耗时平均值
+            endpoint.getStats().end(System.nanoTime() - start);
+        }
         if (promise.isSuccess()) {
-            Object result = promise.getNow();
-            log.info("方法{}调用成功,结果为:{}", methodName, result);
+            RpcResponseMessage rpcResponseMessage = (RpcResponseMessage) promise.getNow();
+            Object result;
+            try {
+                result = EnvelopeCodec.decodeReturnValue(rpcResponseMessage, descriptor.getReturnType());
+            } finally {
+                MessageRecycler.recycle(rpcResponseMessage);
+            }
+            log.debug("方法{}调用成功,结果为:{}", methodName, result);
             return result;
-        } else {
-            log.error("方法{}调用失败,原因:{}", methodName, promise.cause());
-            return null;
         }
+        Throwable cause = promise.cause();
+        log.error("方法{}调用失败,原因:{}", methodName, cause);
+        // 服务端业务异常重建后直接抛给调用方
+        if (cause instanceof PrpcRemoteException) {
+            throw (PrpcRemoteException) cause;
+        }
+        return null;
+    }
+
+    /**
+     * 生成下一个请求序号，格式为固定的随机前缀加上16位十六进制计数
+     *
+     * @return String 36个字符的请求序号
+     **/
+    private static String nextSequenceId() {
+        String counter = Long.toHexString(SEQUENCE.incrementAndGet());
+        StringBuilder sequenceId = new StringBuilder(SEQUENCE_ID_PREFIX.length() + SEQUENCE_HEX_LENGTH).append(SEQUENCE_ID_PREFIX);
+        for (int i = counter.length(); i < SEQUENCE_HEX_LENGTH; i++) {
+            sequenceId.append('0');
+        }
+        return sequenceId.append(counter).toString();
     }
-}
\ No newline at end of file
+}
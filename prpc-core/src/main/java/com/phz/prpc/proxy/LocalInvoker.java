@@ -0,0 +1,239 @@
+package com.phz.prpc.proxy;
+
+import com.phz.prpc.cache.ArgumentsKey;
+import com.phz.prpc.cache.EncodedResponse;
+import com.phz.prpc.cache.ResponseCache;
+import com.phz.prpc.cache.SingleFlight;
+import com.phz.prpc.exception.PrpcErrorCode;
+import com.phz.prpc.exception.PrpcRemoteException;
+import com.phz.prpc.netty.compress.CompressAlgorithm;
+import com.phz.prpc.netty.message.MessageRecycler;
+import com.phz.prpc.netty.message.RpcResponseMessage;
+import com.phz.prpc.netty.protocol.EnvelopeCodec;
+import com.phz.prpc.netty.protocol.MessageCodecSharable;
+import com.phz.prpc.netty.serializer.KryoSerializer;
+import com.phz.prpc.netty.serializer.SerializerAlgorithm;
+import com.phz.prpc.netty.server.ServerLoad;
+import com.phz.prpc.registry.Endpoint;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * <p>
+ * 进程内调用：服务由同一个进程中的{@link com.phz.prpc.netty.server.ServiceProvider}提供时，直接调用服务对象的方法，不经过编解码和回环连接
+ * </p>
+ * <br></br>
+ * <p>
+ * 客户端的结果缓存、调用聚合和调用合并在进入这里之前已经生效；这里再套上服务端的响应缓存、调用合并和负载统计，以及客户端对本机实例的统计，
+ * 业务异常也与远程调用一样重建成{@link PrpcRemoteException}抛出。响应缓存与远程调用共用同一份编码后的响应，命中时解码出新的返回值对象。
+ * 参数和返回值默认按引用传递，开启复制时用{@link com.esotericsoftware.kryo.Kryo#copy(Object)}在内存中深拷贝，调用双方互不影响，仍然不需要序列化成字节
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月20日 00:30
+ */
+@Slf4j
+final class LocalInvoker {
+    /**
+     * 服务对象
+     **/
+    private final Object service;
+
+    /**
+     * 服务对象上对应的方法
+     **/
+    private final Method method;
+
+    /**
+     * 服务端方法开启的响应缓存，没有开启时为{@code null}
+     **/
+    private final ResponseCache responseCache;
+
+    /**
+     * 服务端方法开启的调用合并器，没有开启时为{@code null}
+     **/
+    private final SingleFlight singleFlight;
+
+    /**
+     * 编码响应缓存时使用的序列化算法，没有开启响应缓存时为{@code null}
+     **/
+    private final SerializerAlgorithm serializerAlgorithm;
+
+    /**
+     * 编码响应缓存时使用的压缩算法，没有开启响应缓存时为{@code null}
+     **/
+    private final CompressAlgorithm compressAlgorithm;
+
+    /**
+     * 本进程对应的服务实例，进程内调用也计入它的统计信息，与负载均衡看到的是同一个实例
+     **/
+    private final Endpoint endpoint;
+
+    /**
+     * 是否复制参数和返回值
+     **/
+    private final boolean copy;
+
+    /**
+     * 构造方法
+     *
+     * @param service  服务对象
+     * @param method   服务对象上对应的方法
+     * @param endpoint 本进程对应的服务实例
+     * @param copy     是否复制参数和返回值
+     **/
+    LocalInvoker(Object service, Method method, Endpoint endpoint, boolean copy) {
+        this.service = service;
+        this.method = method;
+        this.responseCache = ResponseCache.forMethod(method);
+        this.singleFlight = SingleFlight.forMethod(method);
+        this.serializerAlgorithm = responseCache != null ? MessageCodecSharable.resolveSerializerAlgorithm() : null;
+        this.compressAlgorithm = responseCache != null ? MessageCodecSharable.resolveCompressAlgorithm() : null;
+        this.endpoint = endpoint;
+        this.copy = copy;
+    }
+
+    /**
+     * 调用服务方法
+     *
+     * @param args 方法参数
+     * @return Object 方法结果
+     * @throws Exception 服务端调用合并器抛出的异常
+     **/
+    Object invoke(Object[] args) throws Exception {
+        Object[] arguments = copy ? copyOf(args) : args;
+        long start = System.nanoTime();
+        endpoint.getStats().begin();
+        if (ServerLoad.ENABLED) {
+            ServerLoad.begin();
+        }
+        try {
+            Object result = invokeService(arguments);
+            log.debug("方法{}进程内调用成功,结果为:{}", method.getName(), result);
+            return result;
+        } catch (InvocationTargetException e) {
+            throw remoteException(e.getTargetException());
+        } finally {
+            if (ServerLoad.ENABLED) {
+                ServerLoad.end();
+            }
+            endpoint.getStats().end(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 依次经过服务端的响应缓存和调用合并调用服务方法
+     *
+     * @param arguments 方法参数
+     * @return Object 方法结果，开启复制时已经复制
+     * @throws Exception 服务方法抛出的异常包装成的{@link InvocationTargetException}，或者调用合并器抛出的异常
+     **/
+    private Object invokeService(Object[] arguments) throws Exception {
+        ArgumentsKey responseCacheKey = null;
+        long generation = 0;
+        if (responseCache != null) {
+            responseCacheKey = new ArgumentsKey(arguments);
+            EncodedResponse encodedResponse = responseCache.get(responseCacheKey);
+            if (encodedResponse != null) {
+                // 缓存的是编码后的字节，解码出的返回值是新对象，不需要再复制
+                return decodeCached(encodedResponse);
+            }
+            // 与远程调用一样，调用方法之前记下失效代数
+            generation = responseCache.generation();
+        }
+        Object result;
+        boolean invoked;
+        if (singleFlight != null) {
+            boolean[] leader = new boolean[1];
+            result = singleFlight.execute(responseCacheKey != null ? responseCacheKey : new ArgumentsKey(arguments), () -> {
+                leader[0] = true;
+                return method.invoke(service, arguments);
+            });
+            invoked = leader[0];
+        } else {
+            result = method.invoke(service, arguments);
+            invoked = true;
+        }
+        // 合并到其他调用上的请求不写缓存，由真正执行的那次调用写入
+        if (responseCache != null && invoked) {
+            putCache(responseCacheKey, generation, result);
+        }
+        return copy ? KryoSerializer.getInstance().copy(result) : result;
+    }
+
+    /**
+     * 解码响应缓存中的响应，并释放{@link EncodedResponse#getBody()}
+     *
+     * @param encodedResponse 缓存的响应
+     * @return Object 方法结果
+     **/
+    private Object decodeCached(EncodedResponse encodedResponse) {
+        ByteBuf body = encodedResponse.getBody();
+        RpcResponseMessage response = null;
+        try {
+            response = EnvelopeCodec.decodeResponse(body, encodedResponse.getSerializerAlgorithm(), encodedResponse.getCompressAlgorithm());
+            return EnvelopeCodec.decodeReturnValue(response, method.getReturnType());
+        } finally {
+            body.release();
+            if (response != null) {
+                MessageRecycler.recycle(response);
+            }
+        }
+    }
+
+    /**
+     * 按远程调用的响应格式编码结果并写入响应缓存
+     *
+     * @param key        参数键
+     * @param generation 调用开始前记下的失效代数
+     * @param result     方法结果
+     **/
+    private void putCache(ArgumentsKey key, long generation, Object result) {
+        RpcResponseMessage response = MessageRecycler.newResponseMessage();
+        ByteBuf out = ByteBufAllocator.DEFAULT.buffer();
+        try {
+            response.setReturnValue(result);
+            EnvelopeCodec.encodeResponse(out, response, serializerAlgorithm, compressAlgorithm);
+            responseCache.put(key, generation, out, out.readerIndex(), out.readableBytes(), serializerAlgorithm, compressAlgorithm);
+        } finally {
+            out.release();
+            MessageRecycler.recycle(response);
+        }
+    }
+
+    /**
+     * 深拷贝参数数组
+     *
+     * @param args 方法参数
+     * @return Object[] 拷贝后的参数
+     **/
+    private static Object[] copyOf(Object[] args) {
+        if (args == null || args.length == 0) {
+            return args;
+        }
+        Object[] copied = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            copied[i] = KryoSerializer.getInstance().copy(args[i]);
+        }
+        return copied;
+    }
+
+    /**
+     * 把业务方法抛出的异常重建成与远程调用相同的{@link PrpcRemoteException}，原始异常作为{@code cause}保留
+     *
+     * @param target 业务方法抛出的异常
+     * @return PrpcRemoteException 重建后的异常
+     **/
+    private PrpcRemoteException remoteException(Throwable target) {
+        log.error("方法{}进程内调用失败:{}", method.getName(), target.toString());
+        int errorCode = target instanceof PrpcErrorCode ? ((PrpcErrorCode) target).getErrorCode() : 0;
+        PrpcRemoteException exception = new PrpcRemoteException(target.getClass().getName(), errorCode, target.getMessage());
+        exception.setStackTrace(target.getStackTrace());
+        exception.initCause(target);
+        return exception;
+    }
+}
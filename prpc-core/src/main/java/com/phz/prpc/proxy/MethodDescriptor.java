@@ -0,0 +1,287 @@
+package com.phz.prpc.proxy;
+
+import com.phz.prpc.annotation.PrpcAggregate;
+import com.phz.prpc.annotation.PrpcCacheable;
+import com.phz.prpc.annotation.PrpcHashKey;
+import com.phz.prpc.annotation.PrpcSingleFlight;
+import com.phz.prpc.cache.ArgumentsKey;
+import com.phz.prpc.cache.ResultCache;
+import com.phz.prpc.cache.SingleFlight;
+import com.phz.prpc.exception.ErrorMsg;
+import com.phz.prpc.exception.PrpcException;
+import com.phz.prpc.netty.message.MessageRecycler;
+import com.phz.prpc.netty.message.RpcRequestMessage;
+import com.phz.prpc.netty.protocol.EnvelopeCodec;
+import com.phz.prpc.netty.protocol.PrimitiveCodec;
+import com.phz.prpc.registry.Endpoint;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * <p>
+ * 客户端代理方法描述符，代理对象创建时为接口中的每个方法预先计算一次，包括服务名、参数类型、返回类型、预编码的请求信封头部、超时时间、结果缓存、调用合并器以及调用聚合器，
+ * 每次调用只需要填入请求序号和参数即可
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 15:20
+ */
+@Getter
+@Slf4j
+public final class MethodDescriptor {
+    /**
+     * 被代理的方法
+     **/
+    private final Method method;
+
+    /**
+     * 服务名，格式为{@code 接口全限定名:组名}
+     **/
+    private final String serviceName;
+
+    /**
+     * 接口全限定名
+     **/
+    private final String interfaceName;
+
+    /**
+     * 方法名
+     **/
+    private final String methodName;
+
+    /**
+     * 服务组名
+     **/
+    private final String groupName;
+
+    /**
+     * 方法返回类型
+     **/
+    private final Class<?> returnType;
+
+    /**
+     * 方法参数类型，只读，不要修改
+     **/
+    private final Class<?>[] parameterTypes;
+
+    /**
+     * 预编码的请求信封头部，其中已经包含了参数的编码方式
+     **/
+    private final byte[] envelopeHeader;
+
+    /**
+     * 参数是否全部受{@link PrimitiveCodec}支持，生成描述符时判断一次，随请求带给编码器
+     **/
+    private final boolean primitivePayload;
+
+    /**
+     * 调用超时时间，单位{@code ms}
+     **/
+    private final long timeOut;
+
+    /**
+     * 标注了{@link PrpcHashKey}的参数下标，没有标注时为-1
+     **/
+    private final int hashKeyIndex;
+
+    /**
+     * 方法标注了{@link PrpcCacheable}时的结果缓存，否则为{@code null}
+     **/
+    private final ResultCache resultCache;
+
+    /**
+     * 方法标注了{@link PrpcSingleFlight}时的调用合并器，否则为{@code null}
+     **/
+    private final SingleFlight singleFlight;
+
+    /**
+     * 方法标注了{@link PrpcAggregate}时的调用聚合器，否则为{@code null}；依赖同一接口中批量方法的描述符，所有描述符创建完成后才设置
+     **/
+    private CallAggregator callAggregator;
+
+    /**
+     * 服务由当前进程提供时的进程内调用器，容器刷新完成后绑定，没有绑定时为{@code null}
+     **/
+    @Getter(AccessLevel.NONE)
+    private volatile LocalInvoker localInvoker;
+
+    /**
+     * 构造方法，计算方法的全部元数据
+     *
+     * @param method    被代理的方法
+     * @param groupName 服务组名
+     * @param timeOut   调用超时时间
+     **/
+    private MethodDescriptor(Method method, String groupName, long timeOut) {
+        this.method = method;
+        this.interfaceName = method.getDeclaringClass().getCanonicalName();
+        this.methodName = method.getName();
+        this.groupName = groupName;
+        this.serviceName = interfaceName + ":" + groupName;
+        this.returnType = method.getReturnType();
+        this.parameterTypes = method.getParameterTypes();
+        this.primitivePayload = PrimitiveCodec.isSupported(parameterTypes);
+        this.envelopeHeader = EnvelopeCodec.encodeRequestHeader(interfaceName, methodName, groupName, parameterTypes, primitivePayload);
+        this.timeOut = timeOut;
+        this.hashKeyIndex = hashKeyIndex(method);
+        PrpcCacheable cacheable = method.getAnnotation(PrpcCacheable.class);
+        if (cacheable != null) {
+            String cacheName = cacheName();
+            ArgumentsKey.checkParameterTypes(cacheName, parameterTypes);
+            this.resultCache = ResultCache.forMethod(cacheName, cacheable.ttl(), cacheable.maximumSize());
+        } else {
+            this.resultCache = null;
+        }
+        this.singleFlight = method.isAnnotationPresent(PrpcSingleFlight.class) ? new SingleFlight() : null;
+    }
+
+    /**
+     * 为接口中所有可以远程调用的方法生成描述符
+     *
+     * @param clazz     被代理的接口
+     * @param groupName 服务组名
+     * @param timeOut   调用超时时间
+     * @return Map<Method, MethodDescriptor> 方法到描述符的只读映射
+     **/
+    public static Map<Method, MethodDescriptor> forInterface(Class<?> clazz, String groupName, long timeOut) {
+        Map<Method, MethodDescriptor> descriptors = new HashMap<>();
+        for (Method method : clazz.getMethods()) {
+            if (method.getDeclaringClass() == Object.class || Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            descriptors.put(method, new MethodDescriptor(method, groupName, timeOut));
+        }
+        for (MethodDescriptor descriptor : descriptors.values()) {
+            PrpcAggregate aggregate = descriptor.method.getAnnotation(PrpcAggregate.class);
+            if (aggregate != null) {
+                descriptor.callAggregator = new CallAggregator(bulkDescriptor(descriptor, aggregate, descriptors), aggregate);
+            }
+        }
+        return Collections.unmodifiableMap(descriptors);
+    }
+
+    /**
+     * 查找单键方法所关联的批量方法的描述符，单键方法和批量方法都必须只有一个参数，批量方法名不能有重载
+     *
+     * @param descriptor  单键方法的描述符
+     * @param aggregate   聚合配置注解
+     * @param descriptors 接口中所有方法的描述符
+     * @return MethodDescriptor 批量方法的描述符
+     **/
+    private static MethodDescriptor bulkDescriptor(MethodDescriptor descriptor, PrpcAggregate aggregate, Map<Method, MethodDescriptor> descriptors) {
+        MethodDescriptor bulkDescriptor = null;
+        int candidates = 0;
+        for (MethodDescriptor candidate : descriptors.values()) {
+            if (candidate.methodName.equals(aggregate.bulkMethod())) {
+                bulkDescriptor = candidate;
+                candidates++;
+            }
+        }
+        if (descriptor.parameterTypes.length != 1 || candidates != 1 || bulkDescriptor == descriptor) {
+            log.error("方法{}的批量方法{}声明错误", descriptor.methodName, aggregate.bulkMethod());
+            throw new PrpcException(ErrorMsg.ILLEGAL_BULK_METHOD);
+        }
+        return bulkDescriptor;
+    }
+
+    /**
+     * 查找第一个标注了{@link PrpcHashKey}的参数
+     *
+     * @param method 被代理的方法
+     * @return int 参数下标，没有标注时为-1
+     **/
+    private static int hashKeyIndex(Method method) {
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+        for (int i = 0; i < parameterAnnotations.length; i++) {
+            for (Annotation annotation : parameterAnnotations[i]) {
+                if (annotation instanceof PrpcHashKey) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 计算一次调用的一致性哈希键
+     *
+     * @param args 方法参数
+     * @return String 哈希键，方法没有标注{@link PrpcHashKey}的参数或者参数为{@code null}时为{@code null}
+     **/
+    public String hashKey(Object[] args) {
+        if (hashKeyIndex < 0 || args[hashKeyIndex] == null) {
+            return null;
+        }
+        return String.valueOf(args[hashKeyIndex]);
+    }
+
+    /**
+     * 结果缓存的名称，格式为{@code 服务名#方法名(参数类型,...)}，重载方法各自使用独立的缓存
+     *
+     * @return String 缓存名称
+     **/
+    private String cacheName() {
+        StringJoiner joiner = new StringJoiner(",", serviceName + "#" + methodName + "(", ")");
+        for (Class<?> parameterType : parameterTypes) {
+            joiner.add(parameterType.getTypeName());
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * 绑定当前进程中提供这个服务的对象，之后的调用不再经过网络；服务对象上找不到对应方法时保持远程调用
+     *
+     * @param service  服务对象
+     * @param endpoint 本进程对应的服务实例，进程内调用计入它的统计信息
+     * @param copy     是否复制参数和返回值
+     * @return boolean 绑定成功返回{@code true}
+     **/
+    public boolean bindLocal(Object service, Endpoint endpoint, boolean copy) {
+        try {
+            localInvoker = new LocalInvoker(service, service.getClass().getMethod(methodName, parameterTypes), endpoint, copy);
+            return true;
+        } catch (NoSuchMethodException e) {
+            log.error("本地服务{}上没有方法{}，保持远程调用", serviceName, methodName);
+            return false;
+        }
+    }
+
+    /**
+     * 获取进程内调用器
+     *
+     * @return LocalInvoker 进程内调用器，没有绑定时为{@code null}
+     **/
+    LocalInvoker localInvoker() {
+        return localInvoker;
+    }
+
+    /**
+     * 创建一次调用的请求消息，只填入请求序号和参数，其余字段都来自描述符
+     *
+     * @param sequenceId 请求序号
+     * @param args       方法参数
+     * @return RpcRequestMessage 请求消息
+     **/
+    public RpcRequestMessage newRequest(String sequenceId, Object[] args) {
+        RpcRequestMessage rpcRequestMessage = MessageRecycler.newRequestMessage();
+        rpcRequestMessage.setSequenceId(sequenceId);
+        rpcRequestMessage.setInterfaceName(interfaceName);
+        rpcRequestMessage.setMethodName(methodName);
+        rpcRequestMessage.setGroupName(groupName);
+        rpcRequestMessage.setReturnType(returnType);
+        rpcRequestMessage.setParameterTypes(parameterTypes);
+        rpcRequestMessage.setParameterValue(args);
+        rpcRequestMessage.setEnvelopeHeader(envelopeHeader);
+        rpcRequestMessage.setPrimitivePayload(primitivePayload);
+        return rpcRequestMessage;
+    }
+}
@@ -1,11 +1,16 @@
 package com.phz.prpc.proxy;
 
+import com.phz.prpc.config.PrpcProperties;
+import com.phz.prpc.spring.SpringBeanUtil;
 import lombok.Builder;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.MethodInterceptor;
 
+import java.lang.reflect.Method;
+import java.util.Map;
+
 /**
  * <p>
  * {@code Cglib}实现动态代理
@@ -28,6 +33,15 @@ public class PrpcCglibProxy {
      **/
     private String groupName;
 
+    /**
+     * 代理创建时为每个方法预先计算好的描述符
+     **/
+    private Map<Method, MethodDescriptor> methodDescriptors;
+
+    /**
+     * {@code Prpc配置类}
+     **/
+    private static final PrpcProperties PRPC_PROPERTIES = SpringBeanUtil.getBean(PrpcProperties.class);
 
     /**
      * 根据被代理对象类型创建其代理类
@@ -37,9 +51,19 @@ public class PrpcCglibProxy {
      * @return T 返回代理对象
      **/
     public <T> T getProxy(Class<T> clazz) {
+        // 代理创建时为每个方法预先计算好元数据，调用时不再重复反射
+        methodDescriptors = MethodDescriptor.forInterface(clazz, groupName, PRPC_PROPERTIES.getTimeOut());
+        Map<Method, MethodDescriptor> methodDescriptors = this.methodDescriptors;
         Enhancer enhancer = new Enhancer();
         enhancer.setSuperclass(clazz);
-        enhancer.setCallback((MethodInterceptor) (o, method, args, methodProxy) -> InvokeRpcMessage.invokeRpcMessageMethod(groupName, method, args));
+        enhancer.setCallback((MethodInterceptor) (o, method, args, methodProxy) -> {
+            MethodDescriptor descriptor = methodDescriptors.get(method);
+            if (descriptor == null) {
+                // toString、hashCode等Object方法不需要远程调用
+                return methodProxy.invokeSuper(o, args);
+            }
+            return InvokeRpcMessage.invokeRpcMessageMethod(descriptor, args);
+        });
         return clazz.cast(enhancer.create());
     }
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import lombok.extern.slf4j.Slf4j;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.Map;
 
 /**
  * 调用远程服务的代理类
@@ -28,6 +29,11 @@ public class PrpcJdkProxy implements InvocationHandler {
      **/
     private String groupName;
 
+    /**
+     * 代理创建时为每个方法预先计算好的描述符
+     **/
+    private Map<Method, MethodDescriptor> methodDescriptors;
+
     /**
      * 客户端{@code Netty Rpc}请求实例{@link NettyClient}
      **/
@@ -49,7 +55,33 @@ public class PrpcJdkProxy implements InvocationHandler {
     @Override
     @SneakyThrows
     public Object invoke(Object proxy, Method method, Object[] args) {
-        return InvokeRpcMessage.invokeRpcMessageMethod(groupName, method, args);
+        MethodDescriptor descriptor = methodDescriptors.get(method);
+        if (descriptor == null) {
+            // toString、hashCode、equals这些Object方法不需要远程调用
+            return invokeObjectMethod(proxy, method, args);
+        }
+        return InvokeRpcMessage.invokeRpcMessageMethod(descriptor, args);
+    }
+
+    /**
+     * 在本地处理代理对象上的{@link Object}方法，语义与普通对象一致：只与自身相等，哈希值取身份哈希
+     *
+     * @param proxy  代理对象
+     * @param method {@link Object}中的方法，{@code JDK}代理只会转发{@code equals}、{@code hashCode}、{@code toString}
+     * @param args   方法中的参数值
+     * @return Object 方法的返回值
+     **/
+    private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "PrpcJdkProxy(" + proxy.getClass().getInterfaces()[0].getName() + ":" + groupName + ")@" + Integer.toHexString(System.identityHashCode(proxy));
+            default:
+                throw new UnsupportedOperationException(method.toString());
+        }
     }
 
     /**
@@ -60,6 +92,7 @@ public class PrpcJdkProxy implements InvocationHandler {
      * @return T 返回代理对象
      **/
     public <T> T getProxy(Class<T> clazz) {
+        methodDescriptors = MethodDescriptor.forInterface(clazz, groupName, PRPC_PROPERTIES.getTimeOut());
         return clazz.cast(Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz}, this));
     }
 }
\ No newline at end of file
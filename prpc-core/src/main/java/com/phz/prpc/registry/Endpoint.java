@@ -0,0 +1,225 @@
+package com.phz.prpc.registry;
+
+import com.phz.prpc.netty.loadBalance.EndpointStats;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 服务实例的地址，注册中心更新实例时创建，相同的主机和端口同一时刻只有一个对象
+ * </p>
+ * <br></br>
+ * <p>
+ * 全局表只弱引用地址对象，快照、连接池和负载均衡器都不再引用它时随垃圾回收一起移除，实例下线后统计不会一直残留，同一个地址以后重新上线时从新的统计开始
+ * </p>
+ * <br></br>
+ * <p>
+ * 创建时在全局表之外解析一次地址，{@code IP}字面量不会触发{@code DNS}查询，主机名解析失败时保留未解析的地址，连接时再解析；
+ * 连接失败后标记地址过期，下一次连接之前重新解析，主机名对应的地址变化后可以连上新的地址。哈希值预先计算，连接池、负载均衡器以及注册中心缓存都以它为键，调用路径上不再拼接字符串或者解析地址。实例的实时统计{@link EndpointStats}和位置{@link Locality}也挂在它上面
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 22:10
+ */
+@Getter
+public final class Endpoint {
+    /**
+     * 已经创建的地址，以{@code host:port}为键，值是弱引用
+     **/
+    private static final Map<String, EndpointReference> ENDPOINTS = new ConcurrentHashMap<>();
+
+    /**
+     * 已经被回收的地址对象的引用队列，创建地址时顺带清理全局表
+     **/
+    private static final ReferenceQueue<Endpoint> COLLECTED = new ReferenceQueue<>();
+
+    /**
+     * 主机，{@code IP}或者主机名
+     **/
+    private final String host;
+
+    /**
+     * 端口
+     **/
+    private final int port;
+
+    /**
+     * 解析好的地址，解析失败时是未解析的地址
+     **/
+    private volatile InetSocketAddress address;
+
+    /**
+     * 地址是否需要在下一次连接前重新解析
+     **/
+    @Getter(AccessLevel.NONE)
+    private volatile boolean addressStale;
+
+    /**
+     * 实例的实时统计
+     **/
+    private final EndpointStats stats = new EndpointStats();
+
+    /**
+     * 实例所在的位置，注册中心更新实例时与权重一起设置，没有发布位置的实例为{@link Locality#UNKNOWN}
+     **/
+    @Setter
+    private volatile Locality locality = Locality.UNKNOWN;
+
+    /**
+     * 实例发布的{@code Unix}域套接字路径，注册中心更新实例时设置，没有发布时为{@code null}
+     **/
+    @Setter
+    private volatile String domainSocketPath;
+
+    /**
+     * {@code host:port}形式的文本，也是一致性哈希使用的节点名
+     **/
+    private final String text;
+
+    /**
+     * 预先计算的哈希值
+     **/
+    private final int hash;
+
+    /**
+     * 私有构造方法，统一通过{@link Endpoint#of(String, int)}获取
+     *
+     * @param host 主机
+     * @param port 端口
+     * @param text {@code host:port}形式的文本
+     **/
+    private Endpoint(String host, int port, String text) {
+        this.host = host;
+        this.port = port;
+        this.text = text;
+        this.hash = text.hashCode();
+        this.address = resolve(host, port);
+    }
+
+    /**
+     * 解析地址
+     *
+     * @param host 主机
+     * @param port 端口
+     * @return InetSocketAddress 解析好的地址，解析失败时是未解析的地址
+     **/
+    private static InetSocketAddress resolve(String host, int port) {
+        InetSocketAddress resolved = new InetSocketAddress(host, port);
+        return resolved.isUnresolved() ? InetSocketAddress.createUnresolved(host, port) : resolved;
+    }
+
+    /**
+     * 获取主机和端口对应的地址，不存在则创建并解析；解析在全局表之外进行，{@code DNS}查询不会占用表中的桶
+     *
+     * @param host 主机
+     * @param port 端口
+     * @return Endpoint 当前唯一的地址对象
+     **/
+    public static Endpoint of(String host, int port) {
+        expungeCollected();
+        String text = host + ":" + port;
+        EndpointReference reference = ENDPOINTS.get(text);
+        Endpoint endpoint = reference == null ? null : reference.get();
+        if (endpoint != null) {
+            return endpoint;
+        }
+        Endpoint created = new Endpoint(host, port, text);
+        Endpoint[] result = new Endpoint[1];
+        ENDPOINTS.compute(text, (key, current) -> {
+            Endpoint existing = current == null ? null : current.get();
+            if (existing != null) {
+                result[0] = existing;
+                return current;
+            }
+            result[0] = created;
+            return new EndpointReference(created);
+        });
+        return result[0];
+    }
+
+    /**
+     * 从全局表中移除已经被回收的地址对象
+     **/
+    private static void expungeCollected() {
+        EndpointReference reference;
+        while ((reference = (EndpointReference) COLLECTED.poll()) != null) {
+            ENDPOINTS.remove(reference.key, reference);
+        }
+    }
+
+    /**
+     * 连接失败后调用，下一次连接之前重新解析地址
+     **/
+    public void markAddressStale() {
+        addressStale = true;
+    }
+
+    /**
+     * 连接之前调用，地址被标记为过期时重新解析；{@code IP}字面量的解析不会触发{@code DNS}查询
+     **/
+    public void refreshAddressIfStale() {
+        if (addressStale) {
+            addressStale = false;
+            address = resolve(host, port);
+        }
+    }
+
+    /**
+     * 获取{@link InetSocketAddress}对应的地址，使用{@link InetSocketAddress#getHostString()}，不会反向解析主机名
+     *
+     * @param address 地址
+     * @return Endpoint 全局唯一的地址对象
+     **/
+    public static Endpoint of(InetSocketAddress address) {
+        return of(address.getHostString(), address.getPort());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Endpoint)) {
+            return false;
+        }
+        Endpoint other = (Endpoint) o;
+        return port == other.port && host.equals(other.host);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * 全局表中的弱引用，记录自己的键，被回收后据此从表中移除
+     **/
+    private static final class EndpointReference extends WeakReference<Endpoint> {
+        /**
+         * {@code host:port}形式的键
+         **/
+        private final String key;
+
+        /**
+         * 构造方法
+         *
+         * @param endpoint 地址对象
+         **/
+        private EndpointReference(Endpoint endpoint) {
+            super(endpoint, COLLECTED);
+            this.key = endpoint.text;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.phz.prpc.registry;
+
+import com.phz.prpc.netty.loadBalance.PrpcLoadBalancer;
+import com.phz.prpc.netty.server.NettyServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.CollectionUtils;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 进程内的注册中心，注册和发现都只在当前进程中进行，不依赖任何外部服务，用于压测和测试
+ * </p>
+ * <br></br>
+ * <p>
+ * 实例变化时与其他注册中心一样发布新的快照，负载均衡器的行为与使用真实注册中心时相同。
+ * 除了单例服务端的注册流程，还可以通过{@link InMemoryRegistry#register(String, Endpoint)}直接注册由{@link NettyServer#newServer(int)}创建的服务端
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 23:30
+ */
+@Slf4j
+public final class InMemoryRegistry implements ServiceRegistry {
+    /**
+     * 服务名到实例列表的映射，只在{@code this}上加锁修改
+     **/
+    private final Map<String, List<Endpoint>> services = new ConcurrentHashMap<>();
+
+    /**
+     * 服务实例快照
+     **/
+    private final ServiceInstanceCache instanceCache = new ServiceInstanceCache();
+
+    /**
+     * 单例服务端通过{@link InMemoryRegistry#registerService}注册的实例，服务端关闭时注销
+     **/
+    private final Map<String, Set<Endpoint>> ownRegistrations = new ConcurrentHashMap<>();
+
+    /**
+     * 负载均衡器
+     **/
+    private final PrpcLoadBalancer prpcLoadBalancer = PrpcLoadBalancer.getInstance();
+
+    /**
+     * 私有构造方法，禁用手动实例化
+     **/
+    private InMemoryRegistry() {
+    }
+
+    /**
+     * 进程内注册中心单例维护静态内部类：类的加载都是懒惰的，第一次调用{@link InMemoryRegistry#getInstance()}方法，才会加载此内部类，然后创建唯一注册中心实例
+     **/
+    private static class InMemoryRegistryHolder {
+        /**
+         * 单例
+         **/
+        private static final InMemoryRegistry INSTANCE = new InMemoryRegistry();
+    }
+
+    /**
+     * 获取进程内注册中心
+     *
+     * @return InMemoryRegistry 进程内注册中心单例
+     **/
+    public static InMemoryRegistry getInstance() {
+        return InMemoryRegistryHolder.INSTANCE;
+    }
+
+    /**
+     * 注册一个服务实例
+     *
+     * @param serviceName 服务名称
+     * @param endpoint    服务实例
+     **/
+    public synchronized void register(String serviceName, Endpoint endpoint) {
+        List<Endpoint> instances = new ArrayList<>(services.getOrDefault(serviceName, Collections.emptyList()));
+        if (!instances.contains(endpoint)) {
+            instances.add(endpoint);
+            services.put(serviceName, instances);
+            instanceCache.publish(serviceName, instances);
+        }
+    }
+
+    /**
+     * 注销一个服务实例
+     *
+     * @param serviceName 服务名称
+     * @param endpoint    服务实例
+     **/
+    public synchronized void deRegister(String serviceName, Endpoint endpoint) {
+        List<Endpoint> instances = new ArrayList<>(services.getOrDefault(serviceName, Collections.emptyList()));
+        if (instances.remove(endpoint)) {
+            services.put(serviceName, instances);
+            instanceCache.publish(serviceName, instances);
+        }
+    }
+
+    /**
+     * {@link ServiceRegistry#registerService}，启动单例服务端并注册实例
+     **/
+    @Override
+    public void registerService(String serviceName, InetSocketAddress address) {
+        NettyServer.getInstance().start();
+        Endpoint endpoint = Endpoint.of(address);
+        endpoint.setLocality(Locality.local());
+        endpoint.setDomainSocketPath(NettyServer.getInstance().getDomainSocketPath());
+        register(serviceName, endpoint);
+        ownRegistrations.computeIfAbsent(serviceName, key -> ConcurrentHashMap.newKeySet()).add(endpoint);
+        log.info("实例 {} {} 注册成功", serviceName, endpoint);
+    }
+
+    /**
+     * {@link ServiceRegistry#deRegisterAllService}
+     **/
+    @Override
+    public void deRegisterAllService() {
+        ownRegistrations.forEach((serviceName, endpoints) -> endpoints.forEach(endpoint -> deRegister(serviceName, endpoint)));
+        ownRegistrations.clear();
+    }
+
+    /**
+     * {@link ServiceRegistry#deRegisterService}
+     **/
+    @Override
+    public void deRegisterService(String serviceName, String hostName, int port) {
+        Endpoint endpoint = Endpoint.of(hostName, port);
+        deRegister(serviceName, endpoint);
+        Set<Endpoint> endpoints = ownRegistrations.get(serviceName);
+        if (endpoints != null) {
+            endpoints.remove(endpoint);
+        }
+    }
+
+    /**
+     * {@link ServiceRegistry#getOneServiceInstance}
+     **/
+    @Override
+    public Endpoint getOneServiceInstance(String serviceName, String hashKey) {
+        List<Endpoint> serviceInstances = getServiceInstances(serviceName);
+        if (CollectionUtils.isEmpty(serviceInstances)) {
+            return null;
+        }
+        return prpcLoadBalancer.doChoice(serviceName, serviceInstances, hashKey);
+    }
+
+    /**
+     * {@link ServiceRegistry#getServiceInstances}
+     **/
+    @Override
+    public List<Endpoint> getServiceInstances(String serviceName) {
+        InstanceSnapshot snapshot = instanceCache.get(serviceName);
+        return snapshot == null ? Collections.emptyList() : snapshot.getInstances();
+    }
+}
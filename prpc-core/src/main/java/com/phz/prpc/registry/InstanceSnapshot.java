@@ -0,0 +1,48 @@
+package com.phz.prpc.registry;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * 一个服务在某一时刻的实例快照，创建后不再修改；实例发生变化时生成版本号加一的新快照整体替换
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 21:50
+ */
+@Getter
+@ToString
+public final class InstanceSnapshot {
+    /**
+     * 服务名
+     **/
+    private final String serviceName;
+
+    /**
+     * 版本号，同一个服务每次变化加一
+     **/
+    private final long version;
+
+    /**
+     * 只读的实例列表，实例不变时一直是同一个对象，负载均衡器可以直接比较引用
+     **/
+    private final List<Endpoint> instances;
+
+    /**
+     * 构造方法
+     *
+     * @param serviceName 服务名
+     * @param version     版本号
+     * @param instances   实例列表，会被拷贝
+     **/
+    InstanceSnapshot(String serviceName, long version, List<Endpoint> instances) {
+        this.serviceName = serviceName;
+        this.version = version;
+        this.instances = Collections.unmodifiableList(new ArrayList<>(instances));
+    }
+}
@@ -0,0 +1,170 @@
+package com.phz.prpc.registry;
+
+import com.phz.prpc.config.PrpcProperties;
+import com.phz.prpc.spring.SpringBeanUtil;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * <p>
+ * 服务实例所在的位置，由可用区、机架和主机三个标签组成，服务端注册时作为元数据发布，客户端据此优先选择离自己近的实例
+ * </p>
+ * <br></br>
+ * <p>
+ * 空标签表示未知，未知的标签与任何标签都不相同；机架只在可用区相同时才比较，主机名在集群中唯一，不依赖可用区和机架
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 23:55
+ */
+@Getter
+@EqualsAndHashCode
+public final class Locality {
+    /**
+     * 所有标签都未知的位置
+     **/
+    public static final Locality UNKNOWN = new Locality("", "", "");
+
+    /**
+     * 同一台主机
+     **/
+    public static final int SAME_HOST = 3;
+
+    /**
+     * 同一个机架
+     **/
+    public static final int SAME_RACK = 2;
+
+    /**
+     * 同一个可用区
+     **/
+    public static final int SAME_ZONE = 1;
+
+    /**
+     * 没有任何相同的标签
+     **/
+    public static final int REMOTE = 0;
+
+    /**
+     * 文本形式中标签之间的分隔符
+     **/
+    private static final String SEPARATOR = "/";
+
+    /**
+     * 可用区
+     **/
+    private final String zone;
+
+    /**
+     * 机架
+     **/
+    private final String rack;
+
+    /**
+     * 主机
+     **/
+    private final String host;
+
+    /**
+     * 私有构造方法，统一通过{@link Locality#of(String, String, String)}获取
+     *
+     * @param zone 可用区
+     * @param rack 机架
+     * @param host 主机
+     **/
+    private Locality(String zone, String rack, String host) {
+        this.zone = zone;
+        this.rack = rack;
+        this.host = host;
+    }
+
+    /**
+     * 获取位置，{@code null}视为空标签
+     *
+     * @param zone 可用区
+     * @param rack 机架
+     * @param host 主机
+     * @return Locality 位置
+     **/
+    public static Locality of(String zone, String rack, String host) {
+        String z = zone == null ? "" : zone.trim();
+        String r = rack == null ? "" : rack.trim();
+        String h = host == null ? "" : host.trim();
+        return z.isEmpty() && r.isEmpty() && h.isEmpty() ? UNKNOWN : new Locality(z, r, h);
+    }
+
+    /**
+     * 解析{@link Locality#toString()}的文本形式，{@code null}或者空文本视为未知位置
+     *
+     * @param text 文本，格式为{@code zone/rack/host}
+     * @return Locality 位置
+     **/
+    public static Locality parse(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return UNKNOWN;
+        }
+        String[] labels = text.trim().split(SEPARATOR, -1);
+        return of(labels[0], labels.length > 1 ? labels[1] : "", labels.length > 2 ? labels[2] : "");
+    }
+
+    /**
+     * 本进程所在的位置，读取{@link PrpcProperties#getLocalityZone()}等配置，没有配置主机时使用本机主机名
+     *
+     * @return Locality 本进程的位置
+     **/
+    public static Locality local() {
+        return LocalHolder.LOCAL;
+    }
+
+    /**
+     * 本进程位置维护静态内部类：类的加载都是懒惰的，第一次调用{@link Locality#local()}方法，才会加载此内部类，然后读取配置
+     **/
+    private static class LocalHolder {
+        /**
+         * 本进程的位置
+         **/
+        private static final Locality LOCAL = load();
+
+        /**
+         * 读取配置中的位置标签
+         *
+         * @return Locality 本进程的位置
+         **/
+        private static Locality load() {
+            PrpcProperties prpcProperties = SpringBeanUtil.getBean(PrpcProperties.class);
+            String host = prpcProperties.getLocalityHost();
+            if (host == null || host.trim().isEmpty()) {
+                try {
+                    host = InetAddress.getLocalHost().getHostName();
+                } catch (UnknownHostException e) {
+                    host = "";
+                }
+            }
+            return of(prpcProperties.getLocalityZone(), prpcProperties.getLocalityRack(), host);
+        }
+    }
+
+    /**
+     * 计算与另一个位置的接近程度
+     *
+     * @param other 另一个位置
+     * @return int {@link Locality#SAME_HOST}、{@link Locality#SAME_RACK}、{@link Locality#SAME_ZONE}或者{@link Locality#REMOTE}
+     **/
+    public int proximity(Locality other) {
+        if (!host.isEmpty() && host.equals(other.host)) {
+            return SAME_HOST;
+        }
+        if (zone.isEmpty() || !zone.equals(other.zone)) {
+            return REMOTE;
+        }
+        return !rack.isEmpty() && rack.equals(other.rack) ? SAME_RACK : SAME_ZONE;
+    }
+
+    @Override
+    public String toString() {
+        return zone + SEPARATOR + rack + SEPARATOR + host;
+    }
+}
@@ -3,6 +3,8 @@ package com.phz.prpc.registry;
 import com.alibaba.nacos.api.exception.NacosException;
 import com.alibaba.nacos.api.naming.NamingFactory;
 import com.alibaba.nacos.api.naming.NamingService;
+import com.alibaba.nacos.api.naming.listener.NamingEvent;
+import com.alibaba.nacos.api.naming.pojo.Instance;
 import com.phz.prpc.config.PrpcProperties;
 import com.phz.prpc.exception.ErrorMsg;
 import com.phz.prpc.exception.PrpcException;
@@ -14,6 +16,7 @@ import org.springframework.util.CollectionUtils;
 
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -49,11 +52,41 @@ public final class NacosRegistry implements ServiceRegistry {
      **/
     private static final Map<String, List<InetSocketAddress>> SERVER_ADDRESS_MAP = new ConcurrentHashMap<>();
 
+    /**
+     * 客户端订阅的服务实例快照
+     **/
+    private static final ServiceInstanceCache INSTANCE_CACHE = new ServiceInstanceCache("nacos");
+
     /**
      * {@code Prpc配置类}
      **/
     private static final PrpcProperties PRPC_PROPERTIES = SpringBeanUtil.getBean(PrpcProperties.class);
 
+    /**
+     * 实例元数据中保存权重的键
+     **/
+    private static final String WEIGHT = "weight";
+
+    /**
+     * 实例元数据中可用区的键
+     **/
+    private static final String ZONE = "zone";
+
+    /**
+     * 实例元数据中机架的键
+     **/
+    private static final String RACK = "rack";
+
+    /**
+     * 实例元数据中主机标签的键
+     **/
+    private static final String HOST = "host";
+
+    /**
+     * 实例元数据中{@code Unix}域套接字路径的键
+     **/
+    private static final String DOMAIN_SOCKET = "domainSocket";
+
     /**
      * 私有构造方法，禁用手动实例化
      **/
@@ -99,17 +132,46 @@ public final class NacosRegistry implements ServiceRegistry {
     public void registerService(String serviceName, InetSocketAddress address) {
         String hostName = address.getHostString();
         int port = address.getPort();
+        // 先启动服务端，元数据中的域套接字路径只有监听成功后才会发布
+        NettyServer.getInstance().start();
         try {
-            namingService.registerInstance(serviceName, hostName, port);
+            int weight = PRPC_PROPERTIES.getWeight() > 0 ? PRPC_PROPERTIES.getWeight() : Runtime.getRuntime().availableProcessors();
+            Instance instance = new Instance();
+            instance.setIp(hostName);
+            instance.setPort(port);
+            instance.setWeight(weight);
+            Map<String, String> metadata = new HashMap<>();
+            metadata.put(WEIGHT, String.valueOf(weight));
+            Locality locality = Locality.local();
+            metadata.put(ZONE, locality.getZone());
+            metadata.put(RACK, locality.getRack());
+            metadata.put(HOST, locality.getHost());
+            String domainSocketPath = NettyServer.getInstance().getDomainSocketPath();
+            if (domainSocketPath != null) {
+                metadata.put(DOMAIN_SOCKET, domainSocketPath);
+            }
+            instance.setMetadata(metadata);
+            namingService.registerInstance(serviceName, instance);
             List<InetSocketAddress> inetSocketAddressList = SERVER_ADDRESS_MAP.computeIfAbsent(serviceName, k -> new ArrayList<>());
             inetSocketAddressList.add(address);
-            NettyServer.getInstance().start();
             log.info("实例 {} {} {} 注册成功", serviceName, hostName, port);
         } catch (NacosException e) {
             log.error("实例 {} {} {} 注册失败, 原因 : {}", serviceName, hostName, port, e.getErrMsg());
         }
     }
 
+    /**
+     * 批量注册远程服务，当前{@code Nacos}客户端没有跨服务的批量注册接口，这里并行发出注册请求，让各次往返相互重叠
+     *
+     * @param services 服务名称到注册地址的映射
+     **/
+    @Override
+    public void registerServices(Map<String, InetSocketAddress> services) {
+        // 先启动服务端，避免并行注册时重复启动
+        NettyServer.getInstance().start();
+        services.entrySet().parallelStream().forEach(entry -> registerService(entry.getKey(), entry.getValue()));
+    }
+
     /**
      * 移除所有的服务实例
      **/
@@ -146,35 +208,119 @@ public final class NacosRegistry implements ServiceRegistry {
 
 
     /**
-     * 使用负载均衡算法获取可提供的服务实例{@link InetSocketAddress}
+     * 使用负载均衡算法获取可提供的服务实例{@link Endpoint}
      *
      * @param serviceName 需要获取的服务名称
-     * @return InetSocketAddress 可提供服务的实例
+     * @param hashKey     调用的哈希键，可以为{@code null}
+     * @return Endpoint 可提供服务的实例
      **/
     @Override
-    public InetSocketAddress getOneServiceInstance(String serviceName) {
-        List<InetSocketAddress> serviceInstances = getServiceInstances(serviceName);
+    public Endpoint getOneServiceInstance(String serviceName, String hashKey) {
+        List<Endpoint> serviceInstances = getServiceInstances(serviceName);
         if (CollectionUtils.isEmpty(serviceInstances)) {
             return null;
         }
-        return prpcLoadBalancer.doChoice(serviceInstances);
+        return prpcLoadBalancer.doChoice(serviceName, serviceInstances, hashKey);
     }
 
     /**
-     * 根据服务名称查询下方所有的实例
+     * 根据服务名称查询下方所有的实例，第一次查询时订阅这个服务，之后只读取订阅推送维护的快照
      *
      * @param serviceName 服务名称
-     * @return List<InetSocketAddress>  实例集合
+     * @return List<Endpoint>  只读的实例集合
      **/
     @Override
-    public List<InetSocketAddress> getServiceInstances(String serviceName) {
+    public List<Endpoint> getServiceInstances(String serviceName) {
+        InstanceSnapshot snapshot = INSTANCE_CACHE.get(serviceName);
+        if (snapshot == null) {
+            snapshot = subscribe(serviceName);
+        }
+        return snapshot.getInstances();
+    }
+
+    /**
+     * 订阅服务的实例变化，并查询一次初始实例；本地快照中有这个服务时不查询，直接使用快照中的实例
+     *
+     * @param serviceName 服务名称
+     * @return InstanceSnapshot 当前快照
+     **/
+    private synchronized InstanceSnapshot subscribe(String serviceName) {
+        InstanceSnapshot snapshot = INSTANCE_CACHE.get(serviceName);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        InstanceSnapshot restored = INSTANCE_CACHE.restore(serviceName);
         try {
-            List<InetSocketAddress> instances = new ArrayList<>();
-            namingService.getAllInstances(serviceName).forEach(instance -> instances.add(new InetSocketAddress(instance.getIp(), instance.getPort())));
-            return instances;
+            namingService.subscribe(serviceName, event -> {
+                if (event instanceof NamingEvent) {
+                    INSTANCE_CACHE.publish(serviceName, toAddresses(((NamingEvent) event).getInstances()));
+                }
+            });
+            if (restored != null) {
+                // 先用本地快照路由，订阅推送到达后以注册中心中的实例为准
+                return restored;
+            }
+            return INSTANCE_CACHE.publishIfAbsent(serviceName, toAddresses(namingService.getAllInstances(serviceName)));
         } catch (NacosException e) {
+            if (restored != null) {
+                log.error("订阅服务 {} 失败，暂时使用本地快照中的实例，错误详情 : {}", serviceName, e.getErrMsg());
+                return restored;
+            }
             log.error("查询服务名为 {} 的实例出现错误，错误详情 : {}", serviceName, e.getErrMsg());
             throw new PrpcException(ErrorMsg.GET_INSTANCE_ERROR);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 将{@code Nacos}实例转换为地址，只保留健康并且启用的实例，同时记录实例权重
+     *
+     * @param instances {@code Nacos}实例
+     * @return List<Endpoint> 地址集合
+     **/
+    private static List<Endpoint> toAddresses(List<Instance> instances) {
+        List<Endpoint> addresses = new ArrayList<>(instances.size());
+        for (Instance instance : instances) {
+            if (!instance.isHealthy() || !instance.isEnabled()) {
+                continue;
+            }
+            Endpoint address = Endpoint.of(instance.getIp(), instance.getPort());
+            address.getStats().setWeight(weightOf(instance));
+            address.setLocality(localityOf(instance));
+            address.setDomainSocketPath(instance.getMetadata() == null ? null : instance.getMetadata().get(DOMAIN_SOCKET));
+            addresses.add(address);
+        }
+        return addresses;
+    }
+
+    /**
+     * 读取实例元数据中的位置，没有发布位置的实例位置未知
+     *
+     * @param instance {@code Nacos}实例
+     * @return Locality 位置
+     **/
+    private static Locality localityOf(Instance instance) {
+        Map<String, String> metadata = instance.getMetadata();
+        if (metadata == null) {
+            return Locality.UNKNOWN;
+        }
+        return Locality.of(metadata.get(ZONE), metadata.get(RACK), metadata.get(HOST));
+    }
+
+    /**
+     * 读取实例的权重，优先使用元数据中的权重，没有时使用{@code Nacos}实例自带的权重
+     *
+     * @param instance {@code Nacos}实例
+     * @return int 权重
+     **/
+    private static int weightOf(Instance instance) {
+        String weight = instance.getMetadata() == null ? null : instance.getMetadata().get(WEIGHT);
+        if (weight != null) {
+            try {
+                return Integer.parseInt(weight.trim());
+            } catch (NumberFormatException e) {
+                log.error("实例 {}:{} 的权重 {} 格式错误", instance.getIp(), instance.getPort(), weight);
+            }
+        }
+        return (int) Math.round(instance.getWeight());
+    }
+}
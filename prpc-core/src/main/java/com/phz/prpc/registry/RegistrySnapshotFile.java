@@ -0,0 +1,213 @@
+package com.phz.prpc.registry;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * 注册中心本地快照文件，保存客户端最近一次看到的各服务实例列表和权重，启动时加载，注册中心缓慢或者不可用时客户端也能立即路由
+ * </p>
+ * <br></br>
+ * <p>
+ * 文件是紧凑的二进制格式：魔数、格式版本、服务数，之后每个服务依次是服务名、实例数以及每个实例的主机、端口、权重和位置，
+ * 第1版的文件没有位置，仍然可以读取。
+ * 实例发生变化时标记为脏，短暂延迟后由后台线程合并写出，先写临时文件再原子替换，进程中途退出也不会留下半个文件
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 22:40
+ */
+@Slf4j
+final class RegistrySnapshotFile {
+    /**
+     * 文件魔数，{@code PRSN}
+     **/
+    private static final int MAGIC = 0x5052534E;
+
+    /**
+     * 文件格式版本
+     **/
+    private static final byte FORMAT_VERSION = 2;
+
+    /**
+     * 开始保存实例位置的格式版本
+     **/
+    private static final byte LOCALITY_VERSION = 2;
+
+    /**
+     * 实例变化后延迟写出的时间，单位{@code ms}，期间的多次变化合并成一次写出
+     **/
+    private static final long WRITE_DELAY = 1000;
+
+    /**
+     * 所有快照文件共用的写出线程
+     **/
+    private static final ScheduledThreadPoolExecutor WRITER = new ScheduledThreadPoolExecutor(1, new DefaultThreadFactory("prpc-registry-snapshot", true));
+
+    /**
+     * 快照文件路径
+     **/
+    private final Path path;
+
+    /**
+     * 启动时从文件加载的实例列表，只读
+     **/
+    private final Map<String, List<Endpoint>> restored;
+
+    /**
+     * 服务名到最新实例列表的映射，写出时以它为准，还没有订阅的服务沿用文件中的内容
+     **/
+    private final Map<String, List<Endpoint>> latest = new ConcurrentHashMap<>();
+
+    /**
+     * 是否已经安排了一次写出
+     **/
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * 构造方法，加载已有的快照文件，文件不存在或者损坏时视为空快照
+     *
+     * @param path 快照文件路径
+     **/
+    RegistrySnapshotFile(Path path) {
+        this.path = path;
+        this.restored = load(path);
+    }
+
+    /**
+     * 文件中是否有可用的实例
+     *
+     * @return boolean 有任意服务的实例时返回{@code true}
+     **/
+    boolean isEmpty() {
+        return restored.isEmpty();
+    }
+
+    /**
+     * 获取文件中保存的服务实例
+     *
+     * @param serviceName 服务名
+     * @return List<Endpoint> 实例列表，文件中没有这个服务时为{@code null}
+     **/
+    List<Endpoint> restore(String serviceName) {
+        return restored.get(serviceName);
+    }
+
+    /**
+     * 服务实例发生了变化，安排一次延迟写出
+     *
+     * @param serviceName 服务名
+     * @param instances   最新的实例列表
+     **/
+    void changed(String serviceName, List<Endpoint> instances) {
+        latest.put(serviceName, instances);
+        if (scheduled.compareAndSet(false, true)) {
+            WRITER.schedule(this::write, WRITE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 把所有服务的实例写入临时文件，再原子替换快照文件
+     **/
+    private void write() {
+        scheduled.set(false);
+        Map<String, List<Endpoint>> services = new LinkedHashMap<>(restored);
+        services.putAll(latest);
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream file = Files.newOutputStream(temp);
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+                    out.writeInt(MAGIC);
+                    out.writeByte(FORMAT_VERSION);
+                    out.writeInt(services.size());
+                    for (Map.Entry<String, List<Endpoint>> entry : services.entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        out.writeInt(entry.getValue().size());
+                        for (Endpoint endpoint : entry.getValue()) {
+                            out.writeUTF(endpoint.getHost());
+                            out.writeInt(endpoint.getPort());
+                            out.writeInt(endpoint.getStats().getWeight());
+                            out.writeUTF(endpoint.getLocality().toString());
+                        }
+                    }
+                }
+                try {
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            log.debug("注册中心快照已写入 {}，共 {} 个服务", path, services.size());
+        } catch (IOException e) {
+            log.error("注册中心快照 {} 写入失败，原因 : {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取快照文件，同时恢复实例权重和位置
+     *
+     * @param path 快照文件路径
+     * @return Map<String, List<Endpoint>> 服务名到实例列表的映射
+     **/
+    private static Map<String, List<Endpoint>> load(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return Collections.emptyMap();
+        }
+        Map<String, List<Endpoint>> services = new LinkedHashMap<>();
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            int magic = in.readInt();
+            byte version = in.readByte();
+            if (magic != MAGIC || version < 1 || version > FORMAT_VERSION) {
+                log.error("注册中心快照 {} 格式不正确，已忽略", path);
+                return Collections.emptyMap();
+            }
+            int serviceCount = in.readInt();
+            for (int i = 0; i < serviceCount; i++) {
+                String serviceName = in.readUTF();
+                int instanceCount = in.readInt();
+                List<Endpoint> instances = new ArrayList<>(instanceCount);
+                for (int j = 0; j < instanceCount; j++) {
+                    Endpoint endpoint = Endpoint.of(in.readUTF(), in.readInt());
+                    endpoint.getStats().setWeight(in.readInt());
+                    if (version >= LOCALITY_VERSION) {
+                        endpoint.setLocality(Locality.parse(in.readUTF()));
+                    }
+                    instances.add(endpoint);
+                }
+                services.put(serviceName, instances);
+            }
+        } catch (IOException e) {
+            log.error("注册中心快照 {} 读取失败，已忽略，原因 : {}", path, e.getMessage());
+            return Collections.emptyMap();
+        }
+        log.info("从注册中心快照 {} 恢复了 {} 个服务", path, services.size());
+        return services;
+    }
+}
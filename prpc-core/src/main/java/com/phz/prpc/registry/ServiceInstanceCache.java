@@ -0,0 +1,153 @@
+package com.phz.prpc.registry;
+
+import com.phz.prpc.config.PrpcProperties;
+import com.phz.prpc.spring.SpringBeanUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 客户端服务实例缓存，由注册中心的订阅或者监听事件驱动更新，调用路径上只读取当前快照，不访问注册中心
+ * </p>
+ * <br></br>
+ * <p>
+ * 开启了{@link PrpcProperties#getRegistrySnapshot()}时，每次实例变化都会同步到本地快照文件{@link RegistrySnapshotFile}，
+ * 下次启动时注册中心可以先用文件中的实例发布快照，再在后台订阅
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 21:52
+ */
+@Slf4j
+final class ServiceInstanceCache {
+    /**
+     * 服务名到当前快照的映射
+     **/
+    private final Map<String, InstanceSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * 本地快照文件，没有开启时为{@code null}
+     **/
+    private final RegistrySnapshotFile snapshotFile;
+
+    /**
+     * 构造方法，不使用本地快照文件
+     **/
+    ServiceInstanceCache() {
+        this.snapshotFile = null;
+    }
+
+    /**
+     * 构造方法，开启了本地快照时加载对应的快照文件
+     *
+     * @param registryName 注册中心类型，用于区分快照文件
+     **/
+    ServiceInstanceCache(String registryName) {
+        PrpcProperties prpcProperties = SpringBeanUtil.getBean(PrpcProperties.class);
+        if (Boolean.TRUE.equals(prpcProperties.getRegistrySnapshot())) {
+            String dir = prpcProperties.getRegistrySnapshotDir();
+            Path directory = dir == null || dir.isEmpty() ? Paths.get(System.getProperty("user.home"), ".prpc") : Paths.get(dir);
+            String address = String.valueOf(prpcProperties.getRegistryAddress()).replaceAll("[^0-9A-Za-z.-]", "_");
+            this.snapshotFile = new RegistrySnapshotFile(directory.resolve(registryName + "-" + address + ".snapshot"));
+        } else {
+            this.snapshotFile = null;
+        }
+    }
+
+    /**
+     * 获取服务的当前快照
+     *
+     * @param serviceName 服务名
+     * @return InstanceSnapshot 当前快照，还没有订阅过这个服务时为{@code null}
+     **/
+    InstanceSnapshot get(String serviceName) {
+        return snapshots.get(serviceName);
+    }
+
+    /**
+     * 获取所有已经有快照的服务名
+     *
+     * @return Set<String> 服务名集合
+     **/
+    Set<String> serviceNames() {
+        return snapshots.keySet();
+    }
+
+    /**
+     * 注册中心推送了新的实例列表，与当前快照相同时保留原快照，否则生成新版本
+     *
+     * @param serviceName 服务名
+     * @param instances   实例列表
+     * @return InstanceSnapshot 发布后的快照
+     **/
+    InstanceSnapshot publish(String serviceName, List<Endpoint> instances) {
+        return snapshots.compute(serviceName, (key, current) -> {
+            if (current != null && current.getInstances().equals(instances)) {
+                return current;
+            }
+            InstanceSnapshot snapshot = new InstanceSnapshot(key, current == null ? 1 : current.getVersion() + 1, instances);
+            log.info("服务 {} 的实例更新为版本 {} : {}", key, snapshot.getVersion(), snapshot.getInstances());
+            saveSnapshot(snapshot);
+            return snapshot;
+        });
+    }
+
+    /**
+     * 订阅后主动查询到的初始实例列表，只在还没有收到推送时发布，避免覆盖更新的推送
+     *
+     * @param serviceName 服务名
+     * @param instances   实例列表
+     * @return InstanceSnapshot 当前快照
+     **/
+    InstanceSnapshot publishIfAbsent(String serviceName, List<Endpoint> instances) {
+        return snapshots.computeIfAbsent(serviceName, key -> {
+            InstanceSnapshot snapshot = new InstanceSnapshot(key, 1, instances);
+            saveSnapshot(snapshot);
+            return snapshot;
+        });
+    }
+
+    /**
+     * 本地快照文件中是否有可用的实例，注册中心据此决定启动时是否需要阻塞等待连接
+     *
+     * @return boolean 有可用实例时返回{@code true}
+     **/
+    boolean hasLocalSnapshot() {
+        return snapshotFile != null && !snapshotFile.isEmpty();
+    }
+
+    /**
+     * 用本地快照文件中的实例发布快照，只在还没有快照时发布
+     *
+     * @param serviceName 服务名
+     * @return InstanceSnapshot 当前快照，快照文件中没有这个服务时为{@code null}
+     **/
+    InstanceSnapshot restore(String serviceName) {
+        List<Endpoint> instances = snapshotFile == null ? null : snapshotFile.restore(serviceName);
+        if (instances == null) {
+            return null;
+        }
+        return snapshots.computeIfAbsent(serviceName, key -> {
+            InstanceSnapshot snapshot = new InstanceSnapshot(key, 1, instances);
+            log.info("服务 {} 使用本地快照中的实例 : {}", key, snapshot.getInstances());
+            return snapshot;
+        });
+    }
+
+    /**
+     * 把新的快照同步到本地快照文件
+     *
+     * @param snapshot 新的快照
+     **/
+    private void saveSnapshot(InstanceSnapshot snapshot) {
+        if (snapshotFile != null) {
+            snapshotFile.changed(snapshot.getServiceName(), snapshot.getInstances());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.phz.prpc.registry;
 
 import java.net.InetSocketAddress;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author PengHuanZhi
@@ -17,6 +18,15 @@ public interface ServiceRegistry {
      **/
     void registerService(String serviceName, InetSocketAddress address);
 
+    /**
+     * 批量注册远程服务，服务端启动时一次性发布所有服务，默认逐个注册
+     *
+     * @param services 服务名称到注册地址的映射
+     **/
+    default void registerServices(Map<String, InetSocketAddress> services) {
+        services.forEach(this::registerService);
+    }
+
     /**
      * 移除所有的服务实例
      **/
@@ -32,18 +42,29 @@ public interface ServiceRegistry {
     void deRegisterService(String serviceName, String hostName, int port);
 
     /**
-     * 使用负载均衡算法获取可提供的服务实例{@link InetSocketAddress}
+     * 使用负载均衡算法获取可提供的服务实例{@link Endpoint}
+     *
+     * @param serviceName 需要获取的服务名称
+     * @return Endpoint 可提供服务的实例
+     **/
+    default Endpoint getOneServiceInstance(String serviceName) {
+        return getOneServiceInstance(serviceName, null);
+    }
+
+    /**
+     * 使用负载均衡算法获取可提供的服务实例{@link Endpoint}，一致性哈希算法按哈希键选择
      *
      * @param serviceName 需要获取的服务名称
-     * @return InetSocketAddress 可提供服务的实例
+     * @param hashKey     调用的哈希键，可以为{@code null}
+     * @return Endpoint 可提供服务的实例
      **/
-    InetSocketAddress getOneServiceInstance(String serviceName);
+    Endpoint getOneServiceInstance(String serviceName, String hashKey);
 
     /**
      * 根据服务名称查询下方所有的实例
      *
      * @param serviceName 服务名称
-     * @return List<InetSocketAddress>  实例集合
+     * @return List<Endpoint>  实例集合
      **/
-    List<InetSocketAddress> getServiceInstances(String serviceName);
+    List<Endpoint> getServiceInstances(String serviceName);
 }
\ No newline at end of file
@@ -0,0 +1,292 @@
+package com.phz.prpc.registry;
+
+import com.phz.prpc.config.PrpcProperties;
+import com.phz.prpc.exception.ErrorMsg;
+import com.phz.prpc.exception.PrpcException;
+import com.phz.prpc.netty.loadBalance.PrpcLoadBalancer;
+import com.phz.prpc.netty.server.NettyServer;
+import com.phz.prpc.spring.SpringBeanUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.CollectionUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * 不依赖外部注册中心的静态注册中心，服务实例有两个来源：{@link com.phz.prpc.annotation.PrpcClient}上配置的直连地址，
+ * 以及{@link PrpcProperties#getStaticRegistryFile()}指定的实例文件。直连地址优先，两者都没有的服务视为没有实例
+ * </p>
+ * <br></br>
+ * <p>
+ * 实例文件在后台按{@link PrpcProperties#getStaticRegistryReloadInterval()}检查修改时间，变化后重新读取并发布新的快照，
+ * 负载均衡算法与其他注册中心一样按快照选择实例。服务端使用这个注册中心时只启动服务，不发布到任何地方
+ * </p>
+ *
+ * @author PengHuanZhi
+ * @date 2026年10月19日 23:05
+ */
+@Slf4j
+public final class StaticRegistry implements ServiceRegistry {
+    /**
+     * 直连地址的前缀
+     **/
+    private static final String DIRECT_PREFIX = "direct://";
+
+    /**
+     * 实例文件中服务名与实例之间的分隔符
+     **/
+    private static final String SERVICE_SEPARATOR = "=";
+
+    /**
+     * 实例文件中地址与权重之间的分隔符
+     **/
+    private static final String WEIGHT_SEPARATOR = "@";
+
+    /**
+     * 实例文件中地址与位置之间的分隔符
+     **/
+    private static final String LOCALITY_SEPARATOR = "|";
+
+    /**
+     * 注解中配置的直连实例，服务名到快照的映射，创建后不再变化
+     **/
+    private final Map<String, InstanceSnapshot> directInstances = new ConcurrentHashMap<>();
+
+    /**
+     * 实例文件中的服务实例
+     **/
+    private final ServiceInstanceCache fileInstances = new ServiceInstanceCache();
+
+    /**
+     * 负载均衡器
+     **/
+    private final PrpcLoadBalancer prpcLoadBalancer = PrpcLoadBalancer.getInstance();
+
+    /**
+     * 实例文件路径，没有配置时为{@code null}
+     **/
+    private final Path file;
+
+    /**
+     * 上次读取时实例文件的修改时间
+     **/
+    private volatile long lastModified = -1;
+
+    /**
+     * 私有构造方法，禁用手动实例化；配置了实例文件时读取一次，并开始定期检查文件变化
+     **/
+    private StaticRegistry() {
+        PrpcProperties prpcProperties = SpringBeanUtil.getBean(PrpcProperties.class);
+        String fileName = prpcProperties.getStaticRegistryFile();
+        file = fileName == null || fileName.isEmpty() ? null : Paths.get(fileName);
+        if (file != null) {
+            reload();
+            long interval = Math.max(100, prpcProperties.getStaticRegistryReloadInterval());
+            ScheduledThreadPoolExecutor reloader = new ScheduledThreadPoolExecutor(1, new DefaultThreadFactory("prpc-static-registry", true));
+            reloader.scheduleWithFixedDelay(this::reload, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 静态注册中心单例维护静态内部类：类的加载都是懒惰的，第一次调用{@link StaticRegistry#getInstance()}方法，才会加载此内部类，然后创建唯一注册中心实例
+     **/
+    private static class StaticRegistryHolder {
+        /**
+         * 单例
+         **/
+        private static final StaticRegistry INSTANCE = new StaticRegistry();
+    }
+
+    /**
+     * 获取静态注册中心
+     *
+     * @return StaticRegistry 静态注册中心单例
+     **/
+    public static StaticRegistry getInstance() {
+        return StaticRegistryHolder.INSTANCE;
+    }
+
+    /**
+     * 为服务配置直连实例，之后这个服务的调用不再经过注册中心
+     *
+     * @param serviceName 服务名
+     * @param endpoints   直连实例，{@code host:port}或者{@code direct://host:port,host:port}
+     **/
+    public void addDirect(String serviceName, String... endpoints) {
+        List<Endpoint> instances = new ArrayList<>();
+        for (String endpoint : endpoints) {
+            String addresses = endpoint.trim();
+            if (addresses.startsWith(DIRECT_PREFIX)) {
+                addresses = addresses.substring(DIRECT_PREFIX.length());
+            }
+            for (String address : addresses.split(",")) {
+                if (!address.trim().isEmpty()) {
+                    instances.add(parseEndpoint(address));
+                }
+            }
+        }
+        if (instances.isEmpty()) {
+            return;
+        }
+        InstanceSnapshot snapshot = new InstanceSnapshot(serviceName, 1, instances);
+        directInstances.put(serviceName, snapshot);
+        log.info("服务 {} 直连实例 : {}", serviceName, snapshot.getInstances());
+    }
+
+    /**
+     * 服务是否配置了直连实例
+     *
+     * @param serviceName 服务名
+     * @return boolean 配置了直连实例返回{@code true}
+     **/
+    public boolean isDirect(String serviceName) {
+        return directInstances.containsKey(serviceName);
+    }
+
+    /**
+     * 静态注册中心不发布服务，只启动服务端
+     **/
+    @Override
+    public void registerService(String serviceName, InetSocketAddress address) {
+        NettyServer.getInstance().start();
+        log.info("静态注册中心不发布服务 {}，服务端已在 {} 启动", serviceName, address);
+    }
+
+    /**
+     * 静态注册中心没有需要注销的服务
+     **/
+    @Override
+    public void deRegisterAllService() {
+    }
+
+    /**
+     * 静态注册中心没有需要注销的服务
+     **/
+    @Override
+    public void deRegisterService(String serviceName, String hostName, int port) {
+    }
+
+    /**
+     * {@link ServiceRegistry#getOneServiceInstance}
+     **/
+    @Override
+    public Endpoint getOneServiceInstance(String serviceName, String hashKey) {
+        List<Endpoint> serviceInstances = getServiceInstances(serviceName);
+        if (CollectionUtils.isEmpty(serviceInstances)) {
+            return null;
+        }
+        return prpcLoadBalancer.doChoice(serviceName, serviceInstances, hashKey);
+    }
+
+    /**
+     * {@link ServiceRegistry#getServiceInstances}，直连实例优先，其次是实例文件中的实例
+     **/
+    @Override
+    public List<Endpoint> getServiceInstances(String serviceName) {
+        InstanceSnapshot snapshot = directInstances.get(serviceName);
+        if (snapshot == null) {
+            snapshot = fileInstances.get(serviceName);
+        }
+        return snapshot == null ? Collections.emptyList() : snapshot.getInstances();
+    }
+
+    /**
+     * 实例文件的修改时间变化后重新读取，并为每个服务发布新的快照；文件中删除的服务发布为空实例列表
+     **/
+    private void reload() {
+        try {
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            if (modified == lastModified) {
+                return;
+            }
+            Map<String, List<Endpoint>> services = parseFile(Files.readAllLines(file, StandardCharsets.UTF_8));
+            for (Map.Entry<String, List<Endpoint>> entry : services.entrySet()) {
+                fileInstances.publish(entry.getKey(), entry.getValue());
+            }
+            fileInstances.serviceNames().stream()
+                    .filter(serviceName -> !services.containsKey(serviceName))
+                    .forEach(serviceName -> fileInstances.publish(serviceName, Collections.emptyList()));
+            lastModified = modified;
+        } catch (IOException | PrpcException e) {
+            log.error("读取静态注册中心实例文件 {} 失败，原因 : {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 解析实例文件
+     *
+     * @param lines 文件内容
+     * @return Map<String, List<Endpoint>> 服务名到实例列表的映射
+     **/
+    private static Map<String, List<Endpoint>> parseFile(List<String> lines) {
+        Map<String, List<Endpoint>> services = new LinkedHashMap<>();
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            int separator = trimmed.indexOf(SERVICE_SEPARATOR);
+            if (separator <= 0) {
+                log.error("静态注册中心实例文件的行格式错误 : {}", line);
+                throw new PrpcException(ErrorMsg.ILLEGAL_ENDPOINT);
+            }
+            List<Endpoint> instances = services.computeIfAbsent(trimmed.substring(0, separator).trim(), key -> new ArrayList<>());
+            for (String address : trimmed.substring(separator + 1).split(",")) {
+                if (!address.trim().isEmpty()) {
+                    instances.add(parseEndpoint(address));
+                }
+            }
+        }
+        return services;
+    }
+
+    /**
+     * 解析一个实例地址，格式为{@code host:port}，可以带{@code @权重}，最后可以带{@code |zone/rack/host}形式的位置
+     *
+     * @param address 实例地址
+     * @return Endpoint 实例
+     **/
+    private static Endpoint parseEndpoint(String address) {
+        String text = address.trim();
+        int weight = 1;
+        Locality locality = Locality.UNKNOWN;
+        int localitySeparator = text.indexOf(LOCALITY_SEPARATOR);
+        if (localitySeparator >= 0) {
+            locality = Locality.parse(text.substring(localitySeparator + 1));
+            text = text.substring(0, localitySeparator).trim();
+        }
+        int weightSeparator = text.lastIndexOf(WEIGHT_SEPARATOR);
+        int portSeparator = text.lastIndexOf(':');
+        try {
+            if (weightSeparator > 0) {
+                weight = Integer.parseInt(text.substring(weightSeparator + 1).trim());
+                text = text.substring(0, weightSeparator);
+                portSeparator = text.lastIndexOf(':');
+            }
+            if (portSeparator <= 0) {
+                throw new NumberFormatException(text);
+            }
+            Endpoint endpoint = Endpoint.of(text.substring(0, portSeparator), Integer.parseInt(text.substring(portSeparator + 1)));
+            endpoint.getStats().setWeight(weight);
+            endpoint.setLocality(locality);
+            return endpoint;
+        } catch (IllegalArgumentException e) {
+            log.error("服务实例地址格式错误 : {}", address);
+            throw new PrpcException(ErrorMsg.ILLEGAL_ENDPOINT);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.phz.prpc.registry;
 
 import com.phz.prpc.config.PrpcProperties;
+import com.phz.prpc.exception.ErrorMsg;
+import com.phz.prpc.exception.PrpcException;
 import com.phz.prpc.netty.loadBalance.PrpcLoadBalancer;
 import com.phz.prpc.netty.server.NettyServer;
 import com.phz.prpc.spring.SpringBeanUtil;
@@ -8,12 +10,22 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.transaction.CuratorOp;
+import org.apache.curator.framework.recipes.cache.CuratorCache;
+import org.apache.curator.framework.recipes.cache.CuratorCacheListener;
+import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
 import org.springframework.util.CollectionUtils;
 
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -42,38 +54,71 @@ public final class ZookeeperRegistry implements ServiceRegistry {
     private static String rootPath;
 
     /**
-     * 维护一个已经注册服务集合
+     * 本实例已经注册的节点路径，重新连接后据此重新注册
      **/
     private static final Set<String> REGISTERED_PATH_SET = ConcurrentHashMap.newKeySet();
 
+    /**
+     * 还没有注册成功的节点路径，例如使用本地快照启动时{@code Zookeeper}尚未连接，连接建立后再注册
+     **/
+    private static final Set<String> PENDING_PATH_SET = ConcurrentHashMap.newKeySet();
+
 
     /**
-     * 将所有注册的实例缓存下来
+     * 客户端监听的服务实例快照
      **/
-    private static final Map<String, List<String>> SERVICE_ADDRESS_MAP = new ConcurrentHashMap<>();
+    private static final ServiceInstanceCache INSTANCE_CACHE = new ServiceInstanceCache("zookeeper");
+
+    /**
+     * 服务名到监听缓存的映射
+     **/
+    private static final Map<String, CuratorCache> SERVICE_CACHES = new ConcurrentHashMap<>();
 
     /**
      * {@code Prpc配置类}
      **/
     private static final PrpcProperties PRPC_PROPERTIES = SpringBeanUtil.getBean(PrpcProperties.class);
 
+    /**
+     * 实例节点数据中权重与位置之间的分隔符
+     **/
+    private static final String NODE_DATA_SEPARATOR = "\n";
+
     /**
      * 负载均衡器
      **/
     private static PrpcLoadBalancer prpcLoadBalancer;
 
+    /**
+     * 注册中心地址配置为这个值时，启动一个进程内的{@code Curator TestingServer}，需要{@code curator-test}在{@code classpath}中
+     **/
+    private static final String EMBEDDED = "embedded";
+
+    /**
+     * 是否使用进程内的{@code TestingServer}，每次启动都是全新的服务端，不使用本地快照
+     **/
+    private static boolean embedded;
+
     /**
      * 私有构造方法，禁用手动实例化
      **/
     private ZookeeperRegistry() {
         rootPath = "/" + PRPC_PROPERTIES.getZookeeperRootPath();
         RetryPolicy retryPolicy = new ExponentialBackoffRetry(PRPC_PROPERTIES.getZookeeperRetryBaseTime(), PRPC_PROPERTIES.getZookeeperRetryTimes());
+        embedded = EMBEDDED.equalsIgnoreCase(PRPC_PROPERTIES.getRegistryAddress());
         zkClient = CuratorFrameworkFactory.builder()
-                .connectString(PRPC_PROPERTIES.getRegistryAddress())
+                .connectString(embedded ? startEmbeddedServer() : PRPC_PROPERTIES.getRegistryAddress())
                 .retryPolicy(retryPolicy)
                 .build();
+        // 实例节点是临时节点，会话失效后重新连接时需要重新注册
+        zkClient.getConnectionStateListenable().addListener(this::onConnectionStateChanged);
         zkClient.start();
         prpcLoadBalancer = PrpcLoadBalancer.getInstance();
+        if (!embedded && INSTANCE_CACHE.hasLocalSnapshot()) {
+            // 本地快照中有实例时不阻塞启动，Curator会在后台连接；连接之前注册失败的节点会等连接建立后补充注册
+            log.info("使用本地注册中心快照启动，Zookeeper {} 在后台连接", PRPC_PROPERTIES.getRegistryAddress());
+            return;
+        }
         try {
             if (!zkClient.blockUntilConnected(30, TimeUnit.SECONDS)) {
                 throw new RuntimeException("Time out waiting to connect to ZK!");
@@ -84,6 +129,31 @@ public final class ZookeeperRegistry implements ServiceRegistry {
     }
 
 
+    /**
+     * 通过反射启动一个{@code Curator TestingServer}，{@code curator-test}是可选依赖，只在压测或者测试时加入
+     *
+     * @return String 连接字符串
+     **/
+    private static String startEmbeddedServer() {
+        try {
+            Class<?> testingServerClass = Class.forName("org.apache.curator.test.TestingServer");
+            Object testingServer = testingServerClass.getConstructor().newInstance();
+            String connectString = (String) testingServerClass.getMethod("getConnectString").invoke(testingServer);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    ((AutoCloseable) testingServer).close();
+                } catch (Exception e) {
+                    log.error("关闭嵌入式Zookeeper失败，原因 : {}", e.getMessage());
+                }
+            }));
+            log.info("嵌入式Zookeeper已启动 : {}", connectString);
+            return connectString;
+        } catch (ReflectiveOperationException e) {
+            log.error("启动嵌入式Zookeeper失败，请确认curator-test在classpath中，原因 : {}", e.getMessage());
+            throw new PrpcException(ErrorMsg.EMBEDDED_REGISTRY_FAILED);
+        }
+    }
+
     /**
      * {@link org.apache.zookeeper.ZooKeeper}服务单例维护静态内部类：类的加载都是懒惰的，第一次调用{@link ZookeeperRegistry#getInstance()}方法，才会加载此内部类，然后创建唯一注册中心实例
      **/
@@ -108,24 +178,141 @@ public final class ZookeeperRegistry implements ServiceRegistry {
      **/
     @Override
     public void registerService(String serviceName, InetSocketAddress address) {
-        String path = rootPath + "/" + serviceName + "/" + address.getAddress().getHostAddress() + ":" + address.getPort();
+        registerServices(Collections.singletonMap(serviceName, address));
+    }
+
+    /**
+     * {@link ServiceRegistry#registerServices}，所有实例节点在一个事务中创建，只需要一次往返；
+     * 事务因为节点已经存在而失败时（例如上一个会话遗留的临时节点还没有过期），逐个节点重新注册
+     **/
+    @Override
+    public void registerServices(Map<String, InetSocketAddress> services) {
+        if (services.isEmpty()) {
+            return;
+        }
+        // 先启动服务端，节点数据中的域套接字路径只有监听成功后才会发布
+        NettyServer.getInstance().start();
+        List<String> paths = new ArrayList<>(services.size());
+        services.forEach((serviceName, address) -> paths.add(rootPath + "/" + serviceName + "/" + address.getAddress().getHostAddress() + ":" + address.getPort()));
+        byte[] data = nodeData();
         try {
-            if (REGISTERED_PATH_SET.contains(path) || zkClient.checkExists().forPath(path) != null) {
-                log.info("节点 {} 已注册", path);
-            } else {
+            zkClient.createContainers(rootPath);
+            Set<String> existingServices = new HashSet<>(zkClient.getChildren().forPath(rootPath));
+            List<CuratorOp> operations = new ArrayList<>();
+            for (String path : paths) {
+                ZKPaths.PathAndNode pathAndNode = ZKPaths.getPathAndNode(path);
+                if (existingServices.add(ZKPaths.getNodeFromPath(pathAndNode.getPath()))) {
+                    operations.add(zkClient.transactionOp().create().withMode(CreateMode.PERSISTENT).forPath(pathAndNode.getPath()));
+                }
                 /*
-                 * 比如/prpc/com.phz.prpc.server.HelloService/127.0.0.1:9999
+                 * 比如/prpc/com.phz.prpc.server.HelloService/127.0.0.1:9999，临时节点随会话结束自动删除
                  **/
-                zkClient.create().creatingParentsIfNeeded().withMode(CreateMode.PERSISTENT).forPath(path);
-                log.info("节点 {} 创建成功", path);
+                operations.add(zkClient.transactionOp().create().withMode(CreateMode.EPHEMERAL).forPath(path, data));
             }
-            REGISTERED_PATH_SET.add(path);
-            NettyServer.getInstance().start();
+            zkClient.transaction().forOperations(operations);
+            REGISTERED_PATH_SET.addAll(paths);
+            log.info("节点 {} 创建成功", paths);
+        } catch (KeeperException.NodeExistsException e) {
+            log.info("批量注册时节点已存在，逐个注册 : {}", e.getPath());
+            paths.forEach(path -> {
+                if (registerNode(path, data)) {
+                    REGISTERED_PATH_SET.add(path);
+                } else {
+                    addPending(Collections.singletonList(path));
+                }
+            });
+        } catch (Exception e) {
+            log.error("批量创建节点 {} 失败，连接建立后重新注册，原因 : {}", paths, e.getMessage());
+            addPending(paths);
+        }
+    }
+
+    /**
+     * 注册单个实例节点：节点属于当前会话时只更新数据，属于已经失效的旧会话时先删除再创建
+     *
+     * @param path 实例节点路径
+     * @param data 节点数据
+     * @return boolean 注册成功返回{@code true}
+     **/
+    private boolean registerNode(String path, byte[] data) {
+        try {
+            Stat stat = zkClient.checkExists().forPath(path);
+            if (stat != null && stat.getEphemeralOwner() == zkClient.getZookeeperClient().getZooKeeper().getSessionId()) {
+                zkClient.setData().forPath(path, data);
+                log.info("节点 {} 已注册", path);
+                return true;
+            }
+            if (stat != null) {
+                zkClient.delete().forPath(path);
+            }
+            zkClient.create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL).forPath(path, data);
+            log.info("节点 {} 创建成功", path);
+            return true;
         } catch (Exception e) {
             log.error("创建节点 {} 失败，原因 : {}", path, e.getMessage());
+            return false;
         }
     }
 
+    /**
+     * 记录注册失败的节点，已经连接时立即重试一次；连接事件可能在记录之前就已经处理完，不能只依赖连接事件
+     *
+     * @param paths 注册失败的节点路径
+     **/
+    private void addPending(List<String> paths) {
+        PENDING_PATH_SET.addAll(paths);
+        if (zkClient.getZookeeperClient().isConnected()) {
+            registerPending();
+        }
+    }
+
+    /**
+     * 注册所有等待中的节点，成功的节点转入{@link ZookeeperRegistry#REGISTERED_PATH_SET}
+     **/
+    private synchronized void registerPending() {
+        if (PENDING_PATH_SET.isEmpty()) {
+            return;
+        }
+        log.info("Zookeeper已连接，注册等待中的节点 : {}", PENDING_PATH_SET);
+        byte[] data = nodeData();
+        for (String path : PENDING_PATH_SET) {
+            if (registerNode(path, data)) {
+                REGISTERED_PATH_SET.add(path);
+                PENDING_PATH_SET.remove(path);
+            }
+        }
+    }
+
+    /**
+     * 第一次连接建立后注册启动时没有注册成功的节点；会话重新建立后，临时节点可能已经随旧会话删除，重新注册本实例的所有节点
+     *
+     * @param client 客户端
+     * @param state  新的连接状态
+     **/
+    private void onConnectionStateChanged(CuratorFramework client, ConnectionState state) {
+        if (state != ConnectionState.CONNECTED && state != ConnectionState.RECONNECTED) {
+            return;
+        }
+        if (state == ConnectionState.RECONNECTED && !REGISTERED_PATH_SET.isEmpty()) {
+            log.info("Zookeeper重新连接，重新注册节点 : {}", REGISTERED_PATH_SET);
+            byte[] data = nodeData();
+            REGISTERED_PATH_SET.forEach(path -> registerNode(path, data));
+        }
+        registerPending();
+    }
+
+    /**
+     * 实例节点的数据，第一行是实例权重，第二行是实例位置{@code zone/rack/host}，第三行是{@code Unix}域套接字路径，没有时为空行
+     *
+     * @return byte[] 节点数据
+     **/
+    private static byte[] nodeData() {
+        int weight = PRPC_PROPERTIES.getWeight() > 0 ? PRPC_PROPERTIES.getWeight() : Runtime.getRuntime().availableProcessors();
+        String domainSocketPath = NettyServer.getInstance().getDomainSocketPath();
+        return (weight + NODE_DATA_SEPARATOR + Locality.local() + NODE_DATA_SEPARATOR + (domainSocketPath == null ? "" : domainSocketPath))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
     /**
      * {@link ServiceRegistry#deRegisterAllService}
      **/
@@ -138,6 +325,8 @@ public final class ZookeeperRegistry implements ServiceRegistry {
                 log.error("节点 {} 取消注册失败", p);
             }
         });
+        REGISTERED_PATH_SET.clear();
+        PENDING_PATH_SET.clear();
     }
 
     /**
@@ -155,6 +344,8 @@ public final class ZookeeperRegistry implements ServiceRegistry {
                 log.error("节点 {} 取消注册失败", p);
             }
         });
+        REGISTERED_PATH_SET.removeIf(p -> p.endsWith(path));
+        PENDING_PATH_SET.removeIf(p -> p.endsWith(path));
         log.info("所有节点都已注销完毕: {}", REGISTERED_PATH_SET);
     }
 
@@ -162,41 +353,142 @@ public final class ZookeeperRegistry implements ServiceRegistry {
      * {@link ServiceRegistry#getOneServiceInstance}
      **/
     @Override
-    public InetSocketAddress getOneServiceInstance(String serviceName) {
-        List<InetSocketAddress> serviceInstances = getServiceInstances(serviceName);
+    public Endpoint getOneServiceInstance(String serviceName, String hashKey) {
+        List<Endpoint> serviceInstances = getServiceInstances(serviceName);
         if (CollectionUtils.isEmpty(serviceInstances)) {
             return null;
         }
-        return prpcLoadBalancer.doChoice(serviceInstances);
+        return prpcLoadBalancer.doChoice(serviceName, serviceInstances, hashKey);
     }
 
 
     /**
-     * {@link ServiceRegistry#getServiceInstances}
+     * {@link ServiceRegistry#getServiceInstances}，第一次查询时监听服务节点，之后只读取监听事件维护的快照
      **/
     @Override
-    public List<InetSocketAddress> getServiceInstances(String serviceName) {
-        if (SERVICE_ADDRESS_MAP.containsKey(serviceName)) {
-            List<String> addressStrings = SERVICE_ADDRESS_MAP.get(serviceName);
-            List<InetSocketAddress> instances = new ArrayList<>();
-            for (String addressString : addressStrings) {
-                String[] hostAndPort = addressString.split(":");
-                instances.add(new InetSocketAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1])));
-            }
-            return instances;
+    public List<Endpoint> getServiceInstances(String serviceName) {
+        InstanceSnapshot snapshot = INSTANCE_CACHE.get(serviceName);
+        if (snapshot == null) {
+            snapshot = watch(serviceName);
+        }
+        return snapshot.getInstances();
+    }
+
+    /**
+     * 使用{@link CuratorCache}监听服务节点下的实例变化，并查询一次初始实例；本地快照中有这个服务时不查询，直接使用快照中的实例
+     *
+     * @param serviceName 服务名称
+     * @return InstanceSnapshot 当前快照
+     **/
+    private synchronized InstanceSnapshot watch(String serviceName) {
+        InstanceSnapshot snapshot = INSTANCE_CACHE.get(serviceName);
+        if (snapshot != null) {
+            return snapshot;
         }
-        List<InetSocketAddress> instances = new ArrayList<>();
         String servicePath = rootPath + "/" + serviceName;
+        CuratorCache curatorCache = CuratorCache.build(zkClient, servicePath);
+        Runnable refresh = () -> INSTANCE_CACHE.publish(serviceName, cachedInstances(curatorCache, servicePath));
+        // 初始化完成之前的事件只是在逐个加载已有节点，等初始化完成后再整体发布
+        curatorCache.listenable().addListener(CuratorCacheListener.builder()
+                .forAll((type, oldData, data) -> refresh.run())
+                .forInitialized(refresh)
+                .afterInitialized()
+                .build());
+        curatorCache.start();
+        SERVICE_CACHES.put(serviceName, curatorCache);
+        InstanceSnapshot restored = embedded ? null : INSTANCE_CACHE.restore(serviceName);
+        if (restored != null) {
+            // 先用本地快照路由，监听缓存初始化完成后会用注册中心中的实例替换
+            return restored;
+        }
+        List<Endpoint> instances = new ArrayList<>();
         try {
-            List<String> addressStrings = zkClient.getChildren().forPath(servicePath);
-            SERVICE_ADDRESS_MAP.put(serviceName, addressStrings);
-            for (String addressString : addressStrings) {
-                String[] hostAndPort = addressString.split(":");
-                instances.add(new InetSocketAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1])));
+            for (String addressString : zkClient.getChildren().forPath(servicePath)) {
+                Endpoint address = toAddress(addressString);
+                readNodeData(address, servicePath + "/" + addressString);
+                instances.add(address);
             }
         } catch (Exception e) {
             log.error("获取服务 {} 失败,原因为 : {}", servicePath, e.getMessage());
         }
+        return INSTANCE_CACHE.publishIfAbsent(serviceName, instances);
+    }
+
+    /**
+     * 从监听缓存中读取服务节点的直接子节点，同时记录实例权重
+     *
+     * @param curatorCache 监听缓存
+     * @param servicePath  服务节点路径
+     * @return List<Endpoint> 实例集合
+     **/
+    private List<Endpoint> cachedInstances(CuratorCache curatorCache, String servicePath) {
+        List<Endpoint> instances = new ArrayList<>();
+        curatorCache.stream().forEach(childData -> {
+            ZKPaths.PathAndNode pathAndNode = ZKPaths.getPathAndNode(childData.getPath());
+            if (!servicePath.equals(pathAndNode.getPath())) {
+                return;
+            }
+            Endpoint address = toAddress(pathAndNode.getNode());
+            parseNodeData(address, childData.getData(), childData.getPath());
+            instances.add(address);
+        });
         return instances;
     }
-}
\ No newline at end of file
+
+    /**
+     * 将节点名转换为地址
+     *
+     * @param addressString 节点名，格式为{@code ip:port}
+     * @return Endpoint 地址
+     **/
+    private static Endpoint toAddress(String addressString) {
+        String[] hostAndPort = addressString.split(":");
+        return Endpoint.of(hostAndPort[0], Integer.parseInt(hostAndPort[1]));
+    }
+
+    /**
+     * 读取实例节点数据中的权重、位置和{@code Unix}域套接字路径，旧版本注册的节点没有数据，权重按1处理，位置未知
+     *
+     * @param address 实例
+     * @param path    实例节点路径
+     **/
+    private void readNodeData(Endpoint address, String path) {
+        byte[] data = null;
+        try {
+            data = zkClient.getData().forPath(path);
+        } catch (Exception e) {
+            log.error("读取节点 {} 的数据失败，原因 : {}", path, e.getMessage());
+        }
+        parseNodeData(address, data, path);
+    }
+
+    /**
+     * 解析实例节点数据中的权重、位置和{@code Unix}域套接字路径，没有数据或者格式错误时权重按1处理，没有位置时位置未知
+     *
+     * @param address 实例
+     * @param data    节点数据
+     * @param path    实例节点路径
+     **/
+    private static void parseNodeData(Endpoint address, byte[] data, String path) {
+        int weight = 1;
+        Locality locality = Locality.UNKNOWN;
+        String domainSocketPath = null;
+        if (data != null && data.length > 0) {
+            String[] lines = new String(data, StandardCharsets.UTF_8).split(NODE_DATA_SEPARATOR, 3);
+            try {
+                weight = Integer.parseInt(lines[0].trim());
+            } catch (NumberFormatException e) {
+                log.error("节点 {} 的权重格式错误", path);
+            }
+            if (lines.length > 1) {
+                locality = Locality.parse(lines[1]);
+            }
+            if (lines.length > 2 && !lines[2].trim().isEmpty()) {
+                domainSocketPath = lines[2].trim();
+            }
+        }
+        address.getStats().setWeight(weight);
+        address.setLocality(locality);
+        address.setDomainSocketPath(domainSocketPath);
+    }
+}
@@ -4,20 +4,30 @@ import com.phz.prpc.annotation.PrpcClient;
 import com.phz.prpc.annotation.PrpcServer;
 import com.phz.prpc.config.PrpcProperties;
 import com.phz.prpc.netty.server.ServiceProvider;
+import com.phz.prpc.proxy.MethodDescriptor;
 import com.phz.prpc.proxy.PrpcCglibProxy;
 import com.phz.prpc.proxy.PrpcJdkProxy;
+import com.phz.prpc.registry.Endpoint;
+import com.phz.prpc.registry.StaticRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Resource;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 /**
  * {@link BeanPostProcessor}的实现类注册到{@code IOC}容器后，对于容器所创建的每个{@code Bean}实例在初始化方法调用前，将会调用{@link BeanPostProcessor#postProcessBeforeInitialization}<br><br>
@@ -27,7 +37,9 @@ import java.net.UnknownHostException;
  * --> 调用{@link BeanPostProcessor#postProcessBeforeInitialization}<br>
  * --> 调用{@code Bean}实例的初始化方法<br>
  * --> 调用{@link BeanPostProcessor#postProcessAfterInitialization}<br><br>
- * 这里用来扫描我们所有的{@code Bean}是否有被{@link PrpcServer}以及{@link PrpcClient}所标注的{@code Bean}，然后对其做我们自己的处理<br>
+ * 这里用来扫描我们所有的{@code Bean}是否有被{@link PrpcServer}以及{@link PrpcClient}所标注的{@code Bean}，然后对其做我们自己的处理<br><br>
+ * 扫描到的服务先暂存在{@link ServiceProvider}中，容器刷新完成后一次性批量注册到注册中心<br>
+ * 容器刷新完成后，{@link PrpcClient}所引用的服务如果由当前进程提供，改为进程内直接调用，不再经过编解码和回环连接<br>
  *
  * @author PengHuanZhi
  * @date 2022年01月10日 14:05
@@ -35,7 +47,7 @@ import java.net.UnknownHostException;
 @Slf4j
 @Component
 @DependsOn("springBeanUtil")
-public class SpringBeanPostProcessor implements BeanPostProcessor {
+public class SpringBeanPostProcessor implements BeanPostProcessor, ApplicationListener<ContextRefreshedEvent> {
     /**
      * 获取配置文件类对象
      **/
@@ -57,6 +69,21 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
      **/
     private static final String CGLIB = "cglib";
 
+    /**
+     * 关闭进程内调用
+     **/
+    private static final String LOCAL_INVOKE_OFF = "off";
+
+    /**
+     * 进程内调用时深拷贝参数和返回值
+     **/
+    private static final String LOCAL_INVOKE_CLONE = "clone";
+
+    /**
+     * 所有客户端代理的方法描述符，容器刷新完成后据此绑定进程内的服务；配置了直连实例的服务不在其中
+     **/
+    private final List<Map<Method, MethodDescriptor>> clientDescriptors = new ArrayList<>();
+
     /**
      * 实例化{@code Bean}前，校验当前{@code Bean}是否被{@link PrpcServer}注解标注，来决定是否将当前{@code Bean}注册为一个{@code Bean}服务
      *
@@ -77,8 +104,8 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
                 //从配置文件中获取本地rpc服务端口号
                 int port = prpcProperties.getServerPort();
                 InetSocketAddress address = new InetSocketAddress(host, port);
-                //向注册中心注册服务
-                serviceProvider.publishService(prpcServiceName, address.getHostName(), address.getPort(), bean);
+                //加入服务，容器刷新完成后与其他服务一起批量注册
+                serviceProvider.addService(prpcServiceName, address.getHostString(), address.getPort(), bean);
             } catch (UnknownHostException e) {
                 log.error("获取本机ip失败");
             }
@@ -86,6 +113,46 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
         return bean;
     }
 
+    /**
+     * 容器刷新完成，所有{@link PrpcServer}都已经扫描过，批量注册到注册中心，再把引用了本进程服务的客户端改为进程内调用
+     *
+     * @param event 容器刷新事件
+     **/
+    @Override
+    public void onApplicationEvent(@Nonnull ContextRefreshedEvent event) {
+        serviceProvider.publishPendingServices();
+        bindLocalServices();
+    }
+
+    /**
+     * 为服务由当前进程提供的客户端方法绑定进程内调用器
+     **/
+    private void bindLocalServices() {
+        String localInvoke = prpcProperties.getLocalInvoke();
+        if (LOCAL_INVOKE_OFF.equalsIgnoreCase(localInvoke)) {
+            return;
+        }
+        boolean copy = LOCAL_INVOKE_CLONE.equalsIgnoreCase(localInvoke);
+        Endpoint endpoint;
+        try {
+            //与注册服务时使用相同的地址，负载均衡和进程内调用统计的是同一个实例
+            endpoint = Endpoint.of(InetAddress.getLocalHost().getHostAddress(), prpcProperties.getServerPort());
+        } catch (UnknownHostException e) {
+            log.error("获取本机ip失败，保持远程调用");
+            return;
+        }
+        for (Map<Method, MethodDescriptor> methodDescriptors : clientDescriptors) {
+            for (MethodDescriptor descriptor : methodDescriptors.values()) {
+                String serviceName = descriptor.getServiceName();
+                if (serviceProvider.getServiceNames().contains(serviceName)
+                        && descriptor.bindLocal(serviceProvider.getService(serviceName), endpoint, copy)) {
+                    log.debug("服务 {} 的方法 {} 改为进程内调用", serviceName, descriptor.getMethodName());
+                }
+            }
+        }
+        clientDescriptors.clear();
+    }
+
     /**
      * 实例化{@code Bean}后，校验当前{@code Bean}中是否有属性被{@link PrpcClient}所注解，来决定是否将当前{@code Bean}注册为一个{@code Bean}服务
      *
@@ -108,6 +175,14 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
                 continue;
             }
             PrpcClient prpcClient = declaredField.getAnnotation(PrpcClient.class);
+            boolean direct = prpcClient.endpoints().length > 0 || !prpcClient.url().isEmpty();
+            if (direct) {
+                //配置了直连实例，这个服务的调用不经过注册中心
+                String serviceName = declaredField.getType().getCanonicalName() + ":" + prpcClient.groupName();
+                List<String> endpoints = new ArrayList<>(Arrays.asList(prpcClient.endpoints()));
+                endpoints.add(prpcClient.url());
+                StaticRegistry.getInstance().addDirect(serviceName, endpoints.toArray(new String[0]));
+            }
             String proxy = prpcProperties.getProxy();
             Object clientProxy = null;
             log.info("{} 代理实现：{}", bean, proxy);
@@ -116,11 +191,17 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
                         .groupName(prpcClient.groupName())
                         .build();
                 clientProxy = prpcJdkProxy.getProxy(declaredField.getType());
+                if (!direct) {
+                    clientDescriptors.add(prpcJdkProxy.getMethodDescriptors());
+                }
             } else if (CGLIB.equalsIgnoreCase(proxy)) {
                 PrpcCglibProxy prpcCglibProxy = PrpcCglibProxy.builder()
                         .groupName(prpcClient.groupName())
                         .build();
                 clientProxy = prpcCglibProxy.getProxy(declaredField.getType());
+                if (!direct) {
+                    clientDescriptors.add(prpcCglibProxy.getMethodDescriptors());
+                }
             }
             declaredField.setAccessible(true);
             try {